@@ -0,0 +1,5 @@
+set -e
+cd "$(dirname "$0")"
+mkdir -p bench/bin
+find ./src ./bench/src -name *.java | javac -nowarn -d bench/bin -classpath "./lib/antlr-runtime-4.7.2.jar" @/dev/stdin
+java -cp "./bench/bin:./lib/antlr-runtime-4.7.2.jar" Benchmark.BenchmarkRunner "$@"
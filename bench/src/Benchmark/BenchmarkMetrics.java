@@ -0,0 +1,38 @@
+package Benchmark;
+
+import Driver.PhaseMetrics;
+import IR.IRProgram;
+
+public class BenchmarkMetrics extends PhaseMetrics {
+    private PhaseBenchmark benchmark;
+    private long nanos;
+    private Object sink;
+
+    public BenchmarkMetrics(PhaseBenchmark benchmark) {
+        this.benchmark = benchmark;
+        this.nanos = -1;
+        this.sink = null;
+    }
+
+    @Override
+    public void end(String name, IRProgram program) {
+        super.end(name, null);
+        if(!name.equals(benchmark.getPhase())) return;
+        if(benchmark.isProbe()) {
+            long start = System.nanoTime();
+            sink = benchmark.probe(program);
+            nanos = System.nanoTime() - start;
+        } else {
+            nanos = getNanos(name);
+        }
+    }
+
+    public long getNanos() {
+        if(nanos < 0) throw new IllegalStateException("phase " + benchmark.getPhase() + " did not run");
+        return nanos;
+    }
+
+    public Object getSink() {
+        return sink;
+    }
+}
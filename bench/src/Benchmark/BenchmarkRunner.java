@@ -0,0 +1,98 @@
+package Benchmark;
+
+import Driver.Compiler;
+import Utility.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BenchmarkRunner {
+    private int warmupIterations;
+    private int measurementIterations;
+    private Object sink;
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    private long runOnce(PhaseBenchmark benchmark, byte[] source) throws IOException {
+        BenchmarkMetrics metrics = new BenchmarkMetrics(benchmark);
+        int allocator = Config.useAllocator;
+        Config.useAllocator = benchmark.getAllocator();
+        try {
+            new Compiler(metrics).compile(new ByteArrayInputStream(source), OutputStream.nullOutputStream());
+        } finally {
+            Config.useAllocator = allocator;
+        }
+        sink = metrics.getSink();
+        return metrics.getNanos();
+    }
+
+    public void run(PhaseBenchmark benchmark, String programName, byte[] source) throws IOException {
+        for(int i = 0; i < warmupIterations; i++) {
+            runOnce(benchmark, source);
+        }
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for(int i = 0; i < measurementIterations; i++) {
+            long nanos = runOnce(benchmark, source);
+            total += nanos;
+            min = Math.min(min, nanos);
+            max = Math.max(max, nanos);
+        }
+        System.out.println(String.format(Locale.ROOT, "%-32s %-28s %10.3f %10.3f %10.3f",
+                benchmark.getName(), programName, total / 1e6 / measurementIterations, min / 1e6, max / 1e6));
+    }
+
+    private static LinkedHashMap<String, String> loadCorpus(Path dir) throws IOException {
+        LinkedHashMap<String, String> programs = new LinkedHashMap<>();
+        ArrayList<Path> files;
+        try(Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(path -> path.toString().endsWith(".mx")).sorted().collect(Collectors.toCollection(ArrayList::new));
+        }
+        for(Path file : files) {
+            programs.put(file.getFileName().toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        return programs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path corpus = Paths.get(args.length > 0 ? args[0] : "bench/corpus");
+        int warmupIterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int measurementIterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String filter = args.length > 3 ? args[3] : "";
+
+        LinkedHashMap<String, String> programs = loadCorpus(corpus);
+        programs.putAll(SyntheticPrograms.getAll());
+        LinkedHashMap<String, byte[]> sources = new LinkedHashMap<>();
+        for(Map.Entry<String, String> entry : programs.entrySet()) {
+            sources.put(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%-32s %-28s %10s %10s %10s", "benchmark", "program", "avg(ms)", "min(ms)", "max(ms)"));
+        BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations);
+        for(PhaseBenchmark benchmark : PhaseBenchmark.getAll()) {
+            if(!benchmark.getName().contains(filter)) continue;
+            for(Map.Entry<String, byte[]> entry : sources.entrySet()) {
+                try {
+                    runner.run(benchmark, entry.getKey(), entry.getValue());
+                } catch (IOException | RuntimeException | StackOverflowError e) {
+                    System.out.println(String.format(Locale.ROOT, "%-32s %-28s failed: %s", benchmark.getName(), entry.getKey(), e));
+                }
+            }
+        }
+    }
+}
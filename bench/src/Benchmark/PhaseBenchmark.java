@@ -0,0 +1,70 @@
+package Benchmark;
+
+import BackEnd.LivenessAnalyzer;
+import IR.Function;
+import IR.IRProgram;
+import Utility.Config;
+
+import java.util.ArrayList;
+
+public class PhaseBenchmark {
+    private String name;
+    private String phase;
+    private int allocator;
+
+    public PhaseBenchmark(String name, String phase) {
+        this(name, phase, Config.useAllocator);
+    }
+
+    public PhaseBenchmark(String name, String phase, int allocator) {
+        this.name = name;
+        this.phase = phase;
+        this.allocator = allocator;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getAllocator() {
+        return allocator;
+    }
+
+    public boolean isProbe() {
+        return false;
+    }
+
+    public Object probe(IRProgram program) {
+        return null;
+    }
+
+    public static ArrayList<PhaseBenchmark> getAll() {
+        ArrayList<PhaseBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new PhaseBenchmark("IRBuilder.visit", "irBuild"));
+        benchmarks.add(new PhaseBenchmark("GlobalValueNumbering.run", "globalValueNumbering"));
+        benchmarks.add(new PhaseBenchmark("LivenessAnalyzer", "irCorrection") {
+            @Override
+            public boolean isProbe() {
+                return true;
+            }
+
+            @Override
+            public Object probe(IRProgram program) {
+                ArrayList<Object> result = new ArrayList<>();
+                for(Function function : program.getFunctions().values()) {
+                    if(function.getType() != Function.FuncType.UserDefined) continue;
+                    result.add(new LivenessAnalyzer(function, false));
+                }
+                return result;
+            }
+        });
+        benchmarks.add(new PhaseBenchmark("ChordalGraphAllocator.run", "registerAllocation", 2));
+        benchmarks.add(new PhaseBenchmark("GraphAllocator.run", "registerAllocation", 4));
+        benchmarks.add(new PhaseBenchmark("LinearScanAllocator.run", "registerAllocation", 5));
+        return benchmarks;
+    }
+}
@@ -0,0 +1,119 @@
+package Benchmark;
+
+import java.util.LinkedHashMap;
+
+public class SyntheticPrograms {
+    public static LinkedHashMap<String, String> getAll() {
+        LinkedHashMap<String, String> programs = new LinkedHashMap<>();
+        programs.put("synthetic-pressure-64", registerPressure(64));
+        programs.put("synthetic-straight-1000", straightLine(1000));
+        programs.put("synthetic-calls-200", callChain(200));
+        programs.put("synthetic-loops-6", nestedLoops(6, 20));
+        return programs;
+    }
+
+    public static String registerPressure(int variables) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("int main() {\n");
+        sb.append("    int n = getInt();\n");
+        for(int i = 0; i < variables; i++) {
+            sb.append("    int v").append(i).append(" = n * ").append(i + 1).append(" + ").append(i * 7 % 13).append(";\n");
+        }
+        sb.append("    int i;\n");
+        sb.append("    for(i = 0; i < n; i++) {\n");
+        for(int i = 0; i < variables; i++) {
+            sb.append("        v").append(i).append(" = v").append(i).append(" + v").append((i + 1) % variables)
+                    .append(" * v").append((i + 3) % variables).append(" - i;\n");
+        }
+        sb.append("    }\n");
+        sb.append("    int sum = 0;\n");
+        for(int i = 0; i < variables; i++) {
+            sb.append("    sum = sum + v").append(i).append(";\n");
+        }
+        sb.append("    println(toString(sum));\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static String straightLine(int statements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("int main() {\n");
+        sb.append("    int a = getInt();\n");
+        sb.append("    int b = a + 1;\n");
+        sb.append("    int c = a * b;\n");
+        for(int i = 0; i < statements; i++) {
+            switch(i % 4) {
+                case 0:
+                    sb.append("    a = b + c * ").append(i % 17 + 1).append(";\n");
+                    break;
+                case 1:
+                    sb.append("    b = a - c + b * 3;\n");
+                    break;
+                case 2:
+                    sb.append("    c = (a + b) % 1000003;\n");
+                    break;
+                case 3:
+                    sb.append("    if(a > b) a = a - b; else b = b - a;\n");
+                    break;
+            }
+        }
+        sb.append("    println(toString(a + b + c));\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static String callChain(int functions) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < functions; i++) {
+            sb.append("int f").append(i).append("(int x, int y, int z) {\n");
+            sb.append("    int t = x * ").append(i % 7 + 2).append(" + y - z;\n");
+            if(i > 0) {
+                sb.append("    if(t % 3 == 0) return f").append(i - 1).append("(t, x, y) + 1;\n");
+                if(i > 1) {
+                    sb.append("    return f").append(i - 2).append("(y, t, z) - 1;\n");
+                } else {
+                    sb.append("    return t;\n");
+                }
+            } else {
+                sb.append("    return t;\n");
+            }
+            sb.append("}\n");
+        }
+        sb.append("int main() {\n");
+        sb.append("    println(toString(f").append(functions - 1).append("(getInt(), 2, 3)));\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static String nestedLoops(int depth, int statements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("int main() {\n");
+        sb.append("    int n = getInt();\n");
+        sb.append("    int[] a = new int[n];\n");
+        sb.append("    int s = 0;\n");
+        for(int d = 0; d < depth; d++) {
+            sb.append("    int i").append(d).append(";\n");
+        }
+        String indent = "    ";
+        for(int d = 0; d < depth; d++) {
+            sb.append(indent).append("for(i").append(d).append(" = 0; i").append(d).append(" < n; i").append(d).append("++) {\n");
+            indent = indent + "    ";
+            for(int i = 0; i < statements / depth; i++) {
+                sb.append(indent).append("a[i").append(d).append("] = a[(i").append(d).append(" + ").append(i + 1)
+                        .append(") % n] + s * ").append(i + 2).append(";\n");
+                sb.append(indent).append("s = (s + a[i").append(d).append("]) % 10007;\n");
+            }
+        }
+        for(int d = depth - 1; d >= 0; d--) {
+            indent = indent.substring(4);
+            sb.append(indent).append("}\n");
+        }
+        sb.append("    println(toString(s));\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
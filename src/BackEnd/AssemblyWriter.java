@@ -0,0 +1,110 @@
+package BackEnd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class AssemblyWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 10;
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes();
+
+    private WritableByteChannel channel;
+    private ByteBuffer buffer;
+
+    public AssemblyWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    public AssemblyWriter() {
+        this.channel = null;
+        this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    private void reserve(int length) {
+        if(buffer.remaining() >= length) return;
+        if(channel != null) {
+            flush();
+            if(buffer.remaining() >= length) return;
+        }
+        int capacity = buffer.capacity();
+        while(capacity - buffer.position() < length) capacity <<= 1;
+        ByteBuffer newBuffer = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    public void write(char c) {
+        reserve(1);
+        buffer.put((byte) c);
+    }
+
+    public void write(String str) {
+        int length = str.length();
+        reserve(length);
+        for(int i = 0; i < length; i++) {
+            buffer.put((byte) str.charAt(i));
+        }
+    }
+
+    public void write(int value) {
+        reserve(11);
+        long v = value;
+        if(v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        long divisor = 1;
+        while(divisor * 10 <= v) divisor *= 10;
+        for(; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + v / divisor % 10));
+        }
+    }
+
+    public void writeHexByte(int value) {
+        reserve(2);
+        buffer.put(HEX_DIGITS[(value >> 4) & 0xF]);
+        buffer.put(HEX_DIGITS[value & 0xF]);
+    }
+
+    public void write(ByteBuffer src) {
+        ByteBuffer data = src.duplicate();
+        if(channel != null && data.remaining() > buffer.remaining()) {
+            flush();
+            try {
+                while(data.hasRemaining()) channel.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            reserve(data.remaining());
+            buffer.put(data);
+        }
+    }
+
+    public void write(AssemblyWriter other) {
+        ByteBuffer data = other.buffer.duplicate();
+        data.flip();
+        write(data);
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.duplicate().flip().get(bytes);
+        return bytes;
+    }
+
+    public void flush() {
+        if(channel == null) return;
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
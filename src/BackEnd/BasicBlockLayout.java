@@ -0,0 +1,198 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.CJump;
+import IR.Instruction.Instruction;
+import IR.Instruction.Jump;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BasicBlockLayout {
+    private static final double LOOP_WEIGHT = 8;
+    private static final double EXIT_PROBABILITY = 0.1;
+
+    private IRProgram program;
+    private AtomicInteger fallThroughCount;
+
+    public BasicBlockLayout(IRProgram program) {
+        this.program = program;
+        this.fallThroughCount = new AtomicInteger();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            FunctionLayout functionLayout = new FunctionLayout(function);
+            functionLayout.process();
+            fallThroughCount.addAndGet(functionLayout.fallThroughs);
+        });
+    }
+
+    public int getFallThroughCount() {
+        return fallThroughCount.get();
+    }
+
+    private static class Edge {
+        private BasicBlock from;
+        private BasicBlock to;
+        private double weight;
+
+        private Edge(BasicBlock from, BasicBlock to, double weight) {
+            this.from = from;
+            this.to = to;
+            this.weight = weight;
+        }
+    }
+
+    private static class Chain {
+        private LinkedList<BasicBlock> blocks;
+        private double frequency;
+        private int order;
+        private boolean placed;
+
+        private Chain(BasicBlock bb, double frequency, int order) {
+            this.blocks = new LinkedList<>();
+            this.blocks.add(bb);
+            this.frequency = frequency;
+            this.order = order;
+            this.placed = false;
+        }
+    }
+
+    private static class FunctionLayout {
+        private Function function;
+        private double[] frequencies;
+        private Chain[] chains;
+        private ArrayList<Edge> edges;
+        private ArrayList<ArrayList<Edge>> outEdges;
+        private PriorityQueue<Edge> frontier;
+        private ArrayList<Chain> fallbackChains;
+        private int fallbackIndex;
+        private int fallThroughs;
+
+        private FunctionLayout(Function function) {
+            this.function = function;
+            this.fallThroughs = 0;
+        }
+
+        private void process() {
+            ArrayList<BasicBlock> reversePostOrder = new ArrayList<>(function.getReversePostOrder());
+            LoopAnalyzer loopAnalyzer = new LoopAnalyzer(function, new DominatorTree(function));
+            frequencies = new double[function.getBasicBlockCount()];
+            chains = new Chain[function.getBasicBlockCount()];
+            outEdges = new ArrayList<>(Collections.nCopies(function.getBasicBlockCount(), null));
+            for(int i = 0; i < reversePostOrder.size(); i++) {
+                BasicBlock bb = reversePostOrder.get(i);
+                frequencies[bb.getId()] = Math.pow(LOOP_WEIGHT, loopAnalyzer.getLoopDepth(bb));
+                chains[bb.getId()] = new Chain(bb, frequencies[bb.getId()], i);
+                outEdges.set(bb.getId(), new ArrayList<>());
+            }
+
+            edges = new ArrayList<>();
+            for(BasicBlock bb : reversePostOrder) {
+                Instruction tail = bb.getTail();
+                double frequency = frequencies[bb.getId()];
+                if(tail instanceof Jump) {
+                    addEdge(new Edge(bb, ((Jump) tail).getTargetBB(), frequency));
+                } else if(tail instanceof CJump) {
+                    BasicBlock thenBB = ((CJump) tail).getThenBB();
+                    BasicBlock elseBB = ((CJump) tail).getElseBB();
+                    LoopAnalyzer.Loop loop = loopAnalyzer.getLoop(bb);
+                    double probability = 0.5;
+                    if(loop != null && loop.contains(thenBB) != loop.contains(elseBB)) {
+                        probability = loop.contains(thenBB) ? 1 - EXIT_PROBABILITY : EXIT_PROBABILITY;
+                    }
+                    addEdge(new Edge(bb, elseBB, frequency * (1 - probability)));
+                    addEdge(new Edge(bb, thenBB, frequency * probability));
+                }
+            }
+            edges.sort(Comparator.comparingDouble((Edge edge) -> -edge.weight));
+
+            for(Edge edge : edges) {
+                if(edge.from == edge.to || edge.to == function.getHeadBB()) continue;
+                Chain from = chains[edge.from.getId()];
+                Chain to = chains[edge.to.getId()];
+                if(from == to || from.blocks.getLast() != edge.from || to.blocks.getFirst() != edge.to) continue;
+                for(BasicBlock bb : to.blocks) {
+                    chains[bb.getId()] = from;
+                }
+                from.blocks.addAll(to.blocks);
+                from.frequency = Math.max(from.frequency, to.frequency);
+                from.order = Math.min(from.order, to.order);
+            }
+
+            frontier = new PriorityQueue<>((a, b) -> {
+                if(a.weight != b.weight) return Double.compare(b.weight, a.weight);
+                if(isHead(a) != isHead(b)) return isHead(a) ? -1 : 1;
+                return Integer.compare(chains[a.to.getId()].order, chains[b.to.getId()].order);
+            });
+            fallbackChains = new ArrayList<>();
+            for(BasicBlock bb : reversePostOrder) {
+                Chain chain = chains[bb.getId()];
+                if(chain.blocks.getFirst() == bb) fallbackChains.add(chain);
+            }
+            fallbackChains.sort((a, b) -> a.frequency != b.frequency ? Double.compare(b.frequency, a.frequency) : Integer.compare(a.order, b.order));
+            fallbackIndex = 0;
+
+            LinkedList<BasicBlock> layoutOrder = new LinkedList<>();
+            Chain chain = chains[function.getHeadBB().getId()];
+            while(chain != null) {
+                chain.placed = true;
+                layoutOrder.addAll(chain.blocks);
+                for(BasicBlock bb : chain.blocks) {
+                    frontier.addAll(outEdges.get(bb.getId()));
+                }
+                chain = selectNextChain();
+            }
+
+            BasicBlock prevBB = null;
+            for(BasicBlock bb : layoutOrder) {
+                if(prevBB != null) fixBranch(prevBB, bb);
+                prevBB = bb;
+            }
+            function.setLayoutOrder(layoutOrder);
+        }
+
+        private void addEdge(Edge edge) {
+            edges.add(edge);
+            outEdges.get(edge.from.getId()).add(edge);
+        }
+
+        private Chain selectNextChain() {
+            while(!frontier.isEmpty()) {
+                Chain chain = chains[frontier.poll().to.getId()];
+                if(!chain.placed) return chain;
+            }
+            while(fallbackIndex < fallbackChains.size()) {
+                Chain chain = fallbackChains.get(fallbackIndex++);
+                if(!chain.placed) return chain;
+            }
+            return null;
+        }
+
+        private boolean isHead(Edge edge) {
+            return chains[edge.to.getId()].blocks.getFirst() == edge.to;
+        }
+
+        private void fixBranch(BasicBlock bb, BasicBlock nextBB) {
+            Instruction tail = bb.getTail();
+            if(tail instanceof Jump && ((Jump) tail).getTargetBB() == nextBB) {
+                fallThroughs++;
+            } else if(tail instanceof CJump) {
+                CJump cjump = (CJump) tail;
+                if(cjump.getThenBB() == nextBB && cjump.getElseBB() != nextBB) {
+                    cjump.setOp(cjump.getNegativeCompareOp());
+                    cjump.setThenBB(cjump.getElseBB());
+                    cjump.setElseBB(nextBB);
+                }
+                if(cjump.getElseBB() == nextBB) fallThroughs++;
+            }
+        }
+    }
+}
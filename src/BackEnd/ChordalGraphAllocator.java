@@ -10,160 +10,223 @@ import IR.Operand.Register;
 import IR.Operand.StackSlot;
 import IR.Operand.VirtualRegister;
 import IR.RegisterSet;
+import IR.RegisterVisitor;
+import Utility.IntIntMap;
 
 import java.util.*;
 
 public class ChordalGraphAllocator {
     private IRProgram program;
+    private ArrayList<PhysicalRegister> physicalRegisters;
+    private boolean[] callerSave;
+    private int K;
+
     private LivenessAnalyzer livenessAnalyzer;
-    private HashMap<VirtualRegister, HashSet<VirtualRegister>> interferenceGraph;
-    private LinkedList<PhysicalRegister> physicalRegisters;
-    private HashMap<VirtualRegister, PhysicalRegister> colors;
-    private LinkedList<VirtualRegister> spillList;
+    private int N;
+    private ArrayList<VirtualRegister> nodes;
+    private int[][] adjList;
+    private int[] adjListSizes;
+    private int[] colors;
+    private boolean[] spilled;
+    private int spillCount;
+
+    private ArrayList<VirtualRegister> temporaries;
+    private IntIntMap temporaryIds;
+    private ArrayList<BasicBlock> spilledBlocks;
 
+    private long[] liveOut;
+    private final RegisterVisitor interferenceBuilder = reg -> {
+        int d = livenessAnalyzer.getId((VirtualRegister) reg);
+        for(int id = LivenessAnalyzer.nextSetBit(liveOut, 0); id >= 0; id = LivenessAnalyzer.nextSetBit(liveOut, id + 1)) {
+            addEdge(d, id);
+        }
+    };
 
     public ChordalGraphAllocator(IRProgram program) {
         this.program = program;
-        this.livenessAnalyzer = new LivenessAnalyzer();
-        this.interferenceGraph = new HashMap<>();
-        this.physicalRegisters = new LinkedList<>();
-        this.colors = new HashMap<>();
-        this.spillList = new LinkedList<>();
+        this.physicalRegisters = new ArrayList<>();
         for(PhysicalRegister pr : RegisterSet.allRegs) {
             if(!pr.getName().equals("rsp") && !pr.getName().equals("rbp")) {
                 physicalRegisters.add(pr);
             }
         }
-    }
-
-    private void addRegister(VirtualRegister vr) {
-        if(!interferenceGraph.containsKey(vr)) {
-            interferenceGraph.put(vr, new HashSet<>());
+        this.K = physicalRegisters.size();
+        this.callerSave = new boolean[K];
+        for(int i = 0; i < K; i++) {
+            callerSave[i] = RegisterSet.callerSave.contains(physicalRegisters.get(i));
         }
     }
 
-    private void addEdge(VirtualRegister a, VirtualRegister b) {
-        if(!a.equals(b)) {
-            interferenceGraph.get(a).add(b);
-            interferenceGraph.get(b).add(a);
+    private static int[] append(int[] array, int size, int value) {
+        if(size == array.length) {
+            array = Arrays.copyOf(array, Math.max(4, size * 2));
         }
+        array[size] = value;
+        return array;
     }
 
-    private Collection<VirtualRegister> getAllVertex() {
-        return interferenceGraph.keySet();
+    private void addEdge(int a, int b) {
+        if(a != b) {
+            adjList[a] = append(adjList[a], adjListSizes[a]++, b);
+            adjList[b] = append(adjList[b], adjListSizes[b]++, a);
+        }
     }
 
     private void getInterferenceGraph(Function function) {
 //        System.err.println("================================get interference graph====================================");
-        interferenceGraph.clear();
-        HashMap<BasicBlock, HashSet<VirtualRegister>> OUTs = livenessAnalyzer.getOUTs(function, true);
-        for(BasicBlock bb : function.getBasicBlocks()) {
-            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
-                for(Register reg : inst.getUsedRegisters()) {
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    addRegister(vr);
-                }
-                for(Register reg : inst.getDefinedRegisters()) {
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    addRegister(vr);
-                }
-            }
+        livenessAnalyzer = new LivenessAnalyzer(function, true);
+        N = livenessAnalyzer.size();
+        nodes = livenessAnalyzer.getRegisters();
+        adjList = new int[N][];
+        adjListSizes = new int[N];
+        for(int n = 0; n < N; n++) {
+            adjList[n] = new int[4];
         }
 
         for(BasicBlock bb : function.getBasicBlocks()) {
-            HashSet<VirtualRegister> liveNow = new HashSet<>(OUTs.get(bb));
+            liveOut = livenessAnalyzer.getLiveOut(bb).clone();
             for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
-                for(Register reg : inst.getDefinedRegisters()) {
-                    VirtualRegister vr1 = (VirtualRegister) reg;
-                    for(VirtualRegister vr2 : liveNow) {
-                        addEdge(vr1, vr2);
-                    }
-                }
-                for(Register reg : inst.getDefinedRegisters()) {
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    liveNow.remove(vr);
-                }
-                for(Register reg : inst.getUsedRegisters()) {
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    liveNow.add(vr);
+                inst.forEachDefinedRegister(interferenceBuilder);
+                livenessAnalyzer.stepBackward(liveOut, inst);
+            }
+        }
+
+        for(int n = 0; n < N; n++) {
+            int[] adjacent = adjList[n];
+            int size = adjListSizes[n];
+            Arrays.sort(adjacent, 0, size);
+            int unique = 0;
+            for(int i = 0; i < size; i++) {
+                if(unique == 0 || adjacent[unique - 1] != adjacent[i]) {
+                    adjacent[unique++] = adjacent[i];
                 }
             }
+            adjListSizes[n] = unique;
         }
     }
 
-    private ArrayList<VirtualRegister> maximumCardinalitySearch() {
+    private int[] maximumCardinalitySearch() {
 //        System.err.println("================================start search====================================");
-        HashMap<VirtualRegister, Integer> weight = new HashMap<>();
-        ArrayList<VirtualRegister> V = new ArrayList<>(getAllVertex());
-        ArrayList<VirtualRegister> orderedVirtualRegisters = new ArrayList<>();
-        for(VirtualRegister vr : V) {
-            weight.put(vr, 0);
-        }
-        HashSet<VirtualRegister> W = new HashSet<>(V);
-        int maximalWeight;
-        VirtualRegister v = V.iterator().next();
-        for(int i = 0; i < V.size(); i++) {
-            maximalWeight = -1;
-            for(VirtualRegister vr : W) {
-                if(weight.get(vr) > maximalWeight) {
-                    maximalWeight = weight.get(vr);
-                    v = vr;
-                }
+        int[] order = new int[N];
+        if(N == 0) return order;
+        int[] weights = new int[N];
+        int[] heads = new int[N];
+        int[] nexts = new int[N];
+        int[] prevs = new int[N];
+        boolean[] ordered = new boolean[N];
+        Arrays.fill(heads, -1);
+        for(int v = N - 1; v >= 0; v--) {
+            insertBucket(heads, nexts, prevs, 0, v);
+        }
+        int maximalWeight = 0;
+        for(int i = 0; i < N; i++) {
+            while(heads[maximalWeight] == -1) {
+                maximalWeight--;
             }
-            orderedVirtualRegisters.add(i, v);
-            for(VirtualRegister u : W) {
-                if(interferenceGraph.get(v).contains(u)) {
-                    Integer newValue = weight.get(u) + 1;
-                    weight.put(u, newValue);
+            int v = heads[maximalWeight];
+            removeBucket(heads, nexts, prevs, maximalWeight, v);
+            ordered[v] = true;
+            order[i] = v;
+            int[] adjacent = adjList[v];
+            for(int j = 0; j < adjListSizes[v]; j++) {
+                int u = adjacent[j];
+                if(!ordered[u]) {
+                    removeBucket(heads, nexts, prevs, weights[u], u);
+                    weights[u]++;
+                    insertBucket(heads, nexts, prevs, weights[u], u);
+                    maximalWeight = Math.max(maximalWeight, weights[u]);
                 }
             }
-            W.remove(v);
         }
-        return orderedVirtualRegisters;
+        return order;
+    }
+
+    private static void insertBucket(int[] heads, int[] nexts, int[] prevs, int weight, int v) {
+        nexts[v] = heads[weight];
+        prevs[v] = -1;
+        if(heads[weight] != -1) {
+            prevs[heads[weight]] = v;
+        }
+        heads[weight] = v;
+    }
+
+    private static void removeBucket(int[] heads, int[] nexts, int[] prevs, int weight, int v) {
+        if(prevs[v] != -1) {
+            nexts[prevs[v]] = nexts[v];
+        } else {
+            heads[weight] = nexts[v];
+        }
+        if(nexts[v] != -1) {
+            prevs[nexts[v]] = prevs[v];
+        }
+    }
+
+    private int selectColor(boolean[] used) {
+        int color = -1;
+        for(int i = 0; i < K; i++) {
+            if(!used[i] && (color == -1 || (callerSave[i] && !callerSave[color]))) {
+                color = i;
+            }
+        }
+        return color;
     }
 
-    private void greedyColor(ArrayList<VirtualRegister> vertices) {
+    private void greedyColor(int[] order) {
 //        System.err.println("================================start color====================================");
-        spillList.clear();
-        colors.clear();
-        for(VirtualRegister vr : vertices) {
-            if(vr.getAllocatedPhysicalRegister() != null) {
-                colors.put(vr, vr.getAllocatedPhysicalRegister());
-            }
-        }
-        for(VirtualRegister vr : vertices) {
-            if(vr.getAllocatedPhysicalRegister() == null) {
-                LinkedList<PhysicalRegister> canBeUsedColors = new LinkedList<>(physicalRegisters);
-                for(VirtualRegister neighbor : interferenceGraph.get(vr)) {
-                    if(colors.containsKey(neighbor)) {
-                        canBeUsedColors.remove(colors.get(neighbor));
+        colors = new int[N];
+        spilled = new boolean[N];
+        spillCount = 0;
+        Arrays.fill(colors, -1);
+        for(int n = 0; n < N; n++) {
+            PhysicalRegister pr = nodes.get(n).getAllocatedPhysicalRegister();
+            if(pr != null) {
+                colors[n] = physicalRegisters.indexOf(pr);
+            }
+        }
+        boolean[] used = new boolean[K];
+        for(int v : order) {
+            if(nodes.get(v).getAllocatedPhysicalRegister() == null) {
+                Arrays.fill(used, false);
+                int[] adjacent = adjList[v];
+                for(int i = 0; i < adjListSizes[v]; i++) {
+                    if(colors[adjacent[i]] >= 0) {
+                        used[colors[adjacent[i]]] = true;
                     }
                 }
-                if(canBeUsedColors.isEmpty()) {
-                    spillList.add(vr);
+                int color = selectColor(used);
+                if(color == -1) {
+                    spilled[v] = true;
+                    spillCount++;
                 } else {
-                    PhysicalRegister pr = null;
-                    for(PhysicalRegister reg : RegisterSet.callerSave) {
-                        if(canBeUsedColors.contains(reg)) {
-                            pr = reg;
-                            break;
-                        }
-                    }
-                    if(pr == null) {
-                        pr = canBeUsedColors.getFirst();
-                    }
-//                    System.err.println("assign color : vr = " + vr.getName() + " pr = " + pr.getName());
-                    colors.put(vr, pr);
+                    colors[v] = color;
                 }
             }
         }
     }
 
+    private boolean isSpilled(VirtualRegister vr) {
+        int id = livenessAnalyzer.getId(vr);
+        return id >= 0 && spilled[id];
+    }
+
+    private VirtualRegister newTemporary(BasicBlock bb) {
+        VirtualRegister vr = new VirtualRegister(bb.getFunction(), "");
+        temporaryIds.put(vr.getId(), N + temporaries.size());
+        temporaries.add(vr);
+        if(spilledBlocks.isEmpty() || spilledBlocks.get(spilledBlocks.size() - 1) != bb) {
+            spilledBlocks.add(bb);
+        }
+        return vr;
+    }
+
     private void spillRegisters(Function function) {
 //        System.err.println("================================start spill====================================");
-        for(VirtualRegister vr : spillList) {
-            if(vr.getSpillSpace() == null) {
-                vr.setSpillSpace(new StackSlot());
+        temporaries = new ArrayList<>();
+        temporaryIds = new IntIntMap();
+        spilledBlocks = new ArrayList<>();
+        for(int n = 0; n < N; n++) {
+            if(spilled[n] && nodes.get(n).getSpillSpace() == null) {
+                nodes.get(n).setSpillSpace(new StackSlot());
             }
         }
         for(BasicBlock bb : function.getBasicBlocks()) {
@@ -173,15 +236,17 @@ public class ChordalGraphAllocator {
                 HashMap<Register, Register> renameMap = new HashMap<>();
                 for(Register reg : inst.getUsedRegisters()) {
                     VirtualRegister vr = (VirtualRegister) reg;
-                    if(spillList.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                    if(isSpilled(vr) && !renameMap.containsKey(vr)) {
+                        renameMap.put(vr, newTemporary(bb));
                         use.add(vr);
                     }
                 }
                 for(Register reg : inst.getDefinedRegisters()) {
                     VirtualRegister vr = (VirtualRegister) reg;
-                    if(spillList.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                    if(isSpilled(vr) && !def.contains(vr)) {
+                        if(!renameMap.containsKey(vr)) {
+                            renameMap.put(vr, newTemporary(bb));
+                        }
                         def.add(vr);
                     }
                 }
@@ -198,8 +263,83 @@ public class ChordalGraphAllocator {
         }
     }
 
+    private int getId(Register reg) {
+        int id = temporaryIds.get(((VirtualRegister) reg).getId(), -1);
+        return id >= 0 ? id : livenessAnalyzer.getId((VirtualRegister) reg);
+    }
+
+    private boolean colorTemporaries() {
+        int total = N + temporaries.size();
+        int words = (total + 63) >>> 6;
+        int firstTemporaryWord = N >>> 6;
+        int[][] temporaryAdjList = new int[temporaries.size()][];
+        int[] temporaryAdjListSizes = new int[temporaries.size()];
+        for(int t = 0; t < temporaries.size(); t++) {
+            temporaryAdjList[t] = new int[4];
+        }
+        for(BasicBlock bb : spilledBlocks) {
+            long[] live = Arrays.copyOf(livenessAnalyzer.getLiveOut(bb), words);
+            for(int n = 0; n < N; n++) {
+                if(spilled[n]) LivenessAnalyzer.remove(live, n);
+            }
+            for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
+                for(Register reg : inst.getDefinedRegisters()) {
+                    int d = getId(reg);
+                    int from = d >= N ? 0 : N;
+                    for(int l = LivenessAnalyzer.nextSetBit(live, from); l >= 0; l = LivenessAnalyzer.nextSetBit(live, l + 1)) {
+                        if(l == d) continue;
+                        if(d >= N) {
+                            temporaryAdjList[d - N] = append(temporaryAdjList[d - N], temporaryAdjListSizes[d - N]++, l);
+                        }
+                        if(l >= N) {
+                            temporaryAdjList[l - N] = append(temporaryAdjList[l - N], temporaryAdjListSizes[l - N]++, d);
+                        }
+                    }
+                }
+                for(Register reg : inst.getDefinedRegisters()) {
+                    LivenessAnalyzer.remove(live, getId(reg));
+                }
+                for(Register reg : inst.getUsedRegisters()) {
+                    LivenessAnalyzer.add(live, getId(reg));
+                }
+            }
+            for(int w = firstTemporaryWord; w < words; w++) {
+                if((live[w] & (w == firstTemporaryWord ? -1L << N : -1L)) != 0) return false;
+            }
+        }
+
+        colors = Arrays.copyOf(colors, total);
+        Arrays.fill(colors, N, total, -1);
+        boolean[] used = new boolean[K];
+        for(int t = 0; t < temporaries.size(); t++) {
+            Arrays.fill(used, false);
+            for(int i = 0; i < temporaryAdjListSizes[t]; i++) {
+                int neighbor = temporaryAdjList[t][i];
+                if(colors[neighbor] >= 0) {
+                    used[colors[neighbor]] = true;
+                }
+            }
+            int color = selectColor(used);
+            if(color == -1) return false;
+            colors[N + t] = color;
+        }
+        return true;
+    }
+
     private void allocateRegisters(Function function) {
-        HashMap<Register, Register> renameMap = new HashMap<>(colors);
+        HashMap<Register, Register> renameMap = new HashMap<>();
+        for(int n = 0; n < N; n++) {
+            if(nodes.get(n).getAllocatedPhysicalRegister() != null) {
+                renameMap.put(nodes.get(n), nodes.get(n).getAllocatedPhysicalRegister());
+            } else if(!spilled[n]) {
+                renameMap.put(nodes.get(n), physicalRegisters.get(colors[n]));
+            }
+        }
+        if(temporaries != null) {
+            for(int t = 0; t < temporaries.size(); t++) {
+                renameMap.put(temporaries.get(t), physicalRegisters.get(colors[N + t]));
+            }
+        }
         for(BasicBlock bb : function.getBasicBlocks()) {
             for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
                 inst.renameUsedRegisters(renameMap);
@@ -210,25 +350,23 @@ public class ChordalGraphAllocator {
 
     private void process(Function function) {
         while(true){
+            temporaries = null;
             getInterferenceGraph(function);
-            ArrayList<VirtualRegister> vertices = maximumCardinalitySearch();
-            greedyColor(vertices);
-            if(spillList.isEmpty()) {
-                allocateRegisters(function);
+            greedyColor(maximumCardinalitySearch());
+            if(spillCount == 0) {
+                break;
+            }
+            spillRegisters(function);
+            if(colorTemporaries()) {
                 break;
-            } else {
-                spillRegisters(function);
             }
         }
+        allocateRegisters(function);
         function.calcUsedPhysicalRegisters();
     }
 
     public void run() {
-        for(Function function : program.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined) {
-                process(function);
-            }
-        }
+        FunctionPassRunner.run(program, function -> new ChordalGraphAllocator(program).process(function));
     }
 
 }
@@ -3,21 +3,33 @@ package BackEnd;
 import IR.*;
 import IR.Instruction.*;
 import IR.Operand.*;
+import Utility.IntObjectMap;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Formatter;
 import java.util.HashMap;
+import java.util.List;
 
 public class CodeGenerator implements IRVistor {
-    private StringBuilder program;
-    private HashMap<BasicBlock, String> bbNames;
-    private HashMap<StaticData, String> sdNames;
+    private static final String RUNTIME_LIBRARY = "lib/c2nasm/lib.asm";
+    private static final int FUNCTION_WINDOW = 64;
+    private static ByteBuffer runtimePrologue = null;
+
+    private AssemblyWriter writer;
+    private AssemblyWriter dataWriter;
+    private ByteBuffer prologue;
+    private ArrayList<FunctionAssembly> cachedAssemblies;
+    private HashMap<Function, FunctionAssembly> generatedAssemblies;
+    private String functionName;
+    private String[] bbNames;
+    private HashMap<StaticString, String> strNames;
     private HashMap<StackSlot,String> ssNames;
-    private HashMap<VirtualRegister,String> varNames;
+    private IntObjectMap<String> varNames;
 
     private BasicBlock nextBB;
 
@@ -25,19 +37,25 @@ public class CodeGenerator implements IRVistor {
     private boolean inDivInst;
     private boolean inMemory;
 
-    private int bbIndex;
-    private int sdIndex;
     private int varIndex;
     private int ssIndex;
 
-    public CodeGenerator() {
-        program = new StringBuilder();
-        bbNames = new HashMap<>();
-        sdNames = new HashMap<>();
+    public CodeGenerator(WritableByteChannel channel) throws IOException {
+        this(new AssemblyWriter(channel), new AssemblyWriter());
+        prologue = getRuntimePrologue();
+    }
+
+    private CodeGenerator(AssemblyWriter writer, AssemblyWriter dataWriter) {
+        this.writer = writer;
+        this.dataWriter = dataWriter;
+        prologue = null;
+        cachedAssemblies = new ArrayList<>();
+        generatedAssemblies = null;
+        functionName = null;
+        bbNames = null;
+        strNames = new HashMap<>();
         ssNames = new HashMap<>();
-        varNames = new HashMap<>();
-        bbIndex = 0;
-        sdIndex = 0;
+        varNames = new IntObjectMap<>();
         varIndex = 0;
         ssIndex = 0;
         inLeaInst = false;
@@ -45,16 +63,44 @@ public class CodeGenerator implements IRVistor {
         inMemory = false;
     }
 
-    public void print(PrintStream printStream) {
-        printStream.print(program.toString());
+    private static synchronized ByteBuffer getRuntimePrologue() throws IOException {
+        if(runtimePrologue == null) {
+            byte[] library = Files.readAllBytes(Paths.get(RUNTIME_LIBRARY));
+            byte[] section = "\tsection .text\n".getBytes(StandardCharsets.US_ASCII);
+            boolean needNewLine = library.length > 0 && library[library.length - 1] != '\n';
+            ByteBuffer buffer = ByteBuffer.allocate(library.length + (needNewLine ? 1 : 0) + section.length);
+            buffer.put(library);
+            if(needNewLine) buffer.put((byte) '\n');
+            buffer.put(section);
+            buffer.flip();
+            runtimePrologue = buffer;
+        }
+        return runtimePrologue.asReadOnlyBuffer();
+    }
+
+    public void flush() {
+        writer.flush();
+    }
+
+    public void addCachedAssembly(FunctionAssembly assembly) {
+        cachedAssemblies.add(assembly);
+    }
+
+    public void keepGeneratedAssemblies() {
+        generatedAssemblies = new HashMap<>();
+    }
+
+    public HashMap<Function, FunctionAssembly> getGeneratedAssemblies() {
+        return generatedAssemblies;
     }
 
     private void addLine(String line) {
-        program.append(line + "\n");
+        writer.write(line);
+        writer.write('\n');
     }
 
     private void add(String str) {
-        program.append(str);
+        writer.write(str);
     }
 
     private String getNASMFunctionName(Function function) {
@@ -71,23 +117,53 @@ public class CodeGenerator implements IRVistor {
     }
 
     private String getBasicBlockName(BasicBlock bb) {
-        if(!bbNames.containsKey(bb)) {
-            bbNames.put(bb, "_block_" + bbIndex++);
+        return bbNames[bb.getId()];
+    }
+
+    private String getStaticVariableName(StaticVariable var) {
+        return "_global." + var.getName();
+    }
+
+    private String getStaticStringName(StaticString str) {
+        String name = strNames.get(str);
+        if(name == null) {
+            name = functionName + ".str." + strNames.size();
+            strNames.put(str, name);
+            String value = str.getValue();
+            dataWriter.write(name);
+            dataWriter.write(":\n\tdq ");
+            dataWriter.write(value.length());
+            dataWriter.write("\n\tdb ");
+            for(int i = 0; i < value.length(); i++) {
+                dataWriter.writeHexByte(value.charAt(i));
+                dataWriter.write("H, ");
+            }
+            dataWriter.write("00H\n");
         }
-        return bbNames.get(bb);
+        return name;
     }
 
-    private String getStaticDataName(StaticData sd) {
-        if(!sdNames.containsKey(sd)) {
-            sdNames.put(sd, "_global_" + sdIndex++);
+    private void assignNames(Function function) {
+        functionName = getNASMFunctionName(function);
+        int bbIndex = 0;
+        bbNames = new String[function.getBasicBlockCount()];
+        for(BasicBlock bb : function.getLayoutOrder()) {
+            bbNames[bb.getId()] = functionName + "." + bbIndex++;
+        }
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(bbNames[bb.getId()] == null) {
+                bbNames[bb.getId()] = functionName + "." + bbIndex++;
+            }
         }
-        return sdNames.get(sd);
     }
 
     private String getVirtualRegisterName(VirtualRegister virtualRegister) {
-        if(!varNames.containsKey(virtualRegister))
-            varNames.put(virtualRegister, "v" + varIndex++);
-        return varNames.get(virtualRegister);
+        String name = varNames.get(virtualRegister.getId());
+        if(name == null) {
+            name = "v" + varIndex++;
+            varNames.put(virtualRegister.getId(), name);
+        }
+        return name;
     }
     private String getStackSlotName(StackSlot ss) {
         if(!ssNames.containsKey(ss))
@@ -97,55 +173,62 @@ public class CodeGenerator implements IRVistor {
 
     @Override
     public void visit(IRProgram node) {
-        try {
-            BufferedReader br = new BufferedReader(new FileReader("lib/c2nasm/lib.asm"));
-            String line;
-            while((line = br.readLine()) != null) add(line + "\n");
-            addLine("\tsection .text");
-        } catch (IOException e) {
-            e.printStackTrace();
+        writer.write(prologue);
+        List<Function> functions = FunctionPassRunner.getUserDefinedFunctions(node);
+        for(int from = 0; from < functions.size(); from += FUNCTION_WINDOW) {
+            List<Function> window = functions.subList(from, Integer.min(from + FUNCTION_WINDOW, functions.size()));
+            HashMap<Function, CodeGenerator> functionGenerators = new HashMap<>();
+            for(Function function : window) {
+                functionGenerators.put(function, new CodeGenerator(new AssemblyWriter(), new AssemblyWriter()));
+            }
+            FunctionPassRunner.run(window, function -> function.accept(functionGenerators.get(function)));
+            for(Function function : window) {
+                CodeGenerator functionGenerator = functionGenerators.get(function);
+                writer.write(functionGenerator.writer);
+                dataWriter.write(functionGenerator.dataWriter);
+                if(generatedAssemblies != null) {
+                    generatedAssemblies.put(function, new FunctionAssembly(functionGenerator.writer.toByteArray(), functionGenerator.dataWriter.toByteArray()));
+                }
+            }
         }
-        for(Function function : node.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined)
-                function.accept(this);
+        for(FunctionAssembly assembly : cachedAssemblies) {
+            writer.write(ByteBuffer.wrap(assembly.getText()));
         }
         addLine("\tsection .data");
         for(StaticVariable var : node.getStaticVariables()) {
-            addLine(getStaticDataName(var) + ":");
-            add("\tdb ");
+            add(getStaticVariableName(var));
+            add(":\n\tdb ");
             for (int i = 0; i < var.getLength(); i++) {
                 if (i != 0) add(", ");
                 add("00H");
             }
             add("\n");
         }
-        for(StaticString str : node.getStaticStrings()) {
-            addLine(getStaticDataName(str) + ":");
-            addLine("\tdq " + str.getValue().length());
-            add("\tdb ");
-            for(int i = 0; i < str.getValue().length(); i++) {
-                Formatter formatter = new Formatter();
-                formatter.format("%02XH, ", (int) str.getValue().charAt(i));
-                add(formatter.toString());
-            }
-            addLine("00H");
+        writer.write(dataWriter);
+        for(FunctionAssembly assembly : cachedAssemblies) {
+            writer.write(ByteBuffer.wrap(assembly.getData()));
         }
+        writer.flush();
     }
 
     @Override
     public void visit(Function node) {
-        addLine(getNASMFunctionName(node) + ":");
-        ArrayList<BasicBlock> reversePostOrder = new ArrayList<>(node.getReversePostOrder());
-        for(int i = 0; i < reversePostOrder.size(); i++) {
-            BasicBlock bb = reversePostOrder.get(i);
-            nextBB = (i + 1 == reversePostOrder.size()) ? null : reversePostOrder.get(i + 1);
+        assignNames(node);
+        add(getNASMFunctionName(node));
+        add(":\n");
+        ArrayList<BasicBlock> layoutOrder = new ArrayList<>(node.getLayoutOrder());
+        for(int i = 0; i < layoutOrder.size(); i++) {
+            BasicBlock bb = layoutOrder.get(i);
+            nextBB = (i + 1 == layoutOrder.size()) ? null : layoutOrder.get(i + 1);
             bb.accept(this);
         }
     }
 
     @Override
     public void visit(BasicBlock node) {
-        addLine("\t" + getBasicBlockName(node) + ":");
+        add("\t");
+        add(getBasicBlockName(node));
+        add(":\n");
         for(Instruction inst = node.getHead(); inst != null; inst = inst.getNext()) {
             inst.accept(this);
         }
@@ -153,8 +236,10 @@ public class CodeGenerator implements IRVistor {
 
     @Override
     public void visit(Jump node) {
-        if(node.getTargetBB() != nextBB)
-            addLine("\tjmp " + getBasicBlockName(node.getTargetBB()));
+        if(node.getTargetBB() != nextBB) {
+            add("\tjmp ");
+            addLine(getBasicBlockName(node.getTargetBB()));
+        }
     }
 
     @Override
@@ -180,14 +265,19 @@ public class CodeGenerator implements IRVistor {
                 op = "jne";
                 break;
         }
-        add("\tcmp ");
+        add(node.isTest() ? "\ttest " : "\tcmp ");
         node.getLhs().accept(this);
         add(", ");
-        node.getRhs().accept(this);
+        (node.isTest() ? node.getLhs() : node.getRhs()).accept(this);
         add("\n");
-        addLine("\t" + op + " " + getBasicBlockName(node.getThenBB()));
-        if(node.getElseBB() != nextBB)
-            addLine("\tjmp " + getBasicBlockName(node.getElseBB()));
+        add("\t");
+        add(op);
+        add(" ");
+        addLine(getBasicBlockName(node.getThenBB()));
+        if(node.getElseBB() != nextBB) {
+            add("\tjmp ");
+            addLine(getBasicBlockName(node.getElseBB()));
+        }
     }
 
     @Override
@@ -218,7 +308,9 @@ public class CodeGenerator implements IRVistor {
         add(", ");
         node.getRhs().accept(this);
         add("\n");
-        addLine("\t" + op + " ");
+        add("\t");
+        add(op);
+        add(" \n");
     }
 
     @Override
@@ -267,12 +359,16 @@ public class CodeGenerator implements IRVistor {
                 break;
         }
         if(node.getOp() == BinaryOperation.BinaryOp.SAL || node.getOp() == BinaryOperation.BinaryOp.SAR) {
-            add("\t" + op + " ");
+            add("\t");
+            add(op);
+            add(" ");
             node.getDst().accept(this);
             add(", cl\n");
             return;
         }
-        add("\t" + op + " ");
+        add("\t");
+        add(op);
+        add(" ");
         node.getDst().accept(this);
         add(", ");
         node.getSrc().accept(this);
@@ -296,7 +392,9 @@ public class CodeGenerator implements IRVistor {
                 op = "not";
                 break;
         }
-        add("\t" + op + " ");
+        add("\t");
+        add(op);
+        add(" ");
         node.getDst().accept(this);
         add("\n");
     }
@@ -325,7 +423,8 @@ public class CodeGenerator implements IRVistor {
 
     @Override
     public void visit(Call node) {
-        add("\tcall " + getNASMFunctionName(node.getFunc()));
+        add(node.isTailCall() ? "\tjmp " : "\tcall ");
+        add(getNASMFunctionName(node.getFunc()));
         add("\n");
     }
 
@@ -353,6 +452,11 @@ public class CodeGenerator implements IRVistor {
         addLine("\tcdq");
     }
 
+    @Override
+    public void visit(Phi node) {
+
+    }
+
     @Override
     public void visit(Memory node) {
         inMemory = true;
@@ -368,8 +472,10 @@ public class CodeGenerator implements IRVistor {
             if(occur)
                 add(" + ");
             node.getIndex().accept(this);
-            if(node.getScale() != 1)
-                add(" * " + node.getScale());
+            if(node.getScale() != 1) {
+                add(" * ");
+                writer.write(node.getScale());
+            }
             occur = true;
         }
         if(node.getOffset() != null) {
@@ -381,12 +487,15 @@ public class CodeGenerator implements IRVistor {
             } else if(constant instanceof IntImmediate) {
                 int value = ((IntImmediate) constant).getValue();
                 if(occur) {
-                    if(value > 0)
-                        add(" + " + value);
-                    else if(value < 0)
-                        add(" - " + (-value));
+                    if(value > 0) {
+                        add(" + ");
+                        writer.write(value);
+                    } else if(value < 0) {
+                        add(" - ");
+                        writer.write(-value);
+                    }
                 } else {
-                    add(String.valueOf(value));
+                    writer.write(value);
                 }
             }
         }
@@ -407,9 +516,7 @@ public class CodeGenerator implements IRVistor {
     public void visit(VirtualRegister node) {
         if(node.getAllocatedPhysicalRegister() != null) {
             visit(node.getAllocatedPhysicalRegister());
-            varNames.put(node, node.getAllocatedPhysicalRegister().getName());
         } else {
-
             add(getVirtualRegisterName(node));
         }
     }
@@ -433,16 +540,16 @@ public class CodeGenerator implements IRVistor {
 
     @Override
     public void visit(IntImmediate node) {
-        add(String.valueOf(node.getValue()));
+        writer.write(node.getValue());
     }
 
     @Override
     public void visit(StaticVariable node) {
-        add(getStaticDataName(node));
+        add(getStaticVariableName(node));
     }
 
     @Override
     public void visit(StaticString node) {
-        add(getStaticDataName(node));
+        add(getStaticStringName(node));
     }
 }
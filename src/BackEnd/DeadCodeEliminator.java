@@ -5,59 +5,50 @@ import IR.Function;
 import IR.IRProgram;
 import IR.Instruction.*;
 import IR.Operand.*;
-
-
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import IR.RegisterVisitor;
 
 public class DeadCodeEliminator {
     private IRProgram program;
-    private LivenessAnalyzer livenessAnalyzer;
 
     public DeadCodeEliminator(IRProgram program) {
         this.program = program;
-        this.livenessAnalyzer = new LivenessAnalyzer();
     }
 
     public void run() {
-        for(Function function : program.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined)
-                process(function);
-        }
+        FunctionPassRunner.run(program, function -> new DeadCodeEliminator(program).process(function));
     }
 
-    private HashSet<VirtualRegister> trans(LinkedList<Register> registers) {
-        HashSet<VirtualRegister> virtualRegisters = new HashSet<>();
-        for(Register reg : registers) {
-            VirtualRegister vr = (VirtualRegister) reg;
-            virtualRegisters.add(vr);
+    private LivenessAnalyzer livenessAnalyzer;
+    private long[] live;
+    private boolean hasDefinition;
+    private boolean dead;
+    private final RegisterVisitor deadChecker = reg -> {
+        VirtualRegister vr = (VirtualRegister) reg;
+        hasDefinition = true;
+        if(LivenessAnalyzer.contains(live, livenessAnalyzer.getId(vr)) || vr.getSpillSpace() != null) {
+            dead = false;
         }
-        return virtualRegisters;
-    }
+    };
+    private final RegisterVisitor liveRemover = reg -> LivenessAnalyzer.remove(live, livenessAnalyzer.getId((VirtualRegister) reg));
+    private final RegisterVisitor liveAdder = reg -> LivenessAnalyzer.add(live, livenessAnalyzer.getId((VirtualRegister) reg));
 
     private void process(Function function) {
-        HashMap<BasicBlock, HashSet<VirtualRegister>> liveOut = livenessAnalyzer.getOUTs(function,false);
+        livenessAnalyzer = new LivenessAnalyzer(function, false);
         for(BasicBlock bb : function.getBasicBlocks()) {
-            HashSet<VirtualRegister> live = new HashSet<>(liveOut.get(bb));
+            live = livenessAnalyzer.getLiveOut(bb).clone();
             for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
-                LinkedList<Register> use = inst instanceof Call ? ((Call) inst).getAllUsedRegister() : inst.getUsedRegisters();
-                LinkedList<Register> def = inst.getDefinedRegisters();
-                boolean dead = true;
-                if(def.isEmpty())
-                    dead = false;
-                for(Register register : def) {
-                    VirtualRegister vr = (VirtualRegister) register;
-                    if(live.contains(vr) || vr.getSpillSpace() != null) {
-                        dead = false;
-                        break;
-                    }
-                }
-                if(dead && isRemovable(inst)) {
+                hasDefinition = false;
+                dead = true;
+                inst.forEachDefinedRegister(deadChecker);
+                if(hasDefinition && dead && isRemovable(inst)) {
                     inst.remove();
                 } else {
-                    live.removeAll(trans(def));
-                    live.addAll(trans(use));
+                    inst.forEachDefinedRegister(liveRemover);
+                    if(inst instanceof Call) {
+                        ((Call) inst).forEachArgumentRegister(liveAdder);
+                    } else {
+                        inst.forEachUsedRegister(liveAdder);
+                    }
                 }
             }
         }
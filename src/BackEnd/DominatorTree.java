@@ -0,0 +1,149 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DominatorTree {
+    private ArrayList<BasicBlock> reversePostOrder;
+    private int[] orders;
+    private int[] idoms;
+    private ArrayList<ArrayList<BasicBlock>> children;
+    private ArrayList<ArrayList<BasicBlock>> dominanceFrontiers;
+    private ArrayList<BasicBlock> preOrder;
+    private int[] preNumbers;
+    private int[] postNumbers;
+
+    @SuppressWarnings("unchecked")
+    public DominatorTree(Function function) {
+        this.reversePostOrder = new ArrayList<>(function.getReversePostOrder());
+        this.orders = new int[function.getBasicBlockCount()];
+        Arrays.fill(orders, -1);
+        for(int i = 0; i < reversePostOrder.size(); i++) {
+            orders[reversePostOrder.get(i).getId()] = i;
+        }
+        int n = reversePostOrder.size();
+        this.idoms = new int[n];
+        this.children = new ArrayList<>(n);
+        this.dominanceFrontiers = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            children.add(new ArrayList<>());
+            dominanceFrontiers.add(new ArrayList<>());
+        }
+        this.preOrder = new ArrayList<>(n);
+        this.preNumbers = new int[n];
+        this.postNumbers = new int[n];
+        computeIdoms();
+        computeDominanceFrontiers();
+        computeNumbers();
+    }
+
+    private int getOrder(BasicBlock bb) {
+        return bb.getId() < orders.length ? orders[bb.getId()] : -1;
+    }
+
+    private int intersect(int a, int b) {
+        while(a != b) {
+            while(a > b) a = idoms[a];
+            while(b > a) b = idoms[b];
+        }
+        return a;
+    }
+
+    private void computeIdoms() {
+        Arrays.fill(idoms, -1);
+        idoms[0] = 0;
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int i = 1; i < reversePostOrder.size(); i++) {
+                int newIdom = -1;
+                for(BasicBlock pred : reversePostOrder.get(i).getPrevBBs()) {
+                    int p = getOrder(pred);
+                    if(p < 0 || idoms[p] < 0) continue;
+                    newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                }
+                if(idoms[i] != newIdom) {
+                    idoms[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        for(int i = 1; i < reversePostOrder.size(); i++) {
+            children.get(idoms[i]).add(reversePostOrder.get(i));
+        }
+    }
+
+    private void computeDominanceFrontiers() {
+        for(int i = 0; i < reversePostOrder.size(); i++) {
+            BasicBlock bb = reversePostOrder.get(i);
+            if(bb.getPrevBBs().size() < 2) continue;
+            for(BasicBlock pred : bb.getPrevBBs()) {
+                int runner = getOrder(pred);
+                if(runner < 0) continue;
+                while(runner != idoms[i]) {
+                    ArrayList<BasicBlock> frontier = dominanceFrontiers.get(runner);
+                    if(!frontier.isEmpty() && frontier.get(frontier.size() - 1) == bb) break;
+                    frontier.add(bb);
+                    runner = idoms[runner];
+                }
+            }
+        }
+    }
+
+    private void computeNumbers() {
+        int[] stack = new int[reversePostOrder.size()];
+        int[] next = new int[reversePostOrder.size()];
+        int top = 0;
+        int counter = 0;
+        stack[top++] = 0;
+        preOrder.add(reversePostOrder.get(0));
+        preNumbers[0] = counter++;
+        while(top > 0) {
+            int i = stack[top - 1];
+            if(next[i] < children.get(i).size()) {
+                int child = getOrder(children.get(i).get(next[i]++));
+                preOrder.add(reversePostOrder.get(child));
+                preNumbers[child] = counter++;
+                stack[top++] = child;
+            } else {
+                postNumbers[i] = counter++;
+                top--;
+            }
+        }
+    }
+
+    public ArrayList<BasicBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    public ArrayList<BasicBlock> getPreOrder() {
+        return preOrder;
+    }
+
+    public boolean isReachable(BasicBlock bb) {
+        return getOrder(bb) >= 0;
+    }
+
+    public BasicBlock getIdom(BasicBlock bb) {
+        int i = getOrder(bb);
+        return i > 0 ? reversePostOrder.get(idoms[i]) : null;
+    }
+
+    public ArrayList<BasicBlock> getChildren(BasicBlock bb) {
+        return children.get(getOrder(bb));
+    }
+
+    public ArrayList<BasicBlock> getDominanceFrontier(BasicBlock bb) {
+        return dominanceFrontiers.get(getOrder(bb));
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        int i = getOrder(a);
+        int j = getOrder(b);
+        if(i < 0 || j < 0) return false;
+        return preNumbers[i] <= preNumbers[j] && postNumbers[j] <= postNumbers[i];
+    }
+}
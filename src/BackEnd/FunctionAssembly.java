@@ -0,0 +1,19 @@
+package BackEnd;
+
+public class FunctionAssembly {
+    private byte[] text;
+    private byte[] data;
+
+    public FunctionAssembly(byte[] text, byte[] data) {
+        this.text = text;
+        this.data = data;
+    }
+
+    public byte[] getText() {
+        return text;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,279 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.*;
+import Scope.VariableEntity;
+import Utility.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import static IR.RegisterSet.vrax;
+
+public class FunctionInliner {
+    private IRProgram program;
+    private HashMap<Function, Integer> sizes;
+    private HashMap<Register, Register> renameMap;
+    private HashMap<BasicBlock, BasicBlock> blockMap;
+    private Function caller;
+    private int inlinedCount;
+
+    public FunctionInliner(IRProgram program) {
+        this.program = program;
+        this.sizes = new HashMap<>();
+        this.inlinedCount = 0;
+    }
+
+    public void run() {
+        ArrayList<Function> functions = FunctionPassRunner.getUserDefinedFunctions(program);
+        ArrayList<Function> order = new ArrayList<>();
+        HashSet<Function> visited = new HashSet<>();
+        for(Function function : functions) {
+            visitCallees(function, visited, order);
+        }
+        HashSet<Function> userDefined = new HashSet<>(functions);
+        for(Function function : order) {
+            if(userDefined.contains(function) && !function.getName().equals("global_init")) {
+                process(function);
+            }
+        }
+        for(Function function : functions) {
+            function.calcUsedRecursiveVariables();
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    public int getInlinedCount() {
+        return inlinedCount;
+    }
+
+    private void visitCallees(Function function, HashSet<Function> visited, ArrayList<Function> order) {
+        if(!visited.add(function)) return;
+        for(Function callee : function.getCallees()) {
+            visitCallees(callee, visited, order);
+        }
+        order.add(function);
+    }
+
+    private static boolean isGlobal(Operand operand) {
+        if(!(operand instanceof VirtualRegister)) return false;
+        Memory spillSpace = ((VirtualRegister) operand).getSpillSpace();
+        return spillSpace != null && !(spillSpace instanceof StackSlot);
+    }
+
+    static boolean isGlobalMove(Instruction inst) {
+        if(!(inst instanceof Move)) return false;
+        Move move = (Move) inst;
+        if(isGlobal(move.getDst()) && ((VirtualRegister) move.getDst()).getSpillSpace() == move.getSrc()) return true;
+        return isGlobal(move.getSrc()) && ((VirtualRegister) move.getSrc()).getSpillSpace() == move.getDst();
+    }
+
+    private static boolean isCloneable(Instruction inst) {
+        return (inst instanceof Move || inst instanceof BinaryOperation || inst instanceof UnaryOperation
+                || inst instanceof Compare || inst instanceof Lea || inst instanceof Cdq
+                || inst instanceof Jump || inst instanceof CJump || inst instanceof Call)
+                && inst.getStackSlots().isEmpty();
+    }
+
+    private int getSize(Function function) {
+        Integer size = sizes.get(function);
+        if(size == null) {
+            size = calcSize(function);
+            sizes.put(function, size);
+        }
+        return size;
+    }
+
+    private int calcSize(Function function) {
+        if(function.getType() != Function.FuncType.UserDefined || function.getName().equals("main")
+                || function.getName().equals("global_init") || function.canBeMemorized() || function.getReachableFunctions().contains(function)) {
+            return -1;
+        }
+        BasicBlock headBB = function.getHeadBB();
+        BasicBlock tailBB = function.getTailBB();
+        if(headBB == tailBB || !function.getReversePostOrder().contains(tailBB)) return -1;
+        for(Instruction inst = tailBB.getHead(); inst != null; inst = inst.getNext()) {
+            if(inst == tailBB.getTail() ? !(inst instanceof Return) : !isGlobalMove(inst)) return -1;
+        }
+        Instruction inst = headBB.getHead();
+        for(VirtualRegister parameter : function.getParameters()) {
+            if(!(inst instanceof Move) || ((Move) inst).getDst() != parameter) return -1;
+            inst = inst.getNext();
+        }
+        int size = 0;
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            if(bb == tailBB) continue;
+            for(inst = bb == headBB ? inst : bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(isGlobalMove(inst)) continue;
+                if(!isCloneable(inst)) return -1;
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private void process(Function function) {
+        function.calcReversePostOrder();
+        LoopAnalyzer loopAnalyzer = new LoopAnalyzer(function, new DominatorTree(function));
+        ArrayList<Call> calls = new ArrayList<>();
+        ArrayList<Integer> depths = new ArrayList<>();
+        int size = 0;
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                size++;
+                if(inst instanceof Call) {
+                    calls.add((Call) inst);
+                    depths.add(loopAnalyzer.getLoopDepth(bb));
+                }
+            }
+        }
+
+        int budget = size + Config.MAX_INLINE_GROWTH;
+        boolean changed = false;
+        for(int i = 0; i < calls.size(); i++) {
+            Call call = calls.get(i);
+            Function callee = call.getFunc();
+            int calleeSize = getSize(callee);
+            if(calleeSize < 0 || call.getArgs().size() != callee.getParameters().size()) continue;
+            int cost = calleeSize - call.getArgs().size() - 2;
+            if(cost > (depths.get(i) == 0 ? Config.MAX_INLINE_COST : Config.MAX_INLINE_COST * 2)) continue;
+            if(size + calleeSize > budget) continue;
+            inline(call);
+            size += calleeSize;
+            inlinedCount++;
+            changed = true;
+        }
+
+        if(changed) {
+            function.getCallees().clear();
+            for(BasicBlock bb : function.getBasicBlocks()) {
+                for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                    if(inst instanceof Call) function.addCallee(((Call) inst).getFunc());
+                }
+            }
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    private void inline(Call call) {
+        BasicBlock bb = call.getBB();
+        Function callee = call.getFunc();
+        caller = bb.getFunction();
+
+        BasicBlock afterBB = bb.split(call.getNext(), "inlineAfterBB");
+
+        renameMap = new HashMap<>();
+        LinkedList<VirtualRegister> parameters = callee.getParameters();
+        for(int i = 0; i < parameters.size(); i++) {
+            VirtualRegister vr = new VirtualRegister(caller, "");
+            renameMap.put(parameters.get(i), vr);
+            bb.addNextInst(new Move(bb, vr, call.getArgs().get(i)));
+        }
+        call.remove();
+
+        blockMap = new HashMap<>();
+        for(BasicBlock calleeBB : callee.getReversePostOrder()) {
+            blockMap.put(calleeBB, calleeBB == callee.getTailBB() ? afterBB : new BasicBlock("inlineBB", caller));
+        }
+        bb.addNextJumpInst(new Jump(bb, blockMap.get(callee.getHeadBB())));
+        for(BasicBlock calleeBB : callee.getReversePostOrder()) {
+            if(calleeBB == callee.getTailBB()) continue;
+            BasicBlock cloneBB = blockMap.get(calleeBB);
+            Instruction inst = calleeBB.getHead();
+            if(calleeBB == callee.getHeadBB()) {
+                for(int i = 0; i < parameters.size(); i++) inst = inst.getNext();
+            }
+            for(; inst != null; inst = inst.getNext()) {
+                if(isGlobalMove(inst)) continue;
+                cloneBB.addNextJumpInst(copyInstruction(cloneBB, inst));
+            }
+        }
+
+        if(callee.hasReturnValue() && afterBB.getHead() instanceof Move && ((Move) afterBB.getHead()).getSrc() == vrax) {
+            ArrayList<Move> results = new ArrayList<>();
+            for(BasicBlock prev : afterBB.getPrevBBs()) {
+                Instruction tail = prev.getTail();
+                if(!(tail instanceof Jump) || !(tail.getPrev() instanceof Move) || ((Move) tail.getPrev()).getDst() != vrax) {
+                    results = null;
+                    break;
+                }
+                results.add((Move) tail.getPrev());
+            }
+            if(results != null) {
+                VirtualRegister result = new VirtualRegister(caller, "");
+                for(Move move : results) {
+                    move.setDst(result);
+                }
+                ((Move) afterBB.getHead()).setSrc(result);
+            }
+        }
+
+        for(VariableEntity var : callee.getUsedGlobalVariables()) {
+            if(caller.getUsedGlobalVariables().contains(var)) continue;
+            caller.addGlobalVariable(var);
+            VirtualRegister vr = var.getVirtualRegister();
+            caller.getHeadBB().addPrevInst(new Move(caller.getHeadBB(), vr, vr.getSpillSpace()));
+            caller.getTailBB().getTail().prepend(new Move(caller.getTailBB(), vr.getSpillSpace(), vr));
+        }
+    }
+
+    private Register copyRegister(Register reg) {
+        if(reg == null) return null;
+        Register renamed = renameMap.get(reg);
+        if(renamed == null && SSAConstructor.isVariable(reg)) {
+            renamed = new VirtualRegister(caller, "");
+            renameMap.put(reg, renamed);
+        }
+        return renamed == null ? reg : renamed;
+    }
+
+    private Operand copyOperand(Operand operand) {
+        if(operand instanceof Memory) {
+            Memory memory = (Memory) operand;
+            return new Memory(copyRegister(memory.getBase()), copyRegister(memory.getIndex()), memory.getScale(), memory.getOffset());
+        } else if(operand instanceof Register) {
+            return copyRegister((Register) operand);
+        }
+        return operand;
+    }
+
+    private Instruction copyInstruction(BasicBlock bb, Instruction inst) {
+        if(inst instanceof Move) {
+            Move move = (Move) inst;
+            return new Move(bb, (Address) copyOperand(move.getDst()), copyOperand(move.getSrc()));
+        } else if(inst instanceof BinaryOperation) {
+            BinaryOperation binary = (BinaryOperation) inst;
+            return new BinaryOperation(bb, (Address) copyOperand(binary.getDst()), binary.getOp(), copyOperand(binary.getSrc()));
+        } else if(inst instanceof UnaryOperation) {
+            UnaryOperation unary = (UnaryOperation) inst;
+            return new UnaryOperation(bb, unary.getOp(), (Address) copyOperand(unary.getDst()));
+        } else if(inst instanceof Compare) {
+            Compare compare = (Compare) inst;
+            return new Compare(bb, (Address) copyOperand(compare.getDst()), copyOperand(compare.getLhs()), compare.getOp(), copyOperand(compare.getRhs()));
+        } else if(inst instanceof Lea) {
+            Lea lea = (Lea) inst;
+            return new Lea(bb, (Register) copyOperand(lea.getDst()), (Memory) copyOperand(lea.getSrc()));
+        } else if(inst instanceof Cdq) {
+            return new Cdq(bb);
+        } else if(inst instanceof Jump) {
+            return new Jump(bb, blockMap.get(((Jump) inst).getTargetBB()));
+        } else if(inst instanceof CJump) {
+            CJump cjump = (CJump) inst;
+            return new CJump(bb, copyOperand(cjump.getLhs()), cjump.getOp(), copyOperand(cjump.getRhs()),
+                    blockMap.get(cjump.getThenBB()), blockMap.get(cjump.getElseBB()));
+        }
+        Call call = (Call) inst;
+        LinkedList<Operand> args = new LinkedList<>();
+        for(Operand arg : call.getArgs()) {
+            args.add(copyOperand(arg));
+        }
+        return new Call(bb, (Address) copyOperand(call.getDst()), call.getFunc(), args);
+    }
+}
@@ -0,0 +1,62 @@
+package BackEnd;
+
+import IR.Function;
+import IR.IRProgram;
+import Utility.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+public class FunctionPassRunner {
+    private static class FunctionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<Function> functions;
+        private int from;
+        private int to;
+        private Consumer<Function> pass;
+
+        private FunctionTask(List<Function> functions, int from, int to, Consumer<Function> pass) {
+            this.functions = functions;
+            this.from = from;
+            this.to = to;
+            this.pass = pass;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                pass.accept(functions.get(from));
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FunctionTask(functions, from, mid, pass), new FunctionTask(functions, mid, to, pass));
+            }
+        }
+    }
+
+    public static ArrayList<Function> getUserDefinedFunctions(IRProgram program) {
+        ArrayList<Function> functions = new ArrayList<>();
+        for(Function function : program.getFunctions().values()) {
+            if(function.getType() == Function.FuncType.UserDefined) {
+                functions.add(function);
+            }
+        }
+        return functions;
+    }
+
+    public static void run(IRProgram program, Consumer<Function> pass) {
+        run(getUserDefinedFunctions(program), pass);
+    }
+
+    public static void run(List<Function> functions, Consumer<Function> pass) {
+        if(!Config.useParallelBackend || functions.size() < 2) {
+            for(Function function : functions) {
+                pass.accept(function);
+            }
+        } else {
+            new FunctionTask(functions, 0, functions.size(), pass).invoke();
+        }
+    }
+}
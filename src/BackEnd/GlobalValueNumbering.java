@@ -0,0 +1,488 @@
+package BackEnd;
+
+import IR.*;
+import IR.Instruction.*;
+import IR.Operand.*;
+
+import Utility.IntIntMap;
+import Utility.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static IR.RegisterSet.*;
+
+public class GlobalValueNumbering implements IRVistor {
+    private IRProgram program;
+    private AtomicInteger eliminatedCount;
+
+    private DominatorTree dominatorTree;
+    private int curValueNumber;
+    private int eliminated;
+    private HashMap<Expression, Integer> expressionValueMap;
+    private IntObjectMap<VirtualRegister> valueRegisterMap;
+    private IntIntMap registerValueMap;
+    private IntIntMap valueImmediateMap;
+    private IntIntMap immediateValueMap;
+    private ArrayList<VirtualRegister> localRegisters;
+
+    private ArrayList<Expression> expressionLog;
+    private int[] valueLog;
+    private int valueLogSize;
+
+    private static class Expression {
+        private Object op;
+        private int lvalue;
+        private int rvalue;
+        private int scale;
+        private int offset;
+
+        private Expression(Object op, int lvalue, int rvalue, int scale, int offset) {
+            this.op = op;
+            this.lvalue = lvalue;
+            this.rvalue = rvalue;
+            this.scale = scale;
+            this.offset = offset;
+        }
+
+        private Expression(Object op, int lvalue, int rvalue) {
+            this(op, lvalue, rvalue, 0, 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(o instanceof Expression) {
+                Expression other = (Expression) o;
+                return op == other.op && lvalue == other.lvalue && rvalue == other.rvalue
+                        && scale == other.scale && offset == other.offset;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(op, lvalue, rvalue, scale, offset);
+        }
+    }
+
+    public GlobalValueNumbering(IRProgram program) {
+        this.program = program;
+        this.eliminatedCount = new AtomicInteger();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            GlobalValueNumbering globalValueNumbering = new GlobalValueNumbering(program);
+            function.accept(globalValueNumbering);
+            eliminatedCount.addAndGet(globalValueNumbering.eliminated);
+        });
+    }
+
+    public int getEliminatedCount() {
+        return eliminatedCount.get();
+    }
+
+    private static boolean isCommutative(BinaryOperation.BinaryOp op) {
+        switch (op) {
+            case ADD:
+            case MUL:
+            case AND:
+            case OR:
+            case XOR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private int getOperandValue(Operand operand) {
+        if(operand instanceof VirtualRegister) {
+            return getRegisterValue((VirtualRegister) operand);
+        } else if(operand instanceof IntImmediate) {
+            return getImmediateValue(((IntImmediate) operand).getValue());
+        } else return curValueNumber++;
+    }
+
+    private int getImmediateValue(int imm) {
+        if(!immediateValueMap.containsKey(imm)) {
+            valueImmediateMap.put(curValueNumber, imm);
+            immediateValueMap.put(imm, curValueNumber++);
+        }
+        return immediateValueMap.get(imm, -1);
+    }
+
+    private int getRegisterValue(VirtualRegister vr) {
+        if(!registerValueMap.containsKey(vr.getId())) {
+            changeRegisterValue(vr, curValueNumber++);
+        }
+        return registerValueMap.get(vr.getId(), -1);
+    }
+
+    private Operand getValueOperand(int value) {
+        if(valueImmediateMap.containsKey(value)) {
+            return new IntImmediate(valueImmediateMap.get(value, 0));
+        } else {
+            return valueRegisterMap.get(value);
+        }
+    }
+
+    private void changeRegisterValue(VirtualRegister vr, int value) {
+        if(SSAConstructor.isVariable(vr)) {
+            int oldValue = registerValueMap.get(vr.getId(), -1);
+            if(oldValue >= 0 && valueRegisterMap.get(oldValue) == vr) {
+                valueRegisterMap.remove(oldValue);
+            }
+            if(!valueRegisterMap.containsKey(value) && !valueImmediateMap.containsKey(value)) {
+                valueRegisterMap.put(value, vr);
+                if(valueLogSize == valueLog.length) {
+                    valueLog = Arrays.copyOf(valueLog, valueLogSize * 2);
+                }
+                valueLog[valueLogSize++] = value;
+            }
+        } else if(!registerValueMap.containsKey(vr.getId())) {
+            localRegisters.add(vr);
+        }
+        registerValueMap.put(vr.getId(), value);
+    }
+
+    private void clearLocalRegisters() {
+        for(VirtualRegister vr : localRegisters) {
+            registerValueMap.remove(vr.getId());
+        }
+        localRegisters.clear();
+    }
+
+    private int lookUp(Expression expression) {
+        Integer value = expressionValueMap.get(expression);
+        if(value == null) {
+            expressionValueMap.put(expression, curValueNumber);
+            expressionLog.add(expression);
+            return -1;
+        }
+        return value;
+    }
+
+    private void eliminate(Instruction inst, Address dst, Operand operand) {
+        if(inst.getPrev() instanceof Move && ((Move) inst.getPrev()).getDst() == dst) {
+            inst.getPrev().remove();
+        }
+        inst.replace(new Move(inst.getBB(), dst, operand));
+        eliminated++;
+    }
+
+    @Override
+    public void visit(IRProgram node) {
+        for(Function function : node.getFunctions().values()) {
+            if(function.getType() == Function.FuncType.UserDefined){
+                function.accept(this);
+            }
+        }
+    }
+
+    @Override
+    public void visit(Function node) {
+        node.calcReversePostOrder();
+        dominatorTree = new DominatorTree(node);
+        curValueNumber = 0;
+        expressionValueMap = new HashMap<>();
+        valueRegisterMap = new IntObjectMap<>();
+        registerValueMap = new IntIntMap();
+        valueImmediateMap = new IntIntMap();
+        immediateValueMap = new IntIntMap();
+        localRegisters = new ArrayList<>();
+        expressionLog = new ArrayList<>();
+        valueLog = new int[16];
+        valueLogSize = 0;
+
+        ArrayList<BasicBlock> blockStack = new ArrayList<>();
+        ArrayList<Integer> expressionMarks = new ArrayList<>();
+        ArrayList<Integer> valueMarks = new ArrayList<>();
+        int[] nextChild = new int[node.getBasicBlockCount()];
+        expressionMarks.add(expressionLog.size());
+        valueMarks.add(valueLogSize);
+        node.getHeadBB().accept(this);
+        blockStack.add(node.getHeadBB());
+        while(!blockStack.isEmpty()) {
+            BasicBlock bb = blockStack.get(blockStack.size() - 1);
+            ArrayList<BasicBlock> children = dominatorTree.getChildren(bb);
+            if(nextChild[bb.getId()] < children.size()) {
+                BasicBlock child = children.get(nextChild[bb.getId()]++);
+                expressionMarks.add(expressionLog.size());
+                valueMarks.add(valueLogSize);
+                child.accept(this);
+                blockStack.add(child);
+            } else {
+                int expressionMark = expressionMarks.remove(expressionMarks.size() - 1);
+                while(expressionLog.size() > expressionMark) {
+                    expressionValueMap.remove(expressionLog.remove(expressionLog.size() - 1));
+                }
+                int valueMark = valueMarks.remove(valueMarks.size() - 1);
+                while(valueLogSize > valueMark) {
+                    valueRegisterMap.remove(valueLog[--valueLogSize]);
+                }
+                blockStack.remove(blockStack.size() - 1);
+            }
+        }
+    }
+
+    @Override
+    public void visit(BasicBlock node) {
+        clearLocalRegisters();
+        for(Instruction inst = node.getHead(); inst != null; inst = inst.getNext()) {
+            inst.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Jump node) {
+
+    }
+
+    @Override
+    public void visit(CJump node) {
+
+    }
+
+    @Override
+    public void visit(Compare node) {
+        int lvalue = getOperandValue(node.getLhs());
+        int rvalue = getOperandValue(node.getRhs());
+        CJump.CompareOp op = node.getOp();
+        if(lvalue > rvalue) {
+            int tmp = lvalue;
+            lvalue = rvalue;
+            rvalue = tmp;
+            op = CJump.getSwappedCompareOp(op);
+        }
+        int resultValue = lookUp(new Expression(op, lvalue, rvalue));
+        if(resultValue >= 0) {
+            Operand operand = getValueOperand(resultValue);
+            if(operand != null) {
+                eliminate(node, node.getDst(), operand);
+            }
+        } else {
+            resultValue = curValueNumber++;
+        }
+        if(node.getDst() instanceof VirtualRegister) {
+            changeRegisterValue((VirtualRegister) node.getDst(), resultValue);
+        }
+    }
+
+    @Override
+    public void visit(Return node) {
+
+    }
+
+    private int doBinary(BinaryOperation.BinaryOp op, int limm, int rimm) {
+        switch (op) {
+            case SUB:
+                return limm - rimm;
+            case XOR:
+                return limm ^ rimm;
+            case MUL:
+                return limm * rimm;
+            case MOD:
+                if(rimm == 0) rimm = 1;
+                return limm % rimm;
+            case DIV:
+                if(rimm == 0) rimm = 1;
+                return limm / rimm;
+            case AND:
+                return limm & rimm;
+            case ADD:
+                return limm + rimm;
+            case OR:
+                return limm | rimm;
+            case SAL:
+                return limm << rimm;
+            case SAR:
+                return limm >> rimm;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public void visit(BinaryOperation node) {
+        boolean implicit = node.getOp() == BinaryOperation.BinaryOp.MUL || node.getOp() == BinaryOperation.BinaryOp.DIV || node.getOp() == BinaryOperation.BinaryOp.MOD;
+        Address dst = implicit ? (node.getOp() == BinaryOperation.BinaryOp.MOD ? vrdx : vrax) : node.getDst();
+        int lvalue = getOperandValue(implicit ? vrax : node.getDst());
+        int rvalue = getOperandValue(node.getSrc());
+        if(isCommutative(node.getOp()) && lvalue > rvalue) {
+            int tmp = lvalue;
+            lvalue = rvalue;
+            rvalue = tmp;
+        }
+        int resultValue = lookUp(new Expression(node.getOp(), lvalue, rvalue));
+        Operand operand = null;
+        if(resultValue >= 0) {
+            operand = getValueOperand(resultValue);
+        } else {
+            resultValue = curValueNumber++;
+            if(valueImmediateMap.containsKey(lvalue) && valueImmediateMap.containsKey(rvalue)) {
+                int resultImm = doBinary(node.getOp(), valueImmediateMap.get(lvalue, 0), valueImmediateMap.get(rvalue, 0));
+                resultValue = getImmediateValue(resultImm);
+                expressionValueMap.put(expressionLog.get(expressionLog.size() - 1), resultValue);
+                operand = new IntImmediate(resultImm);
+            }
+        }
+        if(operand != null) {
+            if(implicit && node.getOp() != BinaryOperation.BinaryOp.MUL && node.getPrev() instanceof Cdq) {
+                node.getPrev().remove();
+            }
+            eliminate(node, dst, operand);
+        }
+        if(implicit) {
+            changeRegisterValue(vrax, node.getOp() == BinaryOperation.BinaryOp.MOD ? curValueNumber++ : resultValue);
+            changeRegisterValue(vrdx, node.getOp() == BinaryOperation.BinaryOp.MOD ? resultValue : curValueNumber++);
+        } else if(dst instanceof VirtualRegister) {
+            changeRegisterValue((VirtualRegister) dst, resultValue);
+        }
+    }
+
+    private int doUnary(UnaryOperation.UnaryOp op, int imm) {
+        switch (op) {
+            case NOT:
+                return ~imm;
+            case NEG:
+                return -imm;
+            case INC:
+                return imm + 1;
+            case DEC:
+                return imm - 1;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public void visit(UnaryOperation node) {
+        int value = getOperandValue(node.getDst());
+        int resultValue = lookUp(new Expression(node.getOp(), value, -1));
+        Operand operand = null;
+        if(resultValue >= 0) {
+            operand = getValueOperand(resultValue);
+        } else {
+            resultValue = curValueNumber++;
+            if(valueImmediateMap.containsKey(value)) {
+                int resultImm = doUnary(node.getOp(), valueImmediateMap.get(value, 0));
+                resultValue = getImmediateValue(resultImm);
+                expressionValueMap.put(expressionLog.get(expressionLog.size() - 1), resultValue);
+                operand = new IntImmediate(resultImm);
+            }
+        }
+        if(operand != null) {
+            eliminate(node, node.getDst(), operand);
+        }
+        if(node.getDst() instanceof VirtualRegister) {
+            changeRegisterValue((VirtualRegister) node.getDst(), resultValue);
+        }
+    }
+
+    @Override
+    public void visit(Move node) {
+        int srcValue = getOperandValue(node.getSrc());
+        if(valueImmediateMap.containsKey(srcValue) && !(node.getSrc() instanceof IntImmediate)) {
+            node.replace(new Move(node.getBB(), node.getDst(), new IntImmediate(valueImmediateMap.get(srcValue, 0))));
+        }
+        if(node.getDst() instanceof VirtualRegister) {
+            changeRegisterValue((VirtualRegister) node.getDst(), srcValue);
+        }
+    }
+
+    @Override
+    public void visit(Lea node) {
+        Memory src = node.getSrc();
+        int resultValue = -1;
+        if(src.getOffset() == null || src.getOffset() instanceof IntImmediate) {
+            int baseValue = src.getBase() == null ? -1 : getOperandValue(src.getBase());
+            int indexValue = src.getIndex() == null ? -1 : getOperandValue(src.getIndex());
+            int offset = src.getOffset() == null ? 0 : ((IntImmediate) src.getOffset()).getValue();
+            resultValue = lookUp(new Expression(Lea.class, baseValue, indexValue, src.getScale(), offset));
+            if(resultValue >= 0) {
+                Operand operand = getValueOperand(resultValue);
+                if(operand != null) {
+                    eliminate(node, node.getDst(), operand);
+                }
+            }
+        }
+        if(resultValue < 0) {
+            resultValue = curValueNumber++;
+        }
+        if(node.getDst() instanceof VirtualRegister) {
+            changeRegisterValue((VirtualRegister) node.getDst(), resultValue);
+        }
+    }
+
+    @Override
+    public void visit(Call node) {
+        clearLocalRegisters();
+        changeRegisterValue(vrax, curValueNumber++);
+    }
+
+    @Override
+    public void visit(Push node) {
+
+    }
+
+    @Override
+    public void visit(Pop node) {
+        if(node.getDst() instanceof VirtualRegister)
+            changeRegisterValue((VirtualRegister) node.getDst(), curValueNumber++);
+    }
+
+    @Override
+    public void visit(Leave node) {
+
+    }
+
+    @Override
+    public void visit(Cdq node) {
+        changeRegisterValue(vrdx, curValueNumber++);
+    }
+
+    @Override
+    public void visit(Phi node) {
+        changeRegisterValue(node.getDst(), curValueNumber++);
+    }
+
+    @Override
+    public void visit(Memory node) {
+
+    }
+
+    @Override
+    public void visit(StackSlot node) {
+
+    }
+
+    @Override
+    public void visit(VirtualRegister node) {
+
+    }
+
+    @Override
+    public void visit(PhysicalRegister node) {
+
+    }
+
+    @Override
+    public void visit(IntImmediate node) {
+
+    }
+
+    @Override
+    public void visit(StaticVariable node) {
+
+    }
+
+    @Override
+    public void visit(StaticString node) {
+
+    }
+
+}
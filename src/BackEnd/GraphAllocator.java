@@ -3,7 +3,6 @@ package BackEnd;
 import IR.BasicBlock;
 import IR.Function;
 import IR.IRProgram;
-import IR.Instruction.Call;
 import IR.Instruction.Instruction;
 import IR.Instruction.Move;
 import IR.Operand.PhysicalRegister;
@@ -11,336 +10,432 @@ import IR.Operand.Register;
 import IR.Operand.StackSlot;
 import IR.Operand.VirtualRegister;
 import IR.RegisterSet;
+import IR.RegisterVisitor;
+import Utility.Config;
 
 import java.util.*;
 
 public class GraphAllocator {
+    private enum NodeState {
+        PRECOLORED, INITIAL, SIMPLIFY, FREEZE, SPILL, SELECT, COALESCED, COLORED, SPILLED
+    }
+
+    private enum MoveState {
+        WORKLIST, ACTIVE, COALESCED, CONSTRAINED, FROZEN
+    }
+
+    private static class NodeList {
+        private int[] items;
+        private int[] positions;
+        private int size;
+
+        private NodeList(int capacity) {
+            this.items = new int[capacity];
+            this.positions = new int[capacity];
+            this.size = 0;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void add(int n) {
+            positions[n] = size;
+            items[size++] = n;
+        }
+
+        private void remove(int n) {
+            int last = items[--size];
+            items[positions[n]] = last;
+            positions[last] = positions[n];
+        }
+
+        private int pop() {
+            return items[--size];
+        }
+    }
+
     private IRProgram program;
-    private LivenessAnalyzer livenessAnalyzer;
-    private HashSet<PhysicalRegister> physicalRegisters;
-    private HashMap<VirtualRegister, PhysicalRegister> colors;
+    private ArrayList<PhysicalRegister> physicalRegisters;
+    private boolean[] callerSave;
     private int K;
 
-    private HashMap<VirtualRegister, HashSet<VirtualRegister>> adjSet;
-    private HashMap<VirtualRegister, Integer> degrees;
-    private HashMap<VirtualRegister, HashSet<VirtualRegister>> adjList;
-    private HashMap<VirtualRegister,HashSet<Move>> moveList;
-    private HashSet<VirtualRegister> simplifyWorkList;
-    private HashSet<Move> workListMoves;
-    private HashSet<VirtualRegister> freezeWorkList;
-    private HashSet<VirtualRegister> spillWorkList;
-    private HashSet<VirtualRegister> selectStack;
-    private HashSet<VirtualRegister> coalescedNodes;
-    private HashSet<Move> activeMoves;
-    private HashMap<VirtualRegister, VirtualRegister> alias;
-    private HashSet<Move> coalescedMoves;
-    private HashSet<Move> constrainMoves;
-    private HashSet<Move> frozenMoves;
+    private int N;
+    private ArrayList<VirtualRegister> nodes;
+    private long[] adjMatrix;
+    private int[][] adjList;
+    private int[] adjListSizes;
+    private int[] degrees;
+    private NodeState[] nodeStates;
+    private int[] alias;
+    private int[] colors;
+    private int[][] moveList;
+    private int[] moveListSizes;
+
+    private int moveCount;
+    private int[] moveDsts;
+    private int[] moveSrcs;
+    private MoveState[] moveStates;
+    private int[] workListMoves;
+    private int workListMovesSize;
+
+    private NodeList simplifyWorkList;
+    private NodeList freezeWorkList;
+    private NodeList spillWorkList;
+    private int[] selectStack;
+    private int selectStackSize;
     private HashSet<VirtualRegister> spillNodes;
-    private HashSet<VirtualRegister> coloredNodes;
-    private HashSet<VirtualRegister> precolored;
-    private HashSet<VirtualRegister> initial;
+
+    private int[] marks;
+    private int markStamp;
+
+    private LivenessAnalyzer livenessAnalyzer;
+    private long[] live;
+    private final RegisterVisitor liveAdder = reg -> LivenessAnalyzer.add(live, livenessAnalyzer.getId((VirtualRegister) reg));
+    private final RegisterVisitor interferenceBuilder = reg -> {
+        int d = livenessAnalyzer.getId((VirtualRegister) reg);
+        for(int l = LivenessAnalyzer.nextSetBit(live, 0); l >= 0; l = LivenessAnalyzer.nextSetBit(live, l + 1)) {
+            addEdge(l, d);
+        }
+    };
 
     public GraphAllocator(IRProgram program) {
         this.program = program;
-        this.livenessAnalyzer = new LivenessAnalyzer();
-        this.physicalRegisters = new HashSet<>();
+        this.physicalRegisters = new ArrayList<>();
         for(PhysicalRegister pr : RegisterSet.allRegs) {
             if(!pr.getName().equals("rsp") && !pr.getName().equals("rbp")) {
                 physicalRegisters.add(pr);
             }
         }
         this.K = physicalRegisters.size();
-        init();
-    }
-
-    private void init() {
-        this.colors = new HashMap<>();
-
-        this.adjSet = new HashMap<>();
-        this.adjList = new HashMap<>();
-        this.degrees = new HashMap<>();
-        this.moveList = new HashMap<>();
-        this.simplifyWorkList = new HashSet<>();
-        this.workListMoves = new HashSet<>();
-        this.freezeWorkList = new HashSet<>();
-        this.spillWorkList = new HashSet<>();
-
-        this.selectStack = new HashSet<>();
-        this.coalescedNodes = new HashSet<>();
-        this.activeMoves = new HashSet<>();
-        this.alias = new HashMap<>();
-        this.coalescedMoves = new HashSet<>();
-        this.constrainMoves = new HashSet<>();
-        this.frozenMoves = new HashSet<>();
-        this.spillNodes = new HashSet<>();
-        this.coloredNodes = new HashSet<>();
-        this.precolored = new HashSet<>();
-        this.initial = new HashSet<>();
-    }
-
-    private void addRegister(VirtualRegister vr) {
-        if(!adjList.containsKey(vr)) {
-            adjSet.put(vr, new HashSet<>());
-            adjList.put(vr, new HashSet<>());
-            moveList.put(vr, new HashSet<>());
-            alias.put(vr, vr);
-            if(vr.getAllocatedPhysicalRegister() != null) {
-                precolored.add(vr);
-                degrees.put(vr, Integer.MAX_VALUE);
+        this.callerSave = new boolean[K];
+        for(int i = 0; i < K; i++) {
+            callerSave[i] = RegisterSet.callerSave.contains(physicalRegisters.get(i));
+        }
+    }
+
+    private void init(LivenessAnalyzer livenessAnalyzer) {
+        this.N = livenessAnalyzer.size();
+        this.nodes = livenessAnalyzer.getRegisters();
+        this.adjMatrix = new long[(int) (((long) N * (N - 1) / 2 + 63) >>> 6)];
+        this.adjList = new int[N][];
+        this.adjListSizes = new int[N];
+        this.degrees = new int[N];
+        this.nodeStates = new NodeState[N];
+        this.alias = new int[N];
+        this.colors = new int[N];
+        this.moveList = new int[N][];
+        this.moveListSizes = new int[N];
+        for(int n = 0; n < N; n++) {
+            adjList[n] = new int[4];
+            moveList[n] = new int[2];
+            alias[n] = n;
+            colors[n] = -1;
+            PhysicalRegister pr = nodes.get(n).getAllocatedPhysicalRegister();
+            if(pr != null) {
+                nodeStates[n] = NodeState.PRECOLORED;
+                degrees[n] = Integer.MAX_VALUE;
+                colors[n] = physicalRegisters.indexOf(pr);
             } else {
-                initial.add(vr);
-                degrees.put(vr, 0);
+                nodeStates[n] = NodeState.INITIAL;
             }
         }
+
+        this.moveCount = 0;
+        this.moveDsts = new int[16];
+        this.moveSrcs = new int[16];
+
+        this.simplifyWorkList = new NodeList(N);
+        this.freezeWorkList = new NodeList(N);
+        this.spillWorkList = new NodeList(N);
+        this.selectStack = new int[N];
+        this.selectStackSize = 0;
+        this.spillNodes = new HashSet<>();
+
+        this.marks = new int[N];
+        this.markStamp = 0;
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if(size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+
+    private long matrixIndex(int a, int b) {
+        long hi = Math.max(a, b);
+        long lo = Math.min(a, b);
+        return hi * (hi - 1) / 2 + lo;
+    }
+
+    private boolean adjacentTo(int a, int b) {
+        long index = matrixIndex(a, b);
+        return (adjMatrix[(int) (index >>> 6)] & (1L << index)) != 0;
     }
 
-    private void addEdge(VirtualRegister a, VirtualRegister b) {
-        if (!a.equals(b) && !adjSet.get(a).contains(b)) {
-            adjSet.get(a).add(b);
-            adjSet.get(b).add(a);
-            if (!precolored.contains(a)) {
-                adjList.get(a).add(b);
-                degrees.put(a, degree(a) + 1);
+    private boolean isPrecolored(int n) {
+        return nodeStates[n] == NodeState.PRECOLORED;
+    }
+
+    private void addEdge(int a, int b) {
+        if(a != b && !adjacentTo(a, b)) {
+            long index = matrixIndex(a, b);
+            adjMatrix[(int) (index >>> 6)] |= 1L << index;
+            if(!isPrecolored(a)) {
+                adjList[a] = append(adjList[a], adjListSizes[a]++, b);
+                degrees[a]++;
             }
-            if (!precolored.contains(b)) {
-                adjList.get(b).add(a);
-                degrees.put(b, degree(b) + 1);
+            if(!isPrecolored(b)) {
+                adjList[b] = append(adjList[b], adjListSizes[b]++, a);
+                degrees[b]++;
             }
         }
     }
 
-    private HashSet<VirtualRegister> adjacent(VirtualRegister n) {
-        HashSet<VirtualRegister> adjacent = new HashSet<>(adjList.get(n));
-        adjacent.removeAll(union(selectStack, coalescedNodes));
-        return adjacent;
+    private boolean isAdjacent(int t) {
+        return nodeStates[t] != NodeState.SELECT && nodeStates[t] != NodeState.COALESCED;
     }
 
-    private HashSet<Move> nodeMoves(VirtualRegister n) {
-        HashSet<Move> nodeMoves = new HashSet<>(activeMoves);
-        nodeMoves.addAll(workListMoves);
-        nodeMoves.retainAll(moveList.get(n));
-        return nodeMoves;
+    private void addMove(int n, int m) {
+        moveList[n] = append(moveList[n], moveListSizes[n]++, m);
     }
 
-    private boolean moveRelated(VirtualRegister n) {
-        return !nodeMoves(n).isEmpty();
+    private boolean isNodeMove(int m) {
+        return moveStates[m] == MoveState.ACTIVE || moveStates[m] == MoveState.WORKLIST;
     }
 
-    private int degree(VirtualRegister n) {
-        return degrees.get(n);
+    private boolean moveRelated(int n) {
+        int[] moves = moveList[n];
+        for(int i = 0; i < moveListSizes[n]; i++) {
+            if(isNodeMove(moves[i])) return true;
+        }
+        return false;
     }
 
-    private void decrementDegree(VirtualRegister m) {
-        int d = degree(m);
-        degrees.put(m, d - 1);
-        if(d == K) {
-            HashSet<VirtualRegister> enableMove = new HashSet<>(adjacent(m));
-            enableMove.add(m);
-            enableMoves(enableMove);
-            spillWorkList.remove(m);
-            if(moveRelated(m)) {
-                freezeWorkList.add(m);
-            } else {
-                simplifyWorkList.add(m);
-            }
+    private void pushWorkListMove(int m) {
+        moveStates[m] = MoveState.WORKLIST;
+        workListMoves[workListMovesSize++] = m;
+    }
+
+    private void removeFromWorkList(int n) {
+        switch(nodeStates[n]) {
+            case SIMPLIFY:
+                simplifyWorkList.remove(n);
+                break;
+            case FREEZE:
+                freezeWorkList.remove(n);
+                break;
+            case SPILL:
+                spillWorkList.remove(n);
+                break;
         }
     }
 
-    private void enableMoves(HashSet<VirtualRegister> nodes) {
-        for(VirtualRegister n : nodes) {
-            for(Move m : nodeMoves(n)) {
-                if(activeMoves.contains(m)) {
-                    activeMoves.remove(m);
-                    workListMoves.add(m);
-                }
+    private void moveToWorkList(int n, NodeState state) {
+        removeFromWorkList(n);
+        nodeStates[n] = state;
+        switch(state) {
+            case SIMPLIFY:
+                simplifyWorkList.add(n);
+                break;
+            case FREEZE:
+                freezeWorkList.add(n);
+                break;
+            case SPILL:
+                spillWorkList.add(n);
+                break;
+        }
+    }
+
+    private void decrementDegree(int m) {
+        int d = degrees[m]--;
+        if(d == K) {
+            enableMoves(m);
+            int[] adjacent = adjList[m];
+            for(int i = 0; i < adjListSizes[m]; i++) {
+                if(isAdjacent(adjacent[i])) enableMoves(adjacent[i]);
             }
+            moveToWorkList(m, moveRelated(m) ? NodeState.FREEZE : NodeState.SIMPLIFY);
         }
     }
 
-    private void enableMoves(VirtualRegister vr) {
-        for(Move m : nodeMoves(vr)) {
-            if(activeMoves.contains(m)) {
-                activeMoves.remove(m);
-                workListMoves.add(m);
+    private void enableMoves(int n) {
+        int[] moves = moveList[n];
+        for(int i = 0; i < moveListSizes[n]; i++) {
+            if(moveStates[moves[i]] == MoveState.ACTIVE) {
+                pushWorkListMove(moves[i]);
             }
         }
     }
 
-    private void addWorkList(VirtualRegister u) {
-        if(!precolored.contains(u) && !moveRelated(u) && degree(u) < K) {
-            freezeWorkList.remove(u);
-            simplifyWorkList.add(u);
+    private void addWorkList(int u) {
+        if(!isPrecolored(u) && !moveRelated(u) && degrees[u] < K) {
+            moveToWorkList(u, NodeState.SIMPLIFY);
         }
     }
 
-    private boolean ok(VirtualRegister t, VirtualRegister r) {
-        return degree(t) < K || precolored.contains(t) || adjSet.get(t).contains(r);
+    private boolean ok(int t, int r) {
+        return degrees[t] < K || isPrecolored(t) || adjacentTo(t, r);
     }
 
-    private boolean conservative(HashSet<VirtualRegister> nodes) {
-        int k = 0;
-        for(VirtualRegister n : nodes) {
-            if(degree(n) >= K) k++;
+    private int countSignificant(int n, int k) {
+        int[] adjacent = adjList[n];
+        for(int i = 0; i < adjListSizes[n]; i++) {
+            int t = adjacent[i];
+            if(isAdjacent(t) && marks[t] != markStamp) {
+                marks[t] = markStamp;
+                if(degrees[t] >= K) k++;
+            }
         }
-        return k < K;
+        return k;
+    }
+
+    private boolean conservative(int u, int v) {
+        markStamp++;
+        return countSignificant(v, countSignificant(u, 0)) < K;
     }
 
     private void coalesce() {
-        System.err.println("================================ coalesce ====================================");
-        Move m = workListMoves.iterator().next();
-        VirtualRegister x = getAlias((VirtualRegister) m.getDst());
-        VirtualRegister y = getAlias((VirtualRegister) m.getSrc());
-        VirtualRegister u;
-        VirtualRegister v;
-        if(precolored.contains(y)) {
+        int m = workListMoves[--workListMovesSize];
+        int x = getAlias(moveDsts[m]);
+        int y = getAlias(moveSrcs[m]);
+        int u;
+        int v;
+        if(isPrecolored(y)) {
             u = y;
             v = x;
         } else {
             u = x;
             v = y;
         }
-        workListMoves.remove(m);
         if(u == v) {
-            coalescedMoves.add(m);
+            moveStates[m] = MoveState.COALESCED;
             addWorkList(u);
-        } else if(precolored.contains(v) || adjSet.get(u).contains(v)) {
-            constrainMoves.add(m);
+        } else if(isPrecolored(v) || adjacentTo(u, v)) {
+            moveStates[m] = MoveState.CONSTRAINED;
             addWorkList(u);
             addWorkList(v);
-        } else if((precolored.contains(u) && judgeOk(u, v))
-                || (!precolored.contains(u) && conservative(union(adjacent(u), adjacent(v))))) {
-            coalescedMoves.add(m);
+        } else if((isPrecolored(u) && judgeOk(u, v)) || (!isPrecolored(u) && conservative(u, v))) {
+            moveStates[m] = MoveState.COALESCED;
             combine(u, v);
             addWorkList(u);
         } else {
-            activeMoves.add(m);
+            moveStates[m] = MoveState.ACTIVE;
         }
     }
 
-    private boolean judgeOk(VirtualRegister u, VirtualRegister v) {
-        for(VirtualRegister t : adjacent(v)) {
-            if(!ok(t, u)) return false;
+    private boolean judgeOk(int u, int v) {
+        int[] adjacent = adjList[v];
+        for(int i = 0; i < adjListSizes[v]; i++) {
+            int t = adjacent[i];
+            if(isAdjacent(t) && !ok(t, u)) return false;
         }
         return true;
     }
 
-    private HashSet<VirtualRegister> union(HashSet<VirtualRegister> a, HashSet<VirtualRegister> b) {
-        HashSet<VirtualRegister> union = new HashSet<>(a);
-        union.addAll(b);
-        return union; 
-    }
-
-    private void combine(VirtualRegister u, VirtualRegister v) {
-        if(freezeWorkList.contains(v)) {
-            freezeWorkList.remove(v);
-        } else {
-            spillWorkList.remove(v);
+    private void combine(int u, int v) {
+        removeFromWorkList(v);
+        nodeStates[v] = NodeState.COALESCED;
+        alias[v] = u;
+        for(int i = 0; i < moveListSizes[v]; i++) {
+            addMove(u, moveList[v][i]);
         }
-        coalescedNodes.add(v);
-        alias.put(v, u);
-        moveList.get(u).addAll(moveList.get(v));
         enableMoves(v);
-        for(VirtualRegister t : adjacent(v)) {
-            addEdge(t, u);
-            decrementDegree(t);
+        int[] adjacent = adjList[v];
+        for(int i = 0; i < adjListSizes[v]; i++) {
+            int t = adjacent[i];
+            if(isAdjacent(t)) {
+                addEdge(t, u);
+                decrementDegree(t);
+            }
         }
-        if(degree(u) >= K && freezeWorkList.contains(u)) {
-            freezeWorkList.remove(u);
-            spillWorkList.add(u);
+        if(degrees[u] >= K && nodeStates[u] == NodeState.FREEZE) {
+            moveToWorkList(u, NodeState.SPILL);
         }
     }
 
-    private VirtualRegister getAlias(VirtualRegister n) {
-        if(coalescedNodes.contains(n)) return getAlias(alias.get(n));
-        else return n;
+    private int getAlias(int n) {
+        while(nodeStates[n] == NodeState.COALESCED) {
+            n = alias[n];
+        }
+        return n;
     }
 
     private void simplify() {
-        System.err.println("================================ simplify ====================================");
-        VirtualRegister n = simplifyWorkList.iterator().next();
-        simplifyWorkList.remove(n);
-        selectStack.add(n);
-        for(VirtualRegister m : adjacent(n)) {
-            decrementDegree(m);
+        int n = simplifyWorkList.pop();
+        nodeStates[n] = NodeState.SELECT;
+        selectStack[selectStackSize++] = n;
+        int[] adjacent = adjList[n];
+        for(int i = 0; i < adjListSizes[n]; i++) {
+            if(isAdjacent(adjacent[i])) decrementDegree(adjacent[i]);
         }
     }
 
     private void freeze() {
-        System.err.println("================================ freeze ====================================");
-        VirtualRegister u = freezeWorkList.iterator().next();
-        freezeWorkList.remove(u);
+        int u = freezeWorkList.pop();
+        nodeStates[u] = NodeState.SIMPLIFY;
         simplifyWorkList.add(u);
         freezeMoves(u);
     }
 
-    private void freezeMoves(VirtualRegister u) {
-        for(Move m : nodeMoves(u)) {
-            VirtualRegister v;
-            VirtualRegister x = (VirtualRegister) m.getDst();
-            VirtualRegister y = (VirtualRegister) m.getSrc();
-            if(getAlias(y) == getAlias(u)) {
-                v = getAlias(x);
+    private void freezeMoves(int u) {
+        int[] moves = moveList[u];
+        for(int i = 0; i < moveListSizes[u]; i++) {
+            int m = moves[i];
+            if(!isNodeMove(m)) continue;
+            int v;
+            if(getAlias(moveSrcs[m]) == getAlias(u)) {
+                v = getAlias(moveDsts[m]);
             } else {
-                v = getAlias(y);
+                v = getAlias(moveSrcs[m]);
             }
-            activeMoves.remove(m);
-            frozenMoves.add(m);
-            if(freezeWorkList.contains(v) && nodeMoves(v).isEmpty()) {
-                freezeWorkList.remove(v);
-                simplifyWorkList.add(v);
+            moveStates[m] = MoveState.FROZEN;
+            if(nodeStates[v] == NodeState.FREEZE && !moveRelated(v)) {
+                moveToWorkList(v, NodeState.SIMPLIFY);
             }
         }
     }
 
     private void selectSpill() {
-        System.err.println("================================ selectSpill ====================================");
-        VirtualRegister m = null;
-        int d = -1;
-        for(VirtualRegister vr : spillWorkList) {
-            if(degree(vr) > d) {
-                d = degree(vr);
-                m = vr;
+        int m = spillWorkList.items[0];
+        if(Config.useMaxDegreeSpill) {
+            for(int i = 1; i < spillWorkList.size; i++) {
+                if(degrees[spillWorkList.items[i]] > degrees[m]) {
+                    m = spillWorkList.items[i];
+                }
             }
         }
-        m = spillWorkList.iterator().next();
-        spillWorkList.remove(m);
-        spillWorkList.remove(m);
-        simplifyWorkList.add(m);
+        moveToWorkList(m, NodeState.SIMPLIFY);
         freezeMoves(m);
     }
-    
+
     private void assignColors() {
-        System.err.println("================================ assign colors ====================================");
-        for(VirtualRegister n : selectStack) {
-            HashSet<PhysicalRegister> okColors = new HashSet<>(physicalRegisters);
-            for(VirtualRegister w : adjList.get(n)) {
-                if(coloredNodes.contains(getAlias(w)) || precolored.contains(getAlias(w))) {
-                    okColors.remove(colors.get(getAlias(w)));
+        boolean[] okColors = new boolean[K];
+        while(selectStackSize > 0) {
+            int n = selectStack[--selectStackSize];
+            Arrays.fill(okColors, true);
+            int[] adjacent = adjList[n];
+            for(int i = 0; i < adjListSizes[n]; i++) {
+                int w = getAlias(adjacent[i]);
+                if((nodeStates[w] == NodeState.COLORED || nodeStates[w] == NodeState.PRECOLORED) && colors[w] >= 0) {
+                    okColors[colors[w]] = false;
                 }
             }
-            if(okColors.isEmpty()) {
-                spillNodes.add(n);
-            } else {
-                coloredNodes.add(n);
-                PhysicalRegister c = null;
-                for(PhysicalRegister reg : RegisterSet.callerSave) {
-                    if(okColors.contains(reg)) {
-                        c = reg;
-                        break;
-                    }
+            int c = -1;
+            for(int i = 0; i < K; i++) {
+                if(okColors[i] && (c == -1 || (callerSave[i] && !callerSave[c]))) {
+                    c = i;
                 }
-                if(c == null) c = okColors.iterator().next();
-                colors.put(n, c);
-                System.err.println("assign color : vr = " + n.getName() + " pr = " + c.getName());
             }
-        }
-        selectStack.clear();
-        for(VirtualRegister n : coalescedNodes) {
-            System.err.println("n = " + n.getName() + " " + "alias(n) = " + getAlias(n).getName());
-            coloredNodes.add(n);
-            colors.put(n, colors.get(getAlias(n)));
-            System.err.println("assign color : vr = " + n.getName() + " pr = " + colors.get(getAlias(n)).getName());
+            if(c == -1) {
+                nodeStates[n] = NodeState.SPILLED;
+                spillNodes.add(nodes.get(n));
+            } else {
+                nodeStates[n] = NodeState.COLORED;
+                colors[n] = c;
+            }
         }
     }
 
@@ -358,72 +453,47 @@ public class GraphAllocator {
     }
 
     private void build(Function function) {
-        System.err.println("================================ build ====================================");
-        HashMap<BasicBlock, HashSet<VirtualRegister>> OUTs = livenessAnalyzer.getOUTs(function, true);
-        for(BasicBlock bb : function.getBasicBlocks()) {
-            /*if(bb == function.getHeadBB()) {
-                for(VirtualRegister vr : RegisterSet.vcalleeSave) {
-                    addRegister(vr);
-                }
-            }*/
-            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
-                for(VirtualRegister vr : trans(inst.getUsedRegisters())) {
-                    addRegister(vr);
-                }
-                for(VirtualRegister vr : trans(inst.getDefinedRegisters())) {
-                    addRegister(vr);
-                }
-            }
-        }
-
+        livenessAnalyzer = new LivenessAnalyzer(function, true);
+        init(livenessAnalyzer);
         for(BasicBlock bb : function.getBasicBlocks()) {
-            HashSet<VirtualRegister> live = new HashSet<>(OUTs.get(bb));
-            /*if(bb == function.getTailBB()) {
-                live.addAll(RegisterSet.vcalleeSave);
-            }*/
+            live = livenessAnalyzer.getLiveOut(bb).clone();
             for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
                 if(isMoveInstruction(inst)) {
-                    live.removeAll(trans(inst.getUsedRegisters()));
-                    for(VirtualRegister n : union(trans(inst.getDefinedRegisters()), trans(inst.getUsedRegisters()))) {
-                        moveList.get(n).add((Move) inst);
-                    }
-                    workListMoves.add((Move) inst);
-                }
-                live.addAll(trans(inst.getDefinedRegisters()));
-                for(VirtualRegister d : trans(inst.getDefinedRegisters())) {
-                    for(VirtualRegister l : live) {
-                        addEdge(l, d);
+                    int dst = livenessAnalyzer.getId((VirtualRegister) ((Move) inst).getDst());
+                    int src = livenessAnalyzer.getId((VirtualRegister) ((Move) inst).getSrc());
+                    LivenessAnalyzer.remove(live, src);
+                    if(moveCount == moveDsts.length) {
+                        moveDsts = Arrays.copyOf(moveDsts, moveCount * 2);
+                        moveSrcs = Arrays.copyOf(moveSrcs, moveCount * 2);
                     }
+                    moveDsts[moveCount] = dst;
+                    moveSrcs[moveCount] = src;
+                    addMove(dst, moveCount);
+                    if(src != dst) addMove(src, moveCount);
+                    moveCount++;
                 }
-                live.removeAll(trans(inst.getDefinedRegisters()));
-                live.addAll(trans(inst.getUsedRegisters()));
+                inst.forEachDefinedRegister(liveAdder);
+                inst.forEachDefinedRegister(interferenceBuilder);
+                livenessAnalyzer.stepBackward(live, inst);
             }
-            /*if(bb == function.getHeadBB()) {
-                HashSet<VirtualRegister> def = new HashSet<>(RegisterSet.vcalleeSave);
-                live.addAll(def);
-                for(VirtualRegister d : def) {
-                    for(VirtualRegister l : live) {
-                        addEdge(l, d);
-                    }
-                }
-                live.removeAll(def);
-            }*/
+        }
+        moveStates = new MoveState[moveCount];
+        workListMoves = new int[moveCount];
+        workListMovesSize = 0;
+        for(int m = moveCount - 1; m >= 0; m--) {
+            pushWorkListMove(m);
         }
     }
 
     private void makeWorkList() {
-        System.err.println("================================ makeWorkList ====================================");
-        System.err.println("initial.size() = " + initial.size());
-        for(VirtualRegister vr : initial) {
-            if(degree(vr) >= K) {
-                System.err.println("add spillWorkList " + vr.getName());
-                spillWorkList.add(vr);
-            } else if(moveRelated(vr)) {
-                System.err.println("add freezeWorkList " + vr.getName());
-                freezeWorkList.add(vr);
+        for(int n = 0; n < N; n++) {
+            if(isPrecolored(n)) continue;
+            if(degrees[n] >= K) {
+                moveToWorkList(n, NodeState.SPILL);
+            } else if(moveRelated(n)) {
+                moveToWorkList(n, NodeState.FREEZE);
             } else {
-                System.err.println("add simplifyWorkList " + vr.getName());
-                simplifyWorkList.add(vr);
+                moveToWorkList(n, NodeState.SIMPLIFY);
             }
         }
     }
@@ -441,13 +511,13 @@ public class GraphAllocator {
                 HashMap<Register, Register> renameMap = new HashMap<>();
                 for(VirtualRegister vr : trans(inst.getUsedRegisters())) {
                     if(spillNodes.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                        renameMap.put(vr, new VirtualRegister(function, ""));
                         use.add(vr);
                     }
                 }
                 for(VirtualRegister vr : trans(inst.getDefinedRegisters())) {
                     if(spillNodes.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                        renameMap.put(vr, new VirtualRegister(function, ""));
                         def.add(vr);
                     }
                 }
@@ -466,7 +536,11 @@ public class GraphAllocator {
     }
 
     private void allocateRegisters(Function function) {
-        HashMap<Register, Register> renameMap = new HashMap<>(colors);
+        HashMap<Register, Register> renameMap = new HashMap<>();
+        for(int n = 0; n < N; n++) {
+            int a = getAlias(n);
+            renameMap.put(nodes.get(n), isPrecolored(a) ? nodes.get(a).getAllocatedPhysicalRegister() : physicalRegisters.get(colors[a]));
+        }
         for(BasicBlock bb : function.getBasicBlocks()) {
             for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
                 inst.renameUsedRegisters(renameMap);
@@ -474,53 +548,19 @@ public class GraphAllocator {
             }
         }
     }
-    
-    private void preColor() {
-        System.err.println("================================ precolor ====================================");
-        for(VirtualRegister n : precolored) {
-            colors.put(n, n.getAllocatedPhysicalRegister());
-        }
-    }
-
-    private void check() {
-        for(VirtualRegister u :initial) {
-            HashSet<VirtualRegister> rhs = new HashSet<>(union(precolored, initial));
-            rhs.retainAll(adjList.get(u));
-            assert degree(u) == rhs.size();
-        }
-        for(VirtualRegister u : simplifyWorkList) {
-            HashSet<Move> rhs = new HashSet<>(activeMoves);
-            rhs.addAll(workListMoves);
-            rhs.retainAll(moveList.get(u));
-            assert degree(u) < K && rhs.isEmpty();
-        }
-        for(VirtualRegister u : freezeWorkList) {
-            HashSet<Move> rhs = new HashSet<>(activeMoves);
-            rhs.addAll(workListMoves);
-            rhs.retainAll(moveList.get(u));
-            assert degree(u) < K && rhs.isEmpty();
-        }
-        for(VirtualRegister u : spillWorkList) {
-            assert degree(u) >= K;
-        }
-    }
 
     private void process(Function function) {
         while(true){
-            init();
             build(function);
-            preColor();
             makeWorkList();
-//            check();
             do{
                 if(!simplifyWorkList.isEmpty()) simplify();
-                else if(!workListMoves.isEmpty()) coalesce();
+                else if(workListMovesSize > 0) coalesce();
                 else if(!freezeWorkList.isEmpty()) freeze();
                 else if(!spillWorkList.isEmpty()) selectSpill();
-            } while(!simplifyWorkList.isEmpty() || !workListMoves.isEmpty() || !freezeWorkList.isEmpty() || !spillWorkList.isEmpty());
+            } while(!simplifyWorkList.isEmpty() || workListMovesSize > 0 || !freezeWorkList.isEmpty() || !spillWorkList.isEmpty());
             assignColors();
             if(!spillNodes.isEmpty()) {
-                System.err.println("SpillNodes.size() = " + spillNodes.size());
                 rewriteFunction(function);
             } else {
                 allocateRegisters(function);
@@ -531,11 +571,8 @@ public class GraphAllocator {
     }
 
     public void run() {
-        for(Function function : program.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined) {
-                System.err.println("====================== allocate register in " + function.getName() + " =====================");
-                process(function);
-            }
-        }
+        FunctionPassRunner.run(program, function -> {
+            new GraphAllocator(program).process(function);
+        });
     }
 }
@@ -65,7 +65,7 @@ public class IRCorrector implements IRVistor {
     public void visit(BinaryOperation node) {
         if((node.getOp() == BinaryOperation.BinaryOp.MUL || node.getOp() == BinaryOperation.BinaryOp.DIV || node.getOp() == BinaryOperation.BinaryOp.MOD)
                 && node.getSrc() instanceof Constant) {
-            VirtualRegister vr = new VirtualRegister("");
+            VirtualRegister vr = new VirtualRegister(node.getBB().getFunction(), "");
             node.prepend(new Move(node.getBB(), vr, node.getSrc()));
             node.setSrc(vr);
         }
@@ -84,7 +84,7 @@ public class IRCorrector implements IRVistor {
     @Override
     public void visit(Move node) {
         if(node.getDst() instanceof Memory && node.getSrc() instanceof Memory) {
-            VirtualRegister vr = new VirtualRegister("");
+            VirtualRegister vr = new VirtualRegister(node.getBB().getFunction(), "");
             node.prepend(new Move(node.getBB(), vr, node.getSrc()));
             node.setSrc(vr);
         }
@@ -102,7 +102,7 @@ public class IRCorrector implements IRVistor {
         HashSet<VariableEntity> callerUsed = caller.getUsedGlobalVariables();
         HashSet<VariableEntity> calleeUsed = callee.getUsedRecursiveVariables();
         for(VariableEntity var : callerUsed) {
-            if(calleeUsed.contains(var)) {
+            if(calleeUsed.contains(var) && !node.isTailCall()) {
                 node.prepend(new Move(node.getBB(), var.getVirtualRegister().getSpillSpace(), var.getVirtualRegister()));
             }
         }
@@ -114,7 +114,7 @@ public class IRCorrector implements IRVistor {
             node.prepend(new Move(node.getBB(), RegisterSet.vargs.get(i), node.getArgs().get(i)));
         }
         for(VariableEntity var : callerUsed) {
-            if(calleeUsed.contains(var)) {
+            if(calleeUsed.contains(var) && !node.isTailCall()) {
                 node.append(new Move(node.getBB(), var.getVirtualRegister(), var.getVirtualRegister().getSpillSpace()));
             }
         }
@@ -140,6 +140,11 @@ public class IRCorrector implements IRVistor {
 
     }
 
+    @Override
+    public void visit(Phi node) {
+
+    }
+
     @Override
     public void visit(Memory node) {
 
@@ -0,0 +1,378 @@
+package BackEnd;
+
+import BackEnd.LoopAnalyzer.Loop;
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.*;
+import Utility.IntIntMap;
+import Utility.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InductionVariableStrengthReduction {
+    private IRProgram program;
+    private AtomicInteger reducedCount;
+    private AtomicInteger eliminatedCount;
+
+    public InductionVariableStrengthReduction(IRProgram program) {
+        this.program = program;
+        this.reducedCount = new AtomicInteger();
+        this.eliminatedCount = new AtomicInteger();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            InductionVariableStrengthReduction strengthReduction = new InductionVariableStrengthReduction(program);
+            strengthReduction.process(function);
+            reducedCount.addAndGet(strengthReduction.reduced);
+            eliminatedCount.addAndGet(strengthReduction.eliminated);
+        });
+    }
+
+    public int getReducedCount() {
+        return reducedCount.get();
+    }
+
+    public int getEliminatedCount() {
+        return eliminatedCount.get();
+    }
+
+    private static class Affine {
+        private VirtualRegister source;
+        private int constant;
+
+        Affine(VirtualRegister source, int constant) {
+            this.source = source;
+            this.constant = constant;
+        }
+    }
+
+    private static class InductionVariable {
+        private Phi phi;
+        private int step;
+        private ArrayList<PointerVariable> pointers;
+
+        InductionVariable(Phi phi, int step) {
+            this.phi = phi;
+            this.step = step;
+            this.pointers = new ArrayList<>();
+        }
+    }
+
+    private static class PointerVariable {
+        private Register base;
+        private int scale;
+        private int offset;
+        private VirtualRegister dst;
+
+        PointerVariable(Function function, Register base, int scale, int offset) {
+            this.base = base;
+            this.scale = scale;
+            this.offset = offset;
+            this.dst = new VirtualRegister(function, "");
+        }
+    }
+
+    private Function function;
+    private LoopAnalyzer loopAnalyzer;
+    private int reduced;
+    private int eliminated;
+
+    private Loop loop;
+    private BasicBlock latch;
+    private IntObjectMap<Instruction> definitions;
+    private IntIntMap definitionCounts;
+    private IntObjectMap<InductionVariable> inductionVariables;
+    private boolean hasUserCall;
+
+    private void process(Function function) {
+        this.function = function;
+        function.calcReversePostOrder();
+        loopAnalyzer = new LoopAnalyzer(function, new DominatorTree(function));
+        ArrayList<Loop> loops = loopAnalyzer.getLoops();
+        for(int i = loops.size() - 1; i >= 0; i--) {
+            reduce(loops.get(i));
+        }
+        if(loopAnalyzer.isModified()) {
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    private void reduce(Loop loop) {
+        this.loop = loop;
+        if(loop.getLatches().size() != 1) return;
+        boolean hasEntry = false;
+        for(BasicBlock pred : loop.getHeader().getPrevBBs()) {
+            if(!loop.contains(pred)) hasEntry = true;
+        }
+        if(!hasEntry) return;
+        this.latch = loop.getLatches().get(0);
+        this.definitions = new IntObjectMap<>();
+        this.definitionCounts = new IntIntMap();
+        this.inductionVariables = new IntObjectMap<>();
+        this.hasUserCall = false;
+
+        for(BasicBlock bb : loop.getBlocks()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                Instruction definition = inst;
+                inst.forEachDefinedRegister(reg -> {
+                    if(reg instanceof VirtualRegister) {
+                        int id = ((VirtualRegister) reg).getId();
+                        if(!definitions.containsKey(id)) definitions.put(id, definition);
+                        definitionCounts.put(id, definitionCounts.get(id, 0) + 1);
+                    }
+                });
+                if(inst instanceof Call && ((Call) inst).getFunc().getType() == Function.FuncType.UserDefined) {
+                    hasUserCall = true;
+                }
+            }
+        }
+
+        ArrayList<InductionVariable> candidates = new ArrayList<>();
+        for(Instruction inst = loop.getHeader().getHead(); inst instanceof Phi; inst = inst.getNext()) {
+            Phi phi = (Phi) inst;
+            Operand next = phi.getPath(latch);
+            Affine affine = next instanceof VirtualRegister ? getAffine((VirtualRegister) next) : null;
+            if(affine == null || affine.source != phi.getDst() || affine.constant == 0) continue;
+            InductionVariable inductionVariable = new InductionVariable(phi, affine.constant);
+            inductionVariables.put(phi.getDst().getId(), inductionVariable);
+            candidates.add(inductionVariable);
+        }
+        if(candidates.isEmpty()) return;
+
+        Set<Memory> outside = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<Memory> memories = new ArrayList<>();
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(loop.contains(bb)) continue;
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                collectMemories(inst, memories);
+            }
+        }
+        outside.addAll(memories);
+
+        for(BasicBlock bb : loop.getBlocks()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                memories.clear();
+                collectMemories(inst, memories);
+                for(Memory memory : memories) {
+                    if(!outside.contains(memory)) reduceAddress(memory);
+                }
+            }
+        }
+
+        for(InductionVariable inductionVariable : candidates) {
+            if(!inductionVariable.pointers.isEmpty()) eliminate(inductionVariable);
+        }
+    }
+
+    private static void collectMemories(Instruction inst, ArrayList<Memory> memories) {
+        if(inst instanceof Move) {
+            addMemory(((Move) inst).getDst(), memories);
+            addMemory(((Move) inst).getSrc(), memories);
+        } else if(inst instanceof BinaryOperation) {
+            addMemory(((BinaryOperation) inst).getDst(), memories);
+            addMemory(((BinaryOperation) inst).getSrc(), memories);
+        } else if(inst instanceof UnaryOperation) {
+            addMemory(((UnaryOperation) inst).getDst(), memories);
+        } else if(inst instanceof Compare) {
+            addMemory(((Compare) inst).getDst(), memories);
+            addMemory(((Compare) inst).getLhs(), memories);
+            addMemory(((Compare) inst).getRhs(), memories);
+        } else if(inst instanceof CJump) {
+            addMemory(((CJump) inst).getLhs(), memories);
+            addMemory(((CJump) inst).getRhs(), memories);
+        } else if(inst instanceof Lea) {
+            addMemory(((Lea) inst).getSrc(), memories);
+        } else if(inst instanceof Push) {
+            addMemory(((Push) inst).getSrc(), memories);
+        } else if(inst instanceof Call) {
+            addMemory(((Call) inst).getDst(), memories);
+            for(Operand arg : ((Call) inst).getArgs()) {
+                addMemory(arg, memories);
+            }
+        }
+    }
+
+    private static void addMemory(Operand operand, ArrayList<Memory> memories) {
+        if(operand instanceof Memory && !(operand instanceof StackSlot)) {
+            memories.add((Memory) operand);
+        }
+    }
+
+    private Affine getAffine(VirtualRegister vr) {
+        Instruction inst = definitions.get(vr.getId());
+        if(!(inst instanceof Move) || ((Move) inst).getDst() != vr || !(((Move) inst).getSrc() instanceof VirtualRegister)) return null;
+        VirtualRegister source = (VirtualRegister) ((Move) inst).getSrc();
+        Instruction next = inst.getNext();
+        int constant = 0;
+        int count = 1;
+        if(next instanceof BinaryOperation && ((BinaryOperation) next).getDst() == vr) {
+            BinaryOperation binary = (BinaryOperation) next;
+            if(!(binary.getSrc() instanceof IntImmediate)) return null;
+            int value = ((IntImmediate) binary.getSrc()).getValue();
+            if(binary.getOp() == BinaryOperation.BinaryOp.ADD) {
+                constant = value;
+            } else if(binary.getOp() == BinaryOperation.BinaryOp.SUB) {
+                constant = -value;
+            } else {
+                return null;
+            }
+            count = 2;
+        } else if(next instanceof UnaryOperation && ((UnaryOperation) next).getDst() == vr) {
+            UnaryOperation unary = (UnaryOperation) next;
+            if(unary.getOp() == UnaryOperation.UnaryOp.INC) {
+                constant = 1;
+            } else if(unary.getOp() == UnaryOperation.UnaryOp.DEC) {
+                constant = -1;
+            } else {
+                return null;
+            }
+            count = 2;
+        }
+        if(definitionCounts.get(vr.getId(), 0) != count) return null;
+        Affine affine = inductionVariables.containsKey(source.getId()) ? null : getAffine(source);
+        return affine == null ? new Affine(source, constant) : new Affine(affine.source, affine.constant + constant);
+    }
+
+    private Affine getInductionAffine(Register reg) {
+        if(!(reg instanceof VirtualRegister)) return null;
+        VirtualRegister vr = (VirtualRegister) reg;
+        if(inductionVariables.containsKey(vr.getId())) return new Affine(vr, 0);
+        Affine affine = getAffine(vr);
+        return affine != null && inductionVariables.containsKey(affine.source.getId()) ? affine : null;
+    }
+
+    private boolean isInvariant(Operand operand) {
+        if(operand instanceof IntImmediate) {
+            return true;
+        } else if(operand instanceof VirtualRegister) {
+            VirtualRegister vr = (VirtualRegister) operand;
+            if(vr.getAllocatedPhysicalRegister() != null || definitionCounts.containsKey(vr.getId())) return false;
+            return SSAConstructor.isVariable(vr) || !hasUserCall;
+        }
+        return false;
+    }
+
+    private void reduceAddress(Memory memory) {
+        if(memory.getBase() == null || memory.getScale() <= 0 || !isInvariant(memory.getBase())) return;
+        if(!(memory.getOffset() == null || memory.getOffset() instanceof IntImmediate)) return;
+        Affine affine = getInductionAffine(memory.getIndex());
+        if(affine == null) return;
+        long offset = (long) affine.constant * memory.getScale();
+        if(memory.getOffset() != null) offset += ((IntImmediate) memory.getOffset()).getValue();
+        if(offset != (int) offset) return;
+        PointerVariable pointer = getPointer(inductionVariables.get(affine.source.getId()), memory.getBase(), memory.getScale(), (int) offset);
+        if(pointer == null) return;
+        memory.setBase(pointer.dst);
+        memory.setIndex(null);
+        memory.setOffset(new IntImmediate((int) offset - pointer.offset));
+        reduced++;
+    }
+
+    private static Memory getAddress(Register base, Operand index, int scale, int offset) {
+        if(index instanceof IntImmediate) {
+            long value = (long) ((IntImmediate) index).getValue() * scale + offset;
+            return value == (int) value ? new Memory(base, new IntImmediate((int) value)) : null;
+        } else if(index instanceof Register) {
+            return new Memory(base, (Register) index, scale, new IntImmediate(offset));
+        }
+        return null;
+    }
+
+    private PointerVariable getPointer(InductionVariable inductionVariable, Register base, int scale, int offset) {
+        for(PointerVariable pointer : inductionVariable.pointers) {
+            if(pointer.base == base && pointer.scale == scale) return pointer;
+        }
+        long step = (long) inductionVariable.step * scale;
+        if(step != (int) step) return null;
+        BasicBlock preheader = loopAnalyzer.getPreheader(loop);
+        Memory start = getAddress(base, inductionVariable.phi.getPath(preheader), scale, offset);
+        if(start == null) return null;
+
+        PointerVariable pointer = new PointerVariable(function, base, scale, offset);
+        VirtualRegister init = new VirtualRegister(function, "");
+        VirtualRegister next = new VirtualRegister(function, "");
+        preheader.getTail().prepend(new Lea(preheader, init, start));
+        latch.getTail().prepend(new Move(latch, next, pointer.dst));
+        latch.getTail().prepend(new BinaryOperation(latch, next, BinaryOperation.BinaryOp.ADD, new IntImmediate((int) step)));
+        Phi phi = new Phi(loop.getHeader(), pointer.dst);
+        phi.addPath(preheader, init);
+        phi.addPath(latch, next);
+        loop.getHeader().addPrevInst(phi);
+        inductionVariable.pointers.add(pointer);
+        return pointer;
+    }
+
+    private void eliminate(InductionVariable inductionVariable) {
+        HashSet<Register> family = new HashSet<>();
+        family.add(inductionVariable.phi.getDst());
+        ArrayList<Instruction> updates = new ArrayList<>();
+        for(BasicBlock bb : loop.getBlocks()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(inst instanceof Move && ((Move) inst).getDst() instanceof VirtualRegister) {
+                    VirtualRegister dst = (VirtualRegister) ((Move) inst).getDst();
+                    Affine affine = getAffine(dst);
+                    if(affine != null && family.contains(affine.source)) family.add(dst);
+                }
+            }
+        }
+
+        CJump exit = null;
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(inst == inductionVariable.phi) continue;
+                boolean used = false;
+                for(Register reg : inst.getUsedRegisters()) {
+                    if(family.contains(reg)) used = true;
+                }
+                LinkedList<Register> defined = inst.getDefinedRegisters();
+                if(!defined.isEmpty() && family.containsAll(defined) && (inst instanceof Move || inst instanceof BinaryOperation || inst instanceof UnaryOperation)) {
+                    updates.add(inst);
+                } else if(used) {
+                    if(exit != null || !(inst instanceof CJump) || !loop.contains(bb) || getLimit((CJump) inst, inductionVariable) == null) return;
+                    exit = (CJump) inst;
+                }
+            }
+        }
+
+        if(exit != null) {
+            PointerVariable pointer = inductionVariable.pointers.get(0);
+            Memory limit = getAddress(pointer.base, getLimit(exit, inductionVariable), pointer.scale, pointer.offset);
+            if(limit == null) return;
+            BasicBlock preheader = loopAnalyzer.getPreheader(loop);
+            VirtualRegister vr = new VirtualRegister(function, "");
+            preheader.getTail().prepend(new Lea(preheader, vr, limit));
+            if(exit.getLhs() == inductionVariable.phi.getDst()) {
+                exit.setLhs(pointer.dst);
+                exit.setRhs(vr);
+            } else {
+                exit.setLhs(vr);
+                exit.setRhs(pointer.dst);
+            }
+        }
+        inductionVariable.phi.remove();
+        for(Instruction inst : updates) {
+            inst.remove();
+        }
+        eliminated++;
+    }
+
+    private Operand getLimit(CJump cjump, InductionVariable inductionVariable) {
+        VirtualRegister vr = inductionVariable.phi.getDst();
+        if(cjump.getLhs() == vr && cjump.getRhs() != vr) {
+            return isInvariant(cjump.getRhs()) ? cjump.getRhs() : null;
+        } else if(cjump.getRhs() == vr && cjump.getLhs() != vr) {
+            return isInvariant(cjump.getLhs()) ? cjump.getLhs() : null;
+        }
+        return null;
+    }
+}
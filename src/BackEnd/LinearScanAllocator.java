@@ -0,0 +1,552 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.CJump;
+import IR.Instruction.Instruction;
+import IR.Instruction.Jump;
+import IR.Instruction.Move;
+import IR.Operand.*;
+import IR.RegisterSet;
+import IR.RegisterVisitor;
+
+import java.util.*;
+
+public class LinearScanAllocator {
+    private IRProgram program;
+    private ArrayList<PhysicalRegister> physicalRegisters;
+    private boolean[] callerSave;
+    private int K;
+
+    private Function function;
+    private LivenessAnalyzer livenessAnalyzer;
+    private int N;
+    private ArrayList<VirtualRegister> nodes;
+    private ArrayList<BasicBlock> blocks;
+    private int[] blockFroms;
+    private int[] blockTos;
+    private boolean[] blockStarts;
+    private ArrayList<Instruction> instructions;
+
+    private LiveInterval[] intervals;
+    private ArrayList<ArrayList<LiveInterval>> fixedIntervals;
+    private int[] hints;
+    private int[] lastRegisters;
+
+    private PriorityQueue<LiveInterval> unhandled;
+    private ArrayList<LiveInterval> active;
+    private ArrayList<LiveInterval> inactive;
+    private ArrayList<LiveInterval> handled;
+    private int position;
+
+    private int blockFrom;
+    private int instructionIndex;
+    private HashMap<Register, Register> useMap = new HashMap<>();
+    private HashMap<Register, Register> defMap = new HashMap<>();
+    private final RegisterVisitor definitionBuilder = reg -> {
+        LiveInterval interval = intervals[livenessAnalyzer.getId((VirtualRegister) reg)];
+        interval.addDefinition(defPosition(instructionIndex));
+        interval.addUse(defPosition(instructionIndex));
+    };
+    private final RegisterVisitor useBuilder = reg -> {
+        LiveInterval interval = intervals[livenessAnalyzer.getId((VirtualRegister) reg)];
+        interval.addRange(blockFrom, usePosition(instructionIndex) + 1);
+        interval.addUse(usePosition(instructionIndex));
+    };
+    private final RegisterVisitor useRenamer = reg -> useMap.put(reg, getRegister(reg, usePosition(instructionIndex)));
+    private final RegisterVisitor defRenamer = reg -> defMap.put(reg, getRegister(reg, defPosition(instructionIndex)));
+
+    public LinearScanAllocator(IRProgram program) {
+        this.program = program;
+        this.physicalRegisters = new ArrayList<>();
+        for(PhysicalRegister pr : RegisterSet.allRegs) {
+            if(!pr.getName().equals("rsp") && !pr.getName().equals("rbp")) {
+                physicalRegisters.add(pr);
+            }
+        }
+        this.K = physicalRegisters.size();
+        this.callerSave = new boolean[K];
+        for(int i = 0; i < K; i++) {
+            callerSave[i] = RegisterSet.callerSave.contains(physicalRegisters.get(i));
+        }
+    }
+
+    private static int floor(int position) {
+        return position & ~3;
+    }
+
+    private static int usePosition(int index) {
+        return 4 * index + 1;
+    }
+
+    private static int defPosition(int index) {
+        return 4 * index + 2;
+    }
+
+    private boolean isPrecolored(int id) {
+        return nodes.get(id).getAllocatedPhysicalRegister() != null;
+    }
+
+    private void linearize() {
+        blocks = new ArrayList<>();
+        boolean[] visited = new boolean[function.getBasicBlockCount()];
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            if(!visited[bb.getId()]) {
+                visited[bb.getId()] = true;
+                blocks.add(bb);
+            }
+        }
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(!visited[bb.getId()]) {
+                visited[bb.getId()] = true;
+                blocks.add(bb);
+            }
+        }
+        blockFroms = new int[function.getBasicBlockCount()];
+        blockTos = new int[function.getBasicBlockCount()];
+        instructions = new ArrayList<>();
+        for(BasicBlock bb : blocks) {
+            blockFroms[bb.getId()] = 4 * instructions.size();
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                instructions.add(inst);
+            }
+            blockTos[bb.getId()] = 4 * instructions.size();
+        }
+        blockStarts = new boolean[instructions.size() + 1];
+        for(BasicBlock bb : blocks) {
+            blockStarts[blockFroms[bb.getId()] / 4] = true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void buildIntervals() {
+        livenessAnalyzer = new LivenessAnalyzer(function, true);
+        N = livenessAnalyzer.size();
+        nodes = livenessAnalyzer.getRegisters();
+        intervals = new LiveInterval[N];
+        hints = new int[N];
+        lastRegisters = new int[N];
+        for(int n = 0; n < N; n++) {
+            intervals[n] = new LiveInterval(n);
+            hints[n] = -1;
+            lastRegisters[n] = -1;
+        }
+
+        int index = instructions.size();
+        for(int b = blocks.size() - 1; b >= 0; b--) {
+            BasicBlock bb = blocks.get(b);
+            int from = blockFroms[bb.getId()];
+            int to = blockTos[bb.getId()];
+            long[] liveOut = livenessAnalyzer.getLiveOut(bb);
+            for(int id = LivenessAnalyzer.nextSetBit(liveOut, 0); id >= 0; id = LivenessAnalyzer.nextSetBit(liveOut, id + 1)) {
+                if(from < to) intervals[id].addRange(from, to);
+            }
+            for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
+                index--;
+                blockFrom = from;
+                instructionIndex = index;
+                inst.forEachDefinedRegister(definitionBuilder);
+                inst.forEachUsedRegister(useBuilder);
+                if(inst instanceof Move && ((Move) inst).getDst() instanceof VirtualRegister && ((Move) inst).getSrc() instanceof VirtualRegister) {
+                    int dst = livenessAnalyzer.getId((VirtualRegister) ((Move) inst).getDst());
+                    int src = livenessAnalyzer.getId((VirtualRegister) ((Move) inst).getSrc());
+                    if(hints[dst] == -1) hints[dst] = src;
+                    if(hints[src] == -1) hints[src] = dst;
+                }
+            }
+        }
+
+        fixedIntervals = new ArrayList<>(K);
+        for(int r = 0; r < K; r++) {
+            fixedIntervals.add(new ArrayList<>());
+        }
+        unhandled = new PriorityQueue<>((a, b) -> a.getStart() != b.getStart() ? Integer.compare(a.getStart(), b.getStart()) : Integer.compare(a.getId(), b.getId()));
+        for(int n = 0; n < N; n++) {
+            LiveInterval interval = intervals[n];
+            interval.finishBuilding();
+            if(interval.isEmpty()) continue;
+            if(isPrecolored(n)) {
+                int r = physicalRegisters.indexOf(nodes.get(n).getAllocatedPhysicalRegister());
+                if(r >= 0) {
+                    interval.setRegister(r);
+                    fixedIntervals.get(r).add(interval);
+                }
+            } else {
+                unhandled.add(interval);
+            }
+        }
+    }
+
+    private int getHint(LiveInterval current) {
+        int hint = hints[current.getId()];
+        if(hint == -1) return -1;
+        if(isPrecolored(hint)) return physicalRegisters.indexOf(nodes.get(hint).getAllocatedPhysicalRegister());
+        return lastRegisters[hint];
+    }
+
+    private void assign(LiveInterval interval, int register) {
+        interval.setRegister(register);
+        lastRegisters[interval.getId()] = register;
+    }
+
+    private boolean tryAllocateFreeRegister(LiveInterval current, boolean backward) {
+        int[] freeUntil = new int[K];
+        Arrays.fill(freeUntil, LiveInterval.MAX_POSITION);
+        for(LiveInterval interval : active) {
+            if(backward) {
+                int p = interval.nextIntersection(current);
+                freeUntil[interval.getRegister()] = Integer.min(freeUntil[interval.getRegister()], p);
+            } else {
+                freeUntil[interval.getRegister()] = 0;
+            }
+        }
+        for(LiveInterval interval : inactive) {
+            int p = interval.nextIntersection(current);
+            freeUntil[interval.getRegister()] = Integer.min(freeUntil[interval.getRegister()], p);
+        }
+        if(backward) {
+            for(LiveInterval interval : handled) {
+                int p = interval.nextIntersection(current);
+                freeUntil[interval.getRegister()] = Integer.min(freeUntil[interval.getRegister()], p);
+            }
+        }
+        for(int r = 0; r < K; r++) {
+            for(LiveInterval interval : fixedIntervals.get(r)) {
+                freeUntil[r] = Integer.min(freeUntil[r], interval.nextIntersection(current));
+            }
+        }
+
+        int end = current.getEnd();
+        int register = getHint(current);
+        if(register < 0 || freeUntil[register] < end) {
+            register = -1;
+            for(int r = 0; r < K; r++) {
+                if(freeUntil[r] >= end && (register == -1 || (callerSave[r] && !callerSave[register]))) {
+                    register = r;
+                }
+            }
+        }
+        if(register == -1) {
+            register = 0;
+            for(int r = 1; r < K; r++) {
+                if(freeUntil[r] > freeUntil[register]) {
+                    register = r;
+                }
+            }
+        }
+        if(floor(freeUntil[register]) <= current.getStart()) return false;
+        assign(current, register);
+        if(freeUntil[register] < end) {
+            unhandled.add(current.split(floor(freeUntil[register])));
+        }
+        return true;
+    }
+
+    private void allocateBlockedRegister(LiveInterval current, boolean backward) {
+        int start = current.getStart();
+        int[] nextUse = new int[K];
+        int[] blockPos = new int[K];
+        Arrays.fill(nextUse, LiveInterval.MAX_POSITION);
+        Arrays.fill(blockPos, LiveInterval.MAX_POSITION);
+        for(LiveInterval interval : active) {
+            if(!backward || interval.nextIntersection(current) != LiveInterval.MAX_POSITION) {
+                int r = interval.getRegister();
+                nextUse[r] = Integer.min(nextUse[r], interval.nextUseAfter(start));
+            }
+        }
+        for(LiveInterval interval : inactive) {
+            if(interval.nextIntersection(current) != LiveInterval.MAX_POSITION) {
+                int r = interval.getRegister();
+                nextUse[r] = Integer.min(nextUse[r], interval.nextUseAfter(start));
+            }
+        }
+        if(backward) {
+            for(LiveInterval interval : handled) {
+                int p = interval.nextIntersection(current);
+                int r = interval.getRegister();
+                blockPos[r] = Integer.min(blockPos[r], p);
+                nextUse[r] = Integer.min(nextUse[r], p);
+            }
+        }
+        for(int r = 0; r < K; r++) {
+            for(LiveInterval interval : fixedIntervals.get(r)) {
+                int p = interval.nextIntersection(current);
+                blockPos[r] = Integer.min(blockPos[r], p);
+                nextUse[r] = Integer.min(nextUse[r], p);
+            }
+        }
+
+        int register = -1;
+        for(int r = 0; r < K; r++) {
+            if(floor(blockPos[r]) <= start) continue;
+            if(register == -1 || nextUse[r] > nextUse[register]) {
+                register = r;
+            }
+        }
+        if(register == -1) {
+            throw new IllegalStateException("no register available in " + function.getName());
+        }
+
+        int firstUse = current.nextUseAfter(start);
+        if(firstUse > nextUse[register] && floor(firstUse) > start) {
+            current.setOnStack(true);
+            if(firstUse != LiveInterval.MAX_POSITION && floor(firstUse) < current.getEnd()) {
+                unhandled.add(current.split(floor(firstUse)));
+            }
+            return;
+        }
+
+        assign(current, register);
+        if(blockPos[register] < current.getEnd()) {
+            unhandled.add(current.split(floor(blockPos[register])));
+        }
+        int splitPosition = floor(start);
+        evict(active, current, register, splitPosition, false);
+        evict(inactive, current, register, splitPosition, true);
+    }
+
+    private void evict(ArrayList<LiveInterval> intervals, LiveInterval current, int register, int splitPosition, boolean onlyIntersecting) {
+        Iterator<LiveInterval> iterator = intervals.iterator();
+        ArrayList<LiveInterval> tails = new ArrayList<>();
+        while(iterator.hasNext()) {
+            LiveInterval interval = iterator.next();
+            if(interval.getRegister() != register) continue;
+            if(onlyIntersecting && interval.nextIntersection(current) == LiveInterval.MAX_POSITION) continue;
+            if(interval.getStart() >= splitPosition) {
+                iterator.remove();
+                tails.add(interval);
+            } else if(interval.getEnd() > splitPosition) {
+                tails.add(interval.split(splitPosition));
+            }
+        }
+        for(LiveInterval tail : tails) {
+            tail.setRegister(-1);
+            int use = tail.nextUseAfter(tail.getStart());
+            if(use == LiveInterval.MAX_POSITION) {
+                tail.setOnStack(true);
+            } else if(floor(use) <= tail.getStart()) {
+                unhandled.add(tail);
+            } else {
+                LiveInterval rest = tail.split(floor(use));
+                tail.setOnStack(true);
+                unhandled.add(rest);
+            }
+        }
+    }
+
+    private void walkIntervals() {
+        active = new ArrayList<>();
+        inactive = new ArrayList<>();
+        handled = new ArrayList<>();
+        position = 0;
+        while(!unhandled.isEmpty()) {
+            LiveInterval current = unhandled.poll();
+            int start = current.getStart();
+            boolean backward = start < position;
+            if(!backward) {
+                position = start;
+                ArrayList<LiveInterval> newActive = new ArrayList<>();
+                ArrayList<LiveInterval> newInactive = new ArrayList<>();
+                for(LiveInterval interval : active) {
+                    if(interval.getEnd() <= position) handled.add(interval);
+                    else if(interval.covers(position)) newActive.add(interval);
+                    else newInactive.add(interval);
+                }
+                for(LiveInterval interval : inactive) {
+                    if(interval.getEnd() <= position) handled.add(interval);
+                    else if(interval.covers(position)) newActive.add(interval);
+                    else newInactive.add(interval);
+                }
+                active = newActive;
+                inactive = newInactive;
+            }
+            if(!tryAllocateFreeRegister(current, backward)) {
+                allocateBlockedRegister(current, backward);
+            }
+            if(current.getRegister() >= 0) {
+                if(backward) {
+                    inactive.add(current);
+                } else {
+                    active.add(current);
+                }
+            }
+        }
+    }
+
+    private int getLocation(int id, int position) {
+        if(isPrecolored(id)) {
+            return physicalRegisters.indexOf(nodes.get(id).getAllocatedPhysicalRegister());
+        }
+        ArrayList<LiveInterval> children = intervals[id].getChildren();
+        int lo = 0;
+        int hi = children.size() - 1;
+        while(lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if(children.get(mid).getStart() <= position) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        LiveInterval child = children.get(lo);
+        return child.isOnStack() ? K + id : child.getRegister();
+    }
+
+    private Operand getOperand(int location) {
+        if(location < K) return physicalRegisters.get(location);
+        VirtualRegister vr = nodes.get(location - K);
+        if(vr.getSpillSpace() == null) {
+            vr.setSpillSpace(new StackSlot());
+        }
+        return vr.getSpillSpace();
+    }
+
+    private Register getRegister(Register reg, int position) {
+        VirtualRegister vr = (VirtualRegister) reg;
+        if(vr.getAllocatedPhysicalRegister() != null) return vr.getAllocatedPhysicalRegister();
+        return (Register) getOperand(getLocation(livenessAnalyzer.getId(vr), position));
+    }
+
+    private void rename() {
+        for(int n = 0; n < N; n++) {
+            intervals[n].getChildren().sort(Comparator.comparingInt(LiveInterval::getStart));
+        }
+        for(int i = 0; i < instructions.size(); i++) {
+            Instruction inst = instructions.get(i);
+            instructionIndex = i;
+            useMap.clear();
+            defMap.clear();
+            inst.forEachUsedRegister(useRenamer);
+            inst.forEachDefinedRegister(defRenamer);
+            inst.renameUsedRegisters(useMap);
+            inst.renameDefinedRegisters(defMap);
+        }
+    }
+
+    private void insertMoves(Instruction before, ArrayList<int[]> moves) {
+        while(!moves.isEmpty()) {
+            boolean progress = false;
+            for(int i = 0; i < moves.size(); i++) {
+                int[] move = moves.get(i);
+                boolean blocked = false;
+                for(int[] other : moves) {
+                    if(other != move && other[0] == move[1]) {
+                        blocked = true;
+                        break;
+                    }
+                }
+                if(!blocked) {
+                    before.prepend(new Move(before.getBB(), (Address) getOperand(move[1]), getOperand(move[0])));
+                    moves.remove(i);
+                    progress = true;
+                    break;
+                }
+            }
+            if(!progress) {
+                int[] move = moves.get(0);
+                int stack = K + move[2];
+                before.prepend(new Move(before.getBB(), (Address) getOperand(stack), getOperand(move[0])));
+                move[0] = stack;
+            }
+        }
+    }
+
+    private void resolveSplits() {
+        ArrayList<ArrayList<int[]>> movesAt = new ArrayList<>(Collections.nCopies(instructions.size(), null));
+        for(int n = 0; n < N; n++) {
+            if(isPrecolored(n)) continue;
+            ArrayList<LiveInterval> children = intervals[n].getChildren();
+            for(int i = 1; i < children.size(); i++) {
+                LiveInterval previous = children.get(i - 1);
+                LiveInterval next = children.get(i);
+                int at = next.getStart();
+                if(previous.getEnd() != at || (at % 4 == 0 && blockStarts[at / 4])) continue;
+                int from = previous.isOnStack() ? K + n : previous.getRegister();
+                int to = next.isOnStack() ? K + n : next.getRegister();
+                if(from != to) {
+                    if(movesAt.get(at / 4) == null) movesAt.set(at / 4, new ArrayList<>());
+                    movesAt.get(at / 4).add(new int[] {from, to, n});
+                }
+            }
+        }
+        for(int i = 0; i < movesAt.size(); i++) {
+            if(movesAt.get(i) != null) insertMoves(instructions.get(i), movesAt.get(i));
+        }
+    }
+
+    private BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        BasicBlock bb = new BasicBlock("splitBB", function);
+        for(Instruction inst = from.getHead(); inst != null; inst = inst.getNext()) {
+            if(inst instanceof Jump && ((Jump) inst).getTargetBB() == to) {
+                ((Jump) inst).setTargetBB(bb);
+            } else if(inst instanceof CJump) {
+                if(((CJump) inst).getThenBB() == to) ((CJump) inst).setThenBB(bb);
+                if(((CJump) inst).getElseBB() == to) ((CJump) inst).setElseBB(bb);
+            }
+        }
+        for(ListIterator<BasicBlock> iterator = from.getNextBBs().listIterator(); iterator.hasNext(); ) {
+            if(iterator.next() == to) {
+                iterator.set(bb);
+                bb.getPrevBBs().add(from);
+            }
+        }
+        to.getPrevBBs().removeIf(prev -> prev == from);
+        bb.addNextJumpInst(new Jump(bb, to));
+        return bb;
+    }
+
+    private void resolveEdges() {
+        boolean splitted = false;
+        boolean[] reachable = new boolean[function.getBasicBlockCount()];
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            reachable[bb.getId()] = true;
+        }
+        for(BasicBlock bb : blocks) {
+            if(!reachable[bb.getId()]) continue;
+            int end = blockTos[bb.getId()] - 1;
+            HashSet<BasicBlock> successors = new LinkedHashSet<>(bb.getNextBBs());
+            for(BasicBlock succ : successors) {
+                int start = blockFroms[succ.getId()];
+                ArrayList<int[]> moves = new ArrayList<>();
+                long[] liveIn = livenessAnalyzer.getLiveIn(succ);
+                for(int id = LivenessAnalyzer.nextSetBit(liveIn, 0); id >= 0; id = LivenessAnalyzer.nextSetBit(liveIn, id + 1)) {
+                    if(isPrecolored(id)) continue;
+                    int from = getLocation(id, end);
+                    int to = getLocation(id, start);
+                    if(from != to) {
+                        moves.add(new int[] {from, to, id});
+                    }
+                }
+                if(moves.isEmpty()) continue;
+                if(successors.size() == 1 && bb.getTail() instanceof Jump) {
+                    insertMoves(bb.getTail(), moves);
+                } else if(new HashSet<>(succ.getPrevBBs()).size() == 1) {
+                    insertMoves(succ.getHead(), moves);
+                } else {
+                    insertMoves(splitEdge(bb, succ).getTail(), moves);
+                    splitted = true;
+                }
+            }
+        }
+        if(splitted) {
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    private void process(Function function) {
+        this.function = function;
+        linearize();
+        buildIntervals();
+        walkIntervals();
+        rename();
+        resolveSplits();
+        resolveEdges();
+        function.calcUsedPhysicalRegisters();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> new LinearScanAllocator(program).process(function));
+    }
+}
@@ -0,0 +1,205 @@
+package BackEnd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class LiveInterval {
+    static final int MAX_POSITION = Integer.MAX_VALUE;
+
+    private int id;
+    private int register;
+    private boolean onStack;
+    private LiveInterval parent;
+    private ArrayList<LiveInterval> children;
+
+    private int[] rangeFroms;
+    private int[] rangeTos;
+    private int rangeCount;
+    private int[] usePositions;
+    private int useCount;
+
+    LiveInterval(int id) {
+        this.id = id;
+        this.register = -1;
+        this.onStack = false;
+        this.parent = this;
+        this.children = new ArrayList<>();
+        this.children.add(this);
+        this.rangeFroms = new int[2];
+        this.rangeTos = new int[2];
+        this.rangeCount = 0;
+        this.usePositions = new int[2];
+        this.useCount = 0;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    int getRegister() {
+        return register;
+    }
+
+    void setRegister(int register) {
+        this.register = register;
+    }
+
+    boolean isOnStack() {
+        return onStack;
+    }
+
+    void setOnStack(boolean onStack) {
+        this.onStack = onStack;
+    }
+
+    LiveInterval getParent() {
+        return parent;
+    }
+
+    ArrayList<LiveInterval> getChildren() {
+        return children;
+    }
+
+    boolean isEmpty() {
+        return rangeCount == 0;
+    }
+
+    void addRange(int from, int to) {
+        if(rangeCount > 0 && rangeFroms[rangeCount - 1] <= to) {
+            rangeFroms[rangeCount - 1] = Integer.min(rangeFroms[rangeCount - 1], from);
+            rangeTos[rangeCount - 1] = Integer.max(rangeTos[rangeCount - 1], to);
+        } else {
+            if(rangeCount == rangeFroms.length) {
+                rangeFroms = Arrays.copyOf(rangeFroms, rangeCount * 2);
+                rangeTos = Arrays.copyOf(rangeTos, rangeCount * 2);
+            }
+            rangeFroms[rangeCount] = from;
+            rangeTos[rangeCount] = to;
+            rangeCount++;
+        }
+    }
+
+    void addDefinition(int position) {
+        if(rangeCount > 0 && rangeFroms[rangeCount - 1] <= position && position < rangeTos[rangeCount - 1]) {
+            rangeFroms[rangeCount - 1] = position;
+        } else {
+            addRange(position, position + 1);
+        }
+    }
+
+    void addUse(int position) {
+        if(useCount > 0 && usePositions[useCount - 1] == position) return;
+        if(useCount == usePositions.length) {
+            usePositions = Arrays.copyOf(usePositions, useCount * 2);
+        }
+        usePositions[useCount++] = position;
+    }
+
+    void finishBuilding() {
+        reverse(rangeFroms, rangeCount);
+        reverse(rangeTos, rangeCount);
+        reverse(usePositions, useCount);
+    }
+
+    private static void reverse(int[] array, int size) {
+        for(int i = 0, j = size - 1; i < j; i++, j--) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    int getStart() {
+        return rangeFroms[0];
+    }
+
+    int getEnd() {
+        return rangeTos[rangeCount - 1];
+    }
+
+    boolean covers(int position) {
+        int lo = 0;
+        int hi = rangeCount - 1;
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if(rangeTos[mid] <= position) {
+                lo = mid + 1;
+            } else if(rangeFroms[mid] > position) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int nextIntersection(LiveInterval other) {
+        int i = 0;
+        int hi = rangeCount;
+        int otherStart = other.rangeFroms[0];
+        while(i < hi) {
+            int mid = (i + hi) >>> 1;
+            if(rangeTos[mid] <= otherStart) {
+                i = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int j = 0;
+        while(i < rangeCount && j < other.rangeCount) {
+            int from = Integer.max(rangeFroms[i], other.rangeFroms[j]);
+            int to = Integer.min(rangeTos[i], other.rangeTos[j]);
+            if(from < to) return from;
+            if(rangeTos[i] < other.rangeTos[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return MAX_POSITION;
+    }
+
+    int nextUseAfter(int position) {
+        int lo = 0;
+        int hi = useCount;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(usePositions[mid] < position) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < useCount ? usePositions[lo] : MAX_POSITION;
+    }
+
+    LiveInterval split(int position) {
+        LiveInterval child = new LiveInterval(id);
+        child.parent = parent;
+        child.children = null;
+        parent.children.add(child);
+
+        int r = 0;
+        while(r < rangeCount && rangeTos[r] <= position) r++;
+        child.rangeFroms = new int[Integer.max(2, rangeCount - r)];
+        child.rangeTos = new int[Integer.max(2, rangeCount - r)];
+        for(int i = r; i < rangeCount; i++) {
+            child.rangeFroms[child.rangeCount] = Integer.max(rangeFroms[i], position);
+            child.rangeTos[child.rangeCount] = rangeTos[i];
+            child.rangeCount++;
+        }
+        if(r < rangeCount && rangeFroms[r] < position) {
+            rangeTos[r] = position;
+            rangeCount = r + 1;
+        } else {
+            rangeCount = r;
+        }
+
+        int u = 0;
+        while(u < useCount && usePositions[u] < position) u++;
+        child.usePositions = Arrays.copyOfRange(usePositions, u, Integer.max(u + 2, useCount));
+        child.useCount = useCount - u;
+        useCount = u;
+        return child;
+    }
+}
@@ -6,77 +6,230 @@ import IR.Instruction.Call;
 import IR.Instruction.Instruction;
 import IR.Operand.Register;
 import IR.Operand.VirtualRegister;
+import IR.RegisterVisitor;
+import Utility.IntIntMap;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 
 public class LivenessAnalyzer {
-    private HashMap<BasicBlock, HashSet<VirtualRegister>> uses;
-    private HashMap<BasicBlock, HashSet<VirtualRegister>> defs;
-    private HashMap<BasicBlock, HashSet<VirtualRegister>> INs;
-    private HashMap<BasicBlock, HashSet<VirtualRegister>> OUTs;
-
-    public LivenessAnalyzer() {
-        uses = new HashMap<>();
-        defs = new HashMap<>();
-        INs = new HashMap<>();
-        OUTs = new HashMap<>();
-    }
-
-    private void process(Function function, boolean afterAllocated) {
-        uses.clear();
-        defs.clear();
-        INs.clear();
-        OUTs.clear();
-        for(BasicBlock bb : function.getBasicBlocks()) {
-            uses.put(bb, new HashSet<>());
-            defs.put(bb, new HashSet<>());
-            INs.put(bb, new HashSet<>());
-            OUTs.put(bb, new HashSet<>());
+    private Function function;
+    private boolean afterAllocated;
+
+    private IntIntMap registerIds;
+    private ArrayList<VirtualRegister> registers;
+    private int[] blockIds;
+    private ArrayList<BasicBlock> blocks;
+    private int words;
+
+    private long[][] uses;
+    private long[][] defs;
+    private long[][] INs;
+    private long[][] OUTs;
+
+    private long[] genSet;
+    private long[] killSet;
+    private long[] live;
+    private final RegisterVisitor numberVisitor = this::numberRegister;
+    private final RegisterVisitor genVisitor = reg -> {
+        int id = idOf(reg);
+        if(!contains(killSet, id)) {
+            add(genSet, id);
+        }
+    };
+    private final RegisterVisitor killVisitor = reg -> add(killSet, idOf(reg));
+    private final RegisterVisitor liveAddVisitor = reg -> add(live, idOf(reg));
+    private final RegisterVisitor liveRemoveVisitor = reg -> remove(live, idOf(reg));
+
+    public LivenessAnalyzer(Function function, boolean afterAllocated) {
+        this.function = function;
+        this.afterAllocated = afterAllocated;
+        this.registerIds = new IntIntMap();
+        this.registers = new ArrayList<>();
+        this.blockIds = new int[function.getBasicBlockCount()];
+        this.blocks = new ArrayList<>();
+        numberBlocks();
+        numberRegisters();
+        analyze();
+    }
+
+    public static boolean contains(long[] set, int id) {
+        return (set[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public static void add(long[] set, int id) {
+        set[id >>> 6] |= 1L << id;
+    }
+
+    public static void remove(long[] set, int id) {
+        set[id >>> 6] &= ~(1L << id);
+    }
+
+    public static int nextSetBit(long[] set, int from) {
+        int index = from >>> 6;
+        if(index >= set.length) return -1;
+        long word = set[index] & (-1L << from);
+        while(true) {
+            if(word != 0) return (index << 6) + Long.numberOfTrailingZeros(word);
+            if(++index == set.length) return -1;
+            word = set[index];
+        }
+    }
+
+    private void numberBlocks() {
+        Arrays.fill(blockIds, -1);
+        for(BasicBlock bb : function.getReversePrevOrder()) {
+            if(blockIds[bb.getId()] < 0) {
+                blockIds[bb.getId()] = blocks.size();
+                blocks.add(bb);
+            }
         }
         for(BasicBlock bb : function.getBasicBlocks()) {
-            HashSet<VirtualRegister> use = new HashSet<>();
-            HashSet<VirtualRegister> def = new HashSet<>();
+            if(blockIds[bb.getId()] < 0) {
+                blockIds[bb.getId()] = blocks.size();
+                blocks.add(bb);
+            }
+        }
+    }
+
+    private void forEachUse(Instruction inst, RegisterVisitor visitor) {
+        if(inst instanceof Call && !afterAllocated) {
+            ((Call) inst).forEachArgumentRegister(visitor);
+        } else {
+            inst.forEachUsedRegister(visitor);
+        }
+    }
+
+    private void numberRegister(Register reg) {
+        VirtualRegister vr = (VirtualRegister) reg;
+        if(!registerIds.containsKey(vr.getId())) {
+            registerIds.put(vr.getId(), registers.size());
+            registers.add(vr);
+        }
+    }
+
+    private void numberRegisters() {
+        for(BasicBlock bb : blocks) {
             for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
-                LinkedList<Register> allUse = (inst instanceof Call && !afterAllocated) ? ((Call) inst).getAllUsedRegister() : inst.getUsedRegisters();
-                for(Register reg : allUse){
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    if(!def.contains(vr)) {
-                        use.add(vr);
-                    }
-                }
-                for(Register reg : inst.getDefinedRegisters()) {
-                    VirtualRegister vr = (VirtualRegister) reg;
-                    def.add(vr);
-                }
+                forEachUse(inst, numberVisitor);
+                inst.forEachDefinedRegister(numberVisitor);
+            }
+        }
+        words = (registers.size() + 63) >>> 6;
+    }
+
+    private void analyze() {
+        int n = blocks.size();
+        uses = new long[n][words];
+        defs = new long[n][words];
+        INs = new long[n][words];
+        OUTs = new long[n][words];
+        for(int i = 0; i < n; i++) {
+            genSet = uses[i];
+            killSet = defs[i];
+            for(Instruction inst = blocks.get(i).getHead(); inst != null; inst = inst.getNext()) {
+                forEachUse(inst, genVisitor);
+                inst.forEachDefinedRegister(killVisitor);
             }
-            defs.put(bb, def);
-            uses.put(bb, use);
         }
-        boolean changed = true;
-        while(changed) {
-            changed = false;
-            for(BasicBlock bb : function.getReversePrevOrder()) {
-                int oldSize = INs.get(bb).size();
-                OUTs.get(bb).clear();
-                INs.get(bb).clear();
-                for(BasicBlock succ : bb.getNextBBs()) {
-                    OUTs.get(bb).addAll(INs.get(succ));
+
+        ArrayDeque<Integer> workList = new ArrayDeque<>();
+        boolean[] inWorkList = new boolean[n];
+        for(int i = 0; i < n; i++) {
+            workList.add(i);
+            inWorkList[i] = true;
+        }
+        while(!workList.isEmpty()) {
+            int i = workList.poll();
+            inWorkList[i] = false;
+            long[] out = OUTs[i];
+            for(BasicBlock succ : blocks.get(i).getNextBBs()) {
+                int j = getBlockIndex(succ);
+                if(j < 0) continue;
+                long[] succIn = INs[j];
+                for(int w = 0; w < words; w++) {
+                    out[w] |= succIn[w];
                 }
-                INs.get(bb).addAll(OUTs.get(bb));
-                INs.get(bb).removeAll(defs.get(bb));
-                INs.get(bb).addAll(uses.get(bb));
-                if(INs.get(bb).size() != oldSize) {
+            }
+            long[] in = INs[i];
+            boolean changed = false;
+            for(int w = 0; w < words; w++) {
+                long newIn = uses[i][w] | (out[w] & ~defs[i][w]);
+                if(newIn != in[w]) {
+                    in[w] = newIn;
                     changed = true;
                 }
             }
+            if(changed) {
+                for(BasicBlock pred : blocks.get(i).getPrevBBs()) {
+                    int j = getBlockIndex(pred);
+                    if(j >= 0 && !inWorkList[j]) {
+                        workList.add(j);
+                        inWorkList[j] = true;
+                    }
+                }
+            }
         }
     }
 
-    public HashMap<BasicBlock,HashSet<VirtualRegister>> getOUTs(Function function, boolean afterAllocated) {
-        process(function, afterAllocated);
-        return OUTs;
+    public int size() {
+        return registers.size();
+    }
+
+    private int getBlockIndex(BasicBlock bb) {
+        return bb.getId() < blockIds.length ? blockIds[bb.getId()] : -1;
+    }
+
+    private int idOf(Register reg) {
+        return registerIds.get(((VirtualRegister) reg).getId(), -1);
+    }
+
+    public int getId(VirtualRegister vr) {
+        return registerIds.get(vr.getId(), -1);
+    }
+
+    public VirtualRegister getRegister(int id) {
+        return registers.get(id);
+    }
+
+    public ArrayList<VirtualRegister> getRegisters() {
+        return registers;
+    }
+
+    public long[] newSet() {
+        return new long[words];
+    }
+
+    public long[] getLiveIn(BasicBlock bb) {
+        return INs[getBlockIndex(bb)];
+    }
+
+    public long[] getLiveOut(BasicBlock bb) {
+        return OUTs[getBlockIndex(bb)];
+    }
+
+    public void stepBackward(long[] live, Instruction inst) {
+        this.live = live;
+        inst.forEachDefinedRegister(liveRemoveVisitor);
+        forEachUse(inst, liveAddVisitor);
+    }
+
+    public HashSet<VirtualRegister> toSet(long[] set) {
+        HashSet<VirtualRegister> result = new HashSet<>();
+        for(int id = nextSetBit(set, 0); id >= 0; id = nextSetBit(set, id + 1)) {
+            result.add(registers.get(id));
+        }
+        return result;
     }
 
+    public HashMap<BasicBlock, HashSet<VirtualRegister>> getOUTs() {
+        HashMap<BasicBlock, HashSet<VirtualRegister>> result = new HashMap<>();
+        for(int i = 0; i < blocks.size(); i++) {
+            result.put(blocks.get(i), toSet(OUTs[i]));
+        }
+        return result;
+    }
 }
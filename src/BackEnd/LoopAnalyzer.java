@@ -0,0 +1,210 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.Instruction.CJump;
+import IR.Instruction.Instruction;
+import IR.Instruction.Jump;
+import IR.Instruction.Phi;
+import IR.Operand.Operand;
+import IR.Operand.VirtualRegister;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class LoopAnalyzer {
+    public static class Loop {
+        private BasicBlock header;
+        private BasicBlock preheader;
+        private Loop parent;
+        private ArrayList<Loop> children;
+        private ArrayList<BasicBlock> blocks;
+        private ArrayList<BasicBlock> latches;
+        private boolean[] contained;
+        private int depth;
+
+        private Loop(BasicBlock header, Loop parent, int blockCount) {
+            this.header = header;
+            this.parent = parent;
+            this.children = new ArrayList<>();
+            this.blocks = new ArrayList<>();
+            this.latches = new ArrayList<>();
+            this.contained = new boolean[blockCount];
+            this.depth = parent == null ? 1 : parent.depth + 1;
+        }
+
+        public BasicBlock getHeader() {
+            return header;
+        }
+
+        public Loop getParent() {
+            return parent;
+        }
+
+        public ArrayList<Loop> getChildren() {
+            return children;
+        }
+
+        public ArrayList<BasicBlock> getBlocks() {
+            return blocks;
+        }
+
+        public ArrayList<BasicBlock> getLatches() {
+            return latches;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public boolean contains(BasicBlock bb) {
+            return bb.getId() < contained.length && contained[bb.getId()];
+        }
+
+        void addBlock(int index, BasicBlock bb) {
+            if(bb.getId() >= contained.length) {
+                contained = Arrays.copyOf(contained, Math.max(bb.getId() + 1, contained.length * 2));
+            }
+            contained[bb.getId()] = true;
+            blocks.add(index, bb);
+        }
+    }
+
+    private Function function;
+    private ArrayList<Loop> loops;
+    private ArrayList<Loop> topLevelLoops;
+    private Loop[] innermostLoops;
+    private boolean modified;
+
+    public LoopAnalyzer(Function function, DominatorTree dominatorTree) {
+        this.function = function;
+        this.loops = new ArrayList<>();
+        this.topLevelLoops = new ArrayList<>();
+        this.innermostLoops = new Loop[function.getBasicBlockCount()];
+        ArrayList<BasicBlock> reversePostOrder = dominatorTree.getReversePostOrder();
+        int[] orders = new int[function.getBasicBlockCount()];
+        for(int i = 0; i < reversePostOrder.size(); i++) {
+            orders[reversePostOrder.get(i).getId()] = i;
+        }
+        boolean[] visited = new boolean[function.getBasicBlockCount()];
+        ArrayList<BasicBlock> workList = new ArrayList<>();
+        for(BasicBlock header : reversePostOrder) {
+            Loop loop = null;
+            for(BasicBlock pred : header.getPrevBBs()) {
+                if(!dominatorTree.dominates(header, pred)) continue;
+                if(loop == null) {
+                    loop = new Loop(header, innermostLoops[header.getId()], function.getBasicBlockCount());
+                }
+                if(!loop.latches.contains(pred)) loop.latches.add(pred);
+            }
+            if(loop == null) continue;
+
+            Arrays.fill(visited, false);
+            ArrayList<BasicBlock> body = new ArrayList<>();
+            visited[header.getId()] = true;
+            body.add(header);
+            workList.addAll(loop.latches);
+            while(!workList.isEmpty()) {
+                BasicBlock bb = workList.remove(workList.size() - 1);
+                if(visited[bb.getId()] || !dominatorTree.isReachable(bb)) continue;
+                visited[bb.getId()] = true;
+                body.add(bb);
+                workList.addAll(bb.getPrevBBs());
+            }
+            body.sort((a, b) -> orders[a.getId()] - orders[b.getId()]);
+            for(BasicBlock bb : body) {
+                loop.addBlock(loop.blocks.size(), bb);
+                innermostLoops[bb.getId()] = loop;
+            }
+            if(loop.parent == null) {
+                topLevelLoops.add(loop);
+            } else {
+                loop.parent.children.add(loop);
+            }
+            loops.add(loop);
+        }
+    }
+
+    public ArrayList<Loop> getLoops() {
+        return loops;
+    }
+
+    public ArrayList<Loop> getTopLevelLoops() {
+        return topLevelLoops;
+    }
+
+    public Loop getLoop(BasicBlock bb) {
+        return bb.getId() < innermostLoops.length ? innermostLoops[bb.getId()] : null;
+    }
+
+    public int getLoopDepth(BasicBlock bb) {
+        Loop loop = getLoop(bb);
+        return loop == null ? 0 : loop.depth;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public BasicBlock getPreheader(Loop loop) {
+        if(loop.preheader != null) return loop.preheader;
+        BasicBlock header = loop.getHeader();
+        ArrayList<BasicBlock> preds = new ArrayList<>();
+        for(BasicBlock pred : header.getPrevBBs()) {
+            if(!loop.contains(pred) && !preds.contains(pred)) preds.add(pred);
+        }
+        if(preds.size() == 1 && preds.get(0).getTail() instanceof Jump) {
+            loop.preheader = preds.get(0);
+            return loop.preheader;
+        }
+
+        BasicBlock preheader = new BasicBlock("preheaderBB", function);
+        for(BasicBlock pred : preds) {
+            Instruction tail = pred.getTail();
+            if(tail instanceof Jump) {
+                ((Jump) tail).setTargetBB(preheader);
+            } else {
+                CJump cjump = (CJump) tail;
+                if(cjump.getThenBB() == header) cjump.setThenBB(preheader);
+                if(cjump.getElseBB() == header) cjump.setElseBB(preheader);
+            }
+            for(int i = 0; i < pred.getNextBBs().size(); i++) {
+                if(pred.getNextBBs().get(i) == header) {
+                    pred.getNextBBs().set(i, preheader);
+                    preheader.getPrevBBs().add(pred);
+                }
+            }
+        }
+        header.getPrevBBs().removeIf(preds::contains);
+        for(Instruction inst = header.getHead(); inst instanceof Phi; inst = inst.getNext()) {
+            Phi phi = (Phi) inst;
+            Operand operand;
+            if(preds.size() == 1) {
+                operand = phi.getPath(preds.get(0));
+            } else {
+                VirtualRegister vr = new VirtualRegister(function, "");
+                Phi entryPhi = new Phi(preheader, vr);
+                for(BasicBlock pred : preds) {
+                    entryPhi.addPath(pred, phi.getPath(pred));
+                }
+                preheader.addNextInst(entryPhi);
+                operand = vr;
+            }
+            for(BasicBlock pred : preds) {
+                phi.removePath(pred);
+            }
+            phi.addPath(preheader, operand);
+        }
+        preheader.addNextJumpInst(new Jump(preheader, header));
+        for(Loop outer = loop.parent; outer != null; outer = outer.parent) {
+            outer.addBlock(outer.blocks.indexOf(header), preheader);
+        }
+        if(preheader.getId() >= innermostLoops.length) {
+            innermostLoops = Arrays.copyOf(innermostLoops, function.getBasicBlockCount());
+        }
+        innermostLoops[preheader.getId()] = loop.parent;
+        loop.preheader = preheader;
+        modified = true;
+        return preheader;
+    }
+}
@@ -0,0 +1,280 @@
+package BackEnd;
+
+import BackEnd.LoopAnalyzer.Loop;
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.*;
+import IR.RegisterVisitor;
+import Utility.IntIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static IR.RegisterSet.*;
+
+public class LoopInvariantCodeMotion {
+    private static final HashSet<String> pureFunctions = new HashSet<>(Arrays.asList(
+            "toString", "string_length", "string_substring", "string_parseInt", "string_ord", "string_concat", "string_compare"));
+
+    private IRProgram program;
+    private AtomicInteger hoistedCount;
+
+    public LoopInvariantCodeMotion(IRProgram program) {
+        this.program = program;
+        this.hoistedCount = new AtomicInteger();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            LoopInvariantCodeMotion loopInvariantCodeMotion = new LoopInvariantCodeMotion(program);
+            loopInvariantCodeMotion.process(function);
+            hoistedCount.addAndGet(loopInvariantCodeMotion.hoisted);
+        });
+    }
+
+    public int getHoistedCount() {
+        return hoistedCount.get();
+    }
+
+    private LoopAnalyzer loopAnalyzer;
+    private int hoisted;
+
+    private Loop loop;
+    private IntIntMap definitions;
+    private ArrayList<Memory> stores;
+    private boolean hasUserCall;
+    private boolean guaranteed;
+    private final RegisterVisitor definitionCounter = reg -> {
+        if(reg instanceof VirtualRegister) {
+            int id = ((VirtualRegister) reg).getId();
+            definitions.put(id, definitions.get(id, 0) + 1);
+        }
+    };
+    private final RegisterVisitor definitionRemover = reg -> {
+        if(SSAConstructor.isVariable(reg)) {
+            definitions.remove(((VirtualRegister) reg).getId());
+        }
+    };
+
+    private void process(Function function) {
+        function.calcReversePostOrder();
+        loopAnalyzer = new LoopAnalyzer(function, new DominatorTree(function));
+        ArrayList<Loop> loops = loopAnalyzer.getLoops();
+        for(int i = loops.size() - 1; i >= 0; i--) {
+            hoist(loops.get(i));
+        }
+        if(loopAnalyzer.isModified()) {
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    private void hoist(Loop loop) {
+        this.loop = loop;
+        this.definitions = new IntIntMap();
+        this.stores = new ArrayList<>();
+        this.hasUserCall = false;
+        boolean hasEntry = false;
+        for(BasicBlock pred : loop.getHeader().getPrevBBs()) {
+            if(!loop.contains(pred)) hasEntry = true;
+        }
+        if(!hasEntry) return;
+
+        for(BasicBlock bb : loop.getBlocks()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                inst.forEachDefinedRegister(definitionCounter);
+                if(inst instanceof Call) {
+                    if(((Call) inst).getFunc().getType() == Function.FuncType.UserDefined) hasUserCall = true;
+                } else {
+                    Address dst = getDst(inst);
+                    if(dst instanceof Memory) stores.add((Memory) dst);
+                }
+            }
+        }
+
+        for(BasicBlock bb : new ArrayList<>(loop.getBlocks())) {
+            guaranteed = bb == loop.getHeader();
+            Instruction inst = bb.getHead();
+            while(inst != null) {
+                Instruction last = matchGroup(inst);
+                if(last != null) {
+                    inst = moveGroup(inst, last);
+                    continue;
+                }
+                if(inst instanceof CJump && guaranteed) {
+                    CJump cjump = (CJump) inst;
+                    cjump.setLhs(hoistOperand(cjump.getLhs()));
+                    cjump.setRhs(hoistOperand(cjump.getRhs()));
+                }
+                if(inst instanceof Call && !pureFunctions.contains(((Call) inst).getFunc().getName())) {
+                    guaranteed = false;
+                }
+                inst = inst.getNext();
+            }
+        }
+    }
+
+    private static Address getDst(Instruction inst) {
+        if(inst instanceof Move) {
+            return ((Move) inst).getDst();
+        } else if(inst instanceof BinaryOperation) {
+            return ((BinaryOperation) inst).getDst();
+        } else if(inst instanceof UnaryOperation) {
+            return ((UnaryOperation) inst).getDst();
+        }
+        return null;
+    }
+
+    private static boolean isVariable(Operand operand) {
+        return operand instanceof Register && SSAConstructor.isVariable((Register) operand);
+    }
+
+    private static boolean isShift(BinaryOperation.BinaryOp op) {
+        return op == BinaryOperation.BinaryOp.SAL || op == BinaryOperation.BinaryOp.SAR;
+    }
+
+    private static boolean isImplicit(BinaryOperation.BinaryOp op) {
+        return op == BinaryOperation.BinaryOp.MUL || op == BinaryOperation.BinaryOp.DIV || op == BinaryOperation.BinaryOp.MOD;
+    }
+
+    private boolean isInvariant(Operand operand) {
+        if(operand instanceof Constant) {
+            return true;
+        } else if(operand instanceof Memory) {
+            Memory memory = (Memory) operand;
+            return (memory.getBase() == null || isInvariant(memory.getBase()))
+                    && (memory.getIndex() == null || isInvariant(memory.getIndex()));
+        } else if(operand instanceof VirtualRegister) {
+            VirtualRegister vr = (VirtualRegister) operand;
+            if(vr.getAllocatedPhysicalRegister() != null || definitions.containsKey(vr.getId())) return false;
+            return SSAConstructor.isVariable(vr) || !hasUserCall;
+        }
+        return false;
+    }
+
+    private boolean isInvariantValue(Operand operand) {
+        if(operand instanceof Memory) {
+            return isInvariant(operand) && canLoad((Memory) operand);
+        }
+        return isInvariant(operand);
+    }
+
+    private boolean canLoad(Memory memory) {
+        if(!guaranteed || hasUserCall) return false;
+        for(Memory store : stores) {
+            if(mayAlias(memory, store)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isStatic(Memory memory) {
+        return memory.getBase() == null && memory.getIndex() == null && memory.getOffset() instanceof StaticData;
+    }
+
+    private static boolean mayAlias(Memory a, Memory b) {
+        if(isStatic(a) || isStatic(b)) {
+            return a.getOffset() == b.getOffset();
+        }
+        if(!(a.getOffset() == null || a.getOffset() instanceof IntImmediate) || !(b.getOffset() == null || b.getOffset() instanceof IntImmediate)) {
+            return true;
+        }
+        int aOffset = a.getOffset() == null ? 0 : ((IntImmediate) a.getOffset()).getValue();
+        int bOffset = b.getOffset() == null ? 0 : ((IntImmediate) b.getOffset()).getValue();
+        if(a.getIndex() == null && b.getIndex() == null) {
+            return aOffset == bOffset;
+        } else if(a.getIndex() == null) {
+            return aOffset != 0;
+        } else if(b.getIndex() == null) {
+            return bOffset != 0;
+        }
+        return true;
+    }
+
+    private Instruction matchGroup(Instruction inst) {
+        if(inst instanceof Move) {
+            Move move = (Move) inst;
+            Instruction next = move.getNext();
+            if(move.getDst() == vrax) {
+                return matchImplicit(move);
+            }
+            if(move.getDst() == vrcx) {
+                if(!(next instanceof Move) || !(next.getNext() instanceof BinaryOperation)) return null;
+                BinaryOperation shift = (BinaryOperation) next.getNext();
+                if(!isShift(shift.getOp()) || shift.getSrc() != vrcx || shift.getDst() != ((Move) next).getDst()) return null;
+                if(!isVariable(shift.getDst()) || !isInvariantValue(move.getSrc()) || !isInvariantValue(((Move) next).getSrc())) return null;
+                return shift;
+            }
+            if(!isVariable(move.getDst()) || !isInvariantValue(move.getSrc())) return null;
+            if(next instanceof BinaryOperation && ((BinaryOperation) next).getDst() == move.getDst()) {
+                BinaryOperation binary = (BinaryOperation) next;
+                if(isShift(binary.getOp()) || isImplicit(binary.getOp()) || !isInvariantValue(binary.getSrc())) return null;
+                return binary;
+            }
+            if(next instanceof UnaryOperation && ((UnaryOperation) next).getDst() == move.getDst()) {
+                return next;
+            }
+            return move.getSrc() instanceof Memory ? move : null;
+        } else if(inst instanceof Lea) {
+            Lea lea = (Lea) inst;
+            return isVariable(lea.getDst()) && isInvariant(lea.getSrc()) ? lea : null;
+        } else if(inst instanceof Compare) {
+            Compare compare = (Compare) inst;
+            return isVariable(compare.getDst()) && isInvariantValue(compare.getLhs()) && isInvariantValue(compare.getRhs()) ? compare : null;
+        } else if(inst instanceof Call) {
+            Call call = (Call) inst;
+            if(!guaranteed || !pureFunctions.contains(call.getFunc().getName())) return null;
+            if(!(call.getNext() instanceof Move) || ((Move) call.getNext()).getSrc() != vrax || !isVariable(((Move) call.getNext()).getDst())) return null;
+            for(Operand arg : call.getArgs()) {
+                if(!isInvariantValue(arg)) return null;
+            }
+            return call.getNext();
+        }
+        return null;
+    }
+
+    private Instruction matchImplicit(Move move) {
+        Instruction inst = move.getNext();
+        if(inst instanceof Cdq) inst = inst.getNext();
+        if(!(inst instanceof BinaryOperation) || !isImplicit(((BinaryOperation) inst).getOp())) return null;
+        BinaryOperation binary = (BinaryOperation) inst;
+        if((binary.getPrev() instanceof Cdq) == (binary.getOp() == BinaryOperation.BinaryOp.MUL)) return null;
+        if(!(binary.getNext() instanceof Move)) return null;
+        Move result = (Move) binary.getNext();
+        if(result.getSrc() != (binary.getOp() == BinaryOperation.BinaryOp.MOD ? vrdx : vrax) || !isVariable(result.getDst())) return null;
+        if(!isInvariantValue(move.getSrc())) return null;
+        if(binary.getOp() == BinaryOperation.BinaryOp.MUL) {
+            return isInvariantValue(binary.getSrc()) ? result : null;
+        }
+        if(!(binary.getSrc() instanceof IntImmediate)) return null;
+        int divisor = ((IntImmediate) binary.getSrc()).getValue();
+        return divisor != 0 && divisor != -1 ? result : null;
+    }
+
+    private Instruction moveGroup(Instruction first, Instruction last) {
+        BasicBlock target = loopAnalyzer.getPreheader(loop);
+        Instruction next = last.getNext();
+        Instruction inst = first;
+        while(true) {
+            Instruction following = inst.getNext();
+            inst.forEachDefinedRegister(definitionRemover);
+            inst.moveBefore(target.getTail());
+            hoisted++;
+            if(inst == last) break;
+            inst = following;
+        }
+        return next;
+    }
+
+    private Operand hoistOperand(Operand operand) {
+        if(!(operand instanceof Memory) || !isInvariantValue(operand)) return operand;
+        BasicBlock target = loopAnalyzer.getPreheader(loop);
+        VirtualRegister vr = new VirtualRegister(target.getFunction(), "");
+        target.getTail().prepend(new Move(target, vr, operand));
+        hoisted++;
+        return vr;
+    }
+}
@@ -8,20 +8,25 @@ import IR.Operand.*;
 import Scope.VariableEntity;
 import Utility.Config;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import static IR.RegisterSet.vargs;
 import static IR.RegisterSet.vrax;
 
 public class Memorization {
+    private static final int HASH_MULTIPLIER = 1000003;
+
     private IRProgram program;
     private HashMap<Function, VirtualRegister> functionTableMap;
     private BasicBlock curBB;
+    private int memorizedCount;
 
     public Memorization(IRProgram program) {
         this.program = program;
         this.functionTableMap = new HashMap<>();
         this.curBB = null;
+        this.memorizedCount = 0;
     }
 
     public void run() {
@@ -39,9 +44,13 @@ public class Memorization {
         }
     }
 
+    public int getMemorizedCount() {
+        return memorizedCount;
+    }
+
     private void addGlobalAddress(Function function) {
         Function global_init = program.getFunction("global_init");
-        StaticVariable var = new StaticVariable(function.getName(), Config.REG_SIZE);
+        StaticVariable var = new StaticVariable(function.getName() + ".memo", Config.REG_SIZE);
         VirtualRegister vr = functionTableMap.get(function);
         vr.setSpillSpace(new Memory(var));
         program.addStaticVariable(var);
@@ -51,19 +60,33 @@ public class Memorization {
         global_init.addGlobalVariable(addr);
     }
 
+    private static int getEntryWords(Function function) {
+        return Integer.highestOneBit(function.getParameters().size() + 1) << 1;
+    }
+
+    private static int getCapacity(Function function) {
+        int bits = Config.MEMORIZATION_TABLE_BITS + Config.MEMORIZATION_KEY_BITS * (function.getParameters().size() - 1);
+        int entryBytes = getEntryWords(function) * Config.REG_SIZE;
+        int maxCapacity = Integer.highestOneBit(Math.max(Config.MEMORIZATION_MAX_TABLE_BYTES / entryBytes, 1));
+        return Math.min(1 << Math.min(bits, 30), maxCapacity);
+    }
+
     private void addFunctionTable(Function function) {
         Function global_init = program.getFunction("global_init");
         BasicBlock preHeadBB = global_init.getHeadBB();
         curBB = new BasicBlock("alloc", global_init);
         global_init.setHeadBB(curBB);
-        VirtualRegister addr = new VirtualRegister("");
-        VirtualRegister size = new VirtualRegister("");
-        VirtualRegister bytes = new VirtualRegister("");
-        curBB.addNextInst(new Move(curBB, size, new IntImmediate(Config.MAX_MEMORIZATION_NUMBER)));
-        curBB.addNextInst(new Lea(curBB, bytes, new Memory(size, Config.REG_SIZE, new IntImmediate(Config.REG_SIZE))));
+        int entryBytes = getEntryWords(function) * Config.REG_SIZE;
+        int entries = getCapacity(function) + Config.MEMORIZATION_PROBE_LIMIT - 1;
+        VirtualRegister addr = new VirtualRegister(program, "");
+        VirtualRegister size = new VirtualRegister(global_init, "");
+        VirtualRegister bytes = new VirtualRegister(global_init, "");
+        VirtualRegister entry = new VirtualRegister(global_init, "");
+        curBB.addNextInst(new Move(curBB, bytes, new IntImmediate(entries * entryBytes)));
         curBB.addNextInst(new Call(curBB, vrax, program.getFunction("malloc"), bytes));
         curBB.addNextInst(new Move(curBB, addr, vrax));
-        curBB.addNextInst(new Move(curBB, new Memory(addr), size));
+        curBB.addNextInst(new Move(curBB, entry, addr));
+        curBB.addNextInst(new Move(curBB, size, new IntImmediate(entries)));
 
         BasicBlock condBB = new BasicBlock("allocateConditionBB", global_init);
         BasicBlock bodyBB = new BasicBlock("allocateBodyBB", global_init);
@@ -74,7 +97,8 @@ public class Memorization {
         curBB.addNextJumpInst(new CJump(condBB, size, CJump.CompareOp.GT, new IntImmediate(0), bodyBB, afterBB));
 
         curBB = bodyBB;
-        curBB.addNextInst(new Move(curBB, new Memory(addr, size, Config.REG_SIZE), new IntImmediate(0)));
+        curBB.addNextInst(new Move(curBB, new Memory(entry), new IntImmediate(0)));
+        curBB.addNextInst(new BinaryOperation(curBB, entry, BinaryOperation.BinaryOp.ADD, new IntImmediate(entryBytes)));
         curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.DEC, size));
         curBB.addNextJumpInst(new Jump(curBB, condBB));
 
@@ -86,37 +110,112 @@ public class Memorization {
 
     private void modify(Function function) {
         VirtualRegister addr = functionTableMap.get(function);
-        VirtualRegister idx = function.getParameters().get(0);
+        int parameterCount = function.getParameters().size();
+        int entryWords = getEntryWords(function);
+        int valueOffset = (parameterCount + 1) * Config.REG_SIZE;
 
         BasicBlock preHeadBB = function.getHeadBB();
         BasicBlock checkBB = new BasicBlock("checkBB", function);
+        BasicBlock probeBB = new BasicBlock("probeBB", function);
+        BasicBlock nextBB = new BasicBlock("probeNextBB", function);
+        BasicBlock advanceBB = new BasicBlock("probeAdvanceBB", function);
         BasicBlock returnBB = new BasicBlock("returnBB", function);
         BasicBlock updateBB = function.getTailBB();
+        BasicBlock tailBB = updateBB.split(updateBB.getHead(), "tailBB");
 
         curBB = checkBB;
+        ArrayList<VirtualRegister> keys = new ArrayList<>();
+        VirtualRegister hash = new VirtualRegister(function, "");
+        VirtualRegister offset = new VirtualRegister(function, "");
+        VirtualRegister entry = new VirtualRegister(function, "");
+        VirtualRegister count = new VirtualRegister(function, "");
         curBB.addNextInst(new Move(curBB, addr, addr.getSpillSpace()));
-        curBB.addNextInst(new Move(curBB, idx, vargs.get(0)));
-        Memory memory = new Memory(addr, idx, Config.REG_SIZE, new IntImmediate(Config.REG_SIZE));
-        curBB.addNextJumpInst(new CJump(curBB, memory, CJump.CompareOp.NE, new IntImmediate(0), returnBB, preHeadBB));
+        for(int i = 0; i < parameterCount; i++) {
+            VirtualRegister key = new VirtualRegister(function, "");
+            curBB.addNextInst(new Move(curBB, key, vargs.get(i)));
+            keys.add(key);
+        }
+        for(Instruction inst = preHeadBB.getHead(); inst instanceof Move; inst = inst.getNext()) {
+            int index = vargs.indexOf(((Move) inst).getSrc());
+            if(index >= 0 && index < parameterCount) ((Move) inst).setSrc(keys.get(index));
+        }
+        curBB.addNextInst(new Move(curBB, hash, keys.get(0)));
+        for(int i = 1; i < parameterCount; i++) {
+            curBB.addNextInst(new Move(curBB, vrax, hash));
+            curBB.addNextInst(new BinaryOperation(curBB, null, BinaryOperation.BinaryOp.MUL, new IntImmediate(HASH_MULTIPLIER)));
+            curBB.addNextInst(new Move(curBB, hash, vrax));
+            curBB.addNextInst(new BinaryOperation(curBB, hash, BinaryOperation.BinaryOp.ADD, keys.get(i)));
+        }
+        curBB.addNextInst(new BinaryOperation(curBB, hash, BinaryOperation.BinaryOp.AND, new IntImmediate(getCapacity(function) - 1)));
+        curBB.addNextInst(new Lea(curBB, offset, new Memory(hash, Config.REG_SIZE, new IntImmediate(0))));
+        curBB.addNextInst(new Lea(curBB, entry, new Memory(addr, offset, entryWords)));
+        curBB.addNextInst(new Move(curBB, count, new IntImmediate(Config.MEMORIZATION_PROBE_LIMIT)));
+        curBB.addNextJumpInst(new Jump(curBB, probeBB));
+
+        BasicBlock keyBB = new BasicBlock("probeKeyBB", function);
+        curBB = probeBB;
+        curBB.addNextJumpInst(new CJump(curBB, new Memory(entry), CJump.CompareOp.EQ, new IntImmediate(0), preHeadBB, keyBB));
+        for(int i = 0; i < parameterCount; i++) {
+            BasicBlock matchBB = i == parameterCount - 1 ? returnBB : new BasicBlock("probeKeyBB", function);
+            curBB = keyBB;
+            Memory memory = new Memory(entry, new IntImmediate((i + 1) * Config.REG_SIZE));
+            curBB.addNextJumpInst(new CJump(curBB, memory, CJump.CompareOp.NE, keys.get(i), nextBB, matchBB));
+            keyBB = matchBB;
+        }
+
+        curBB = nextBB;
+        curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.DEC, count));
+        curBB.addNextJumpInst(new CJump(curBB, count, CJump.CompareOp.EQ, new IntImmediate(0), preHeadBB, advanceBB));
+
+        curBB = advanceBB;
+        curBB.addNextInst(new BinaryOperation(curBB, entry, BinaryOperation.BinaryOp.ADD, new IntImmediate(entryWords * Config.REG_SIZE)));
+        curBB.addNextJumpInst(new Jump(curBB, probeBB));
 
         curBB = returnBB;
-        curBB.addNextInst(new Move(curBB, vrax, memory));
-        curBB.addNextJumpInst(new Jump(curBB, updateBB));
+        curBB.addNextInst(new Move(curBB, vrax, new Memory(entry, new IntImmediate(valueOffset))));
+        curBB.addNextJumpInst(new Jump(curBB, tailBB));
 
         curBB = updateBB;
-        curBB.addPrevInst(new Move(curBB, memory, vrax));
+        for(int i = 0; i < parameterCount; i++) {
+            curBB.addNextInst(new Move(curBB, new Memory(entry, new IntImmediate((i + 1) * Config.REG_SIZE)), keys.get(i)));
+        }
+        curBB.addNextInst(new Move(curBB, new Memory(entry, new IntImmediate(valueOffset)), vrax));
+        curBB.addNextInst(new Move(curBB, new Memory(entry), new IntImmediate(1)));
+        curBB.addNextJumpInst(new Jump(curBB, tailBB));
 
-        Instruction retInst = function.getTailBB().getTail();
-        retInst.prepend(new Move(function.getTailBB(), addr.getSpillSpace(), addr));
+        Instruction retInst = tailBB.getTail();
+        retInst.prepend(new Move(tailBB, addr.getSpillSpace(), addr));
         function.setHeadBB(checkBB);
     }
 
+    private static boolean isRecursiveCall(Function function, Call call) {
+        return call.getFunc() == function || call.getFunc().getReachableFunctions().contains(function);
+    }
+
+    private static boolean isProfitable(Function function) {
+        LoopAnalyzer loopAnalyzer = new LoopAnalyzer(function, new DominatorTree(function));
+        ArrayList<Call> tailCalls = Config.useTailCallElimination ? TailCallEliminator.getTailCalls(function) : new ArrayList<>();
+        int recursiveCalls = 0;
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(!(inst instanceof Call) || !isRecursiveCall(function, (Call) inst)) continue;
+                if(tailCalls.contains(inst)) continue;
+                recursiveCalls += loopAnalyzer.getLoopDepth(bb) == 0 ? 1 : 2;
+            }
+        }
+        return recursiveCalls >= (function.getParameters().size() == 1 ? 1 : 2);
+    }
+
     private void process(Function function) {
+        if(function.canBeMemorized() && !isProfitable(function)) {
+            function.setCanBeMemorized(false);
+        }
         if(function.canBeMemorized()) {
             System.err.println("======================= memorization ========================");
             addFunctionTable(function);
             addGlobalAddress(function);
             modify(function);
+            memorizedCount++;
         }
     }
 
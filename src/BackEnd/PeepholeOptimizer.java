@@ -0,0 +1,206 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PeepholeOptimizer {
+    private IRProgram program;
+    private ArrayList<PeepholeRule> rules;
+    private ArrayList<AtomicInteger> fireCounts;
+
+    public PeepholeOptimizer(IRProgram program) {
+        this.program = program;
+        this.rules = new ArrayList<>();
+        this.fireCounts = new ArrayList<>();
+        addRule(new StoreReloadRule());
+        addRule(new LoadStoreRule());
+        addRule(new SelfMoveRule());
+        addRule(new ZeroMoveRule());
+        addRule(new ZeroOperandRule());
+        addRule(new ZeroCompareRule());
+    }
+
+    public void addRule(PeepholeRule rule) {
+        rules.add(rule);
+        fireCounts.add(new AtomicInteger());
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            int[] counts = new int[rules.size()];
+            for(BasicBlock bb : function.getBasicBlocks()) {
+                Instruction inst = bb.getHead();
+                while(inst != null) {
+                    Instruction next = inst.getNext();
+                    for(int i = 0; i < rules.size(); i++) {
+                        if(rules.get(i).apply(inst)) {
+                            counts[i]++;
+                            break;
+                        }
+                    }
+                    inst = next;
+                }
+            }
+            for(int i = 0; i < rules.size(); i++) {
+                fireCounts.get(i).addAndGet(counts[i]);
+            }
+        });
+    }
+
+    public LinkedHashMap<String, Integer> getFireCounts() {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        for(int i = 0; i < rules.size(); i++) {
+            counts.put(rules.get(i).getName(), fireCounts.get(i).get());
+        }
+        return counts;
+    }
+
+    private static PhysicalRegister getPhysicalRegister(Operand operand) {
+        if(operand instanceof PhysicalRegister) return (PhysicalRegister) operand;
+        if(operand instanceof VirtualRegister) return ((VirtualRegister) operand).getAllocatedPhysicalRegister();
+        return null;
+    }
+
+    private static boolean isSameRegister(Operand lhs, Operand rhs) {
+        PhysicalRegister register = getPhysicalRegister(lhs);
+        return register != null && register == getPhysicalRegister(rhs);
+    }
+
+    private static boolean isSameConstant(Constant lhs, Constant rhs) {
+        if(lhs instanceof IntImmediate && rhs instanceof IntImmediate) {
+            return ((IntImmediate) lhs).getValue() == ((IntImmediate) rhs).getValue();
+        }
+        return lhs == rhs;
+    }
+
+    private static boolean isSameMemory(Operand lhs, Operand rhs) {
+        if(!(lhs instanceof Memory) || !(rhs instanceof Memory)) return false;
+        if(lhs == rhs) return true;
+        Memory a = (Memory) lhs;
+        Memory b = (Memory) rhs;
+        if(a.getBase() == null ? b.getBase() != null : !isSameRegister(a.getBase(), b.getBase())) return false;
+        if(a.getIndex() == null ? b.getIndex() != null : !isSameRegister(a.getIndex(), b.getIndex())) return false;
+        if(a.getIndex() != null && a.getScale() != b.getScale()) return false;
+        if(a.getBase() == null && a.getIndex() == null && a.getOffset() == null) return false;
+        return a.getOffset() == null ? b.getOffset() == null : b.getOffset() != null && isSameConstant(a.getOffset(), b.getOffset());
+    }
+
+    private static boolean isImmediate(Operand operand, int value) {
+        return operand instanceof IntImmediate && ((IntImmediate) operand).getValue() == value;
+    }
+
+    private static class StoreReloadRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "storeReloads";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof Move) || !(inst.getPrev() instanceof Move)) return false;
+            Move load = (Move) inst;
+            Move store = (Move) inst.getPrev();
+            if(getPhysicalRegister(load.getDst()) == null || !isSameMemory(load.getSrc(), store.getDst())) return false;
+            if(getPhysicalRegister(store.getSrc()) == null && !(store.getSrc() instanceof IntImmediate)) return false;
+            if(isSameRegister(load.getDst(), store.getSrc())) {
+                load.remove();
+            } else {
+                load.setSrc(store.getSrc());
+            }
+            return true;
+        }
+    }
+
+    private static class LoadStoreRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "redundantStores";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof Move) || !(inst.getPrev() instanceof Move)) return false;
+            Move store = (Move) inst;
+            Move load = (Move) inst.getPrev();
+            if(!isSameRegister(load.getDst(), store.getSrc()) || !isSameMemory(load.getSrc(), store.getDst())) return false;
+            Memory memory = (Memory) store.getDst();
+            if(isSameRegister(load.getDst(), memory.getBase()) || isSameRegister(load.getDst(), memory.getIndex())) return false;
+            store.remove();
+            return true;
+        }
+    }
+
+    private static class SelfMoveRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "selfMoves";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof Move) || !isSameRegister(((Move) inst).getDst(), ((Move) inst).getSrc())) return false;
+            inst.remove();
+            return true;
+        }
+    }
+
+    private static class ZeroMoveRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "zeroMoves";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof Move) || !isImmediate(((Move) inst).getSrc(), 0)) return false;
+            Address dst = ((Move) inst).getDst();
+            if(getPhysicalRegister(dst) == null) return false;
+            inst.replace(new BinaryOperation(inst.getBB(), dst, BinaryOperation.BinaryOp.XOR, dst));
+            return true;
+        }
+    }
+
+    private static class ZeroOperandRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "identityOperations";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof BinaryOperation) || !isImmediate(((BinaryOperation) inst).getSrc(), 0)) return false;
+            switch(((BinaryOperation) inst).getOp()) {
+                case ADD:
+                case SUB:
+                case OR:
+                case XOR:
+                    inst.remove();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static class ZeroCompareRule implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "zeroTests";
+        }
+
+        @Override
+        public boolean apply(Instruction inst) {
+            if(!(inst instanceof CJump)) return false;
+            CJump cjump = (CJump) inst;
+            if(cjump.isTest() || getPhysicalRegister(cjump.getLhs()) == null || !isImmediate(cjump.getRhs(), 0)) return false;
+            cjump.setTest(true);
+            return true;
+        }
+    }
+}
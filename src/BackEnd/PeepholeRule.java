@@ -0,0 +1,9 @@
+package BackEnd;
+
+import IR.Instruction.Instruction;
+
+public interface PeepholeRule {
+    String getName();
+
+    boolean apply(Instruction inst);
+}
@@ -0,0 +1,356 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.Register;
+import IR.Operand.VirtualRegister;
+import IR.RegisterVisitor;
+import Utility.IntIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class SSAConstructor {
+    private IRProgram program;
+
+    public SSAConstructor(IRProgram program) {
+        this.program = program;
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> new SSAConstructor(program).process(function));
+    }
+
+    static boolean isVariable(Register reg) {
+        return reg instanceof VirtualRegister && ((VirtualRegister) reg).getAllocatedPhysicalRegister() == null
+                && ((VirtualRegister) reg).getSpillSpace() == null;
+    }
+
+    static boolean isTwoAddress(Instruction inst) {
+        if(inst instanceof BinaryOperation) {
+            return ((BinaryOperation) inst).getDst() instanceof Register && isVariable((Register) ((BinaryOperation) inst).getDst());
+        } else if(inst instanceof UnaryOperation) {
+            return ((UnaryOperation) inst).getDst() instanceof Register && isVariable((Register) ((UnaryOperation) inst).getDst());
+        }
+        return false;
+    }
+
+    static void forEachUse(Instruction inst, RegisterVisitor visitor) {
+        if(inst instanceof Call) {
+            ((Call) inst).forEachArgumentRegister(visitor);
+        } else if(inst instanceof Lea) {
+            ((Lea) inst).getSrc().forEachUsedRegister(visitor);
+        } else {
+            inst.forEachUsedRegister(visitor);
+        }
+    }
+
+    private Function function;
+    private DominatorTree dominatorTree;
+    private IntIntMap variableIds;
+    private ArrayList<VirtualRegister> variables;
+    private ArrayList<ArrayList<BasicBlock>> definitionBlocks;
+    private int[] definitionCounts;
+    private int[] globalIds;
+    private int globalCount;
+    private boolean[] renamed;
+    private int words;
+    private long[][] gens;
+    private long[][] kills;
+    private long[][] liveINs;
+    private IntIntMap phiVariables;
+
+    private ArrayList<ArrayList<VirtualRegister>> stacks;
+    private int[] pushLog;
+    private int pushLogSize;
+    private HashMap<Register, Register> renameMap;
+
+    private BasicBlock curBB;
+    private int[] definitionStamps;
+    private int curStamp;
+    private long[] genSet;
+    private long[] killSet;
+    private final RegisterVisitor numberVisitor = reg -> {
+        if(isVariable(reg) && !variableIds.containsKey(((VirtualRegister) reg).getId())) {
+            variableIds.put(((VirtualRegister) reg).getId(), variables.size());
+            variables.add((VirtualRegister) reg);
+        }
+    };
+    private final RegisterVisitor globalVisitor = reg -> {
+        if(isVariable(reg)) {
+            int v = getVariableId(reg);
+            if(definitionStamps[v] != curStamp && globalIds[v] < 0) {
+                globalIds[v] = globalCount++;
+            }
+        }
+    };
+    private final RegisterVisitor definitionVisitor = reg -> {
+        if(isVariable(reg)) {
+            int v = getVariableId(reg);
+            definitionStamps[v] = curStamp;
+            definitionCounts[v]++;
+            ArrayList<BasicBlock> blocks = definitionBlocks.get(v);
+            if(blocks.isEmpty() || blocks.get(blocks.size() - 1) != curBB) {
+                blocks.add(curBB);
+            }
+        }
+    };
+    private final RegisterVisitor genVisitor = reg -> {
+        if(isVariable(reg)) {
+            int id = globalIds[getVariableId(reg)];
+            if(id >= 0 && !LivenessAnalyzer.contains(killSet, id)) {
+                LivenessAnalyzer.add(genSet, id);
+            }
+        }
+    };
+    private final RegisterVisitor killVisitor = reg -> {
+        if(isVariable(reg)) {
+            int id = globalIds[getVariableId(reg)];
+            if(id >= 0) {
+                LivenessAnalyzer.add(killSet, id);
+            }
+        }
+    };
+    private final RegisterVisitor useRenamer = reg -> {
+        if(isVariable(reg)) {
+            int v = getVariableId(reg);
+            if(renamed[v]) {
+                renameMap.put(reg, getCurrentName(v));
+            }
+        }
+    };
+    private final RegisterVisitor defRenamer = reg -> {
+        if(isVariable(reg)) {
+            int v = getVariableId(reg);
+            if(renamed[v]) {
+                renameMap.put(reg, newName(v));
+            }
+        }
+    };
+
+    private void process(Function function) {
+        this.function = function;
+        function.calcReversePostOrder();
+        dominatorTree = new DominatorTree(function);
+        splitTwoAddressInstructions();
+        numberVariables();
+        analyzeLiveness();
+        insertPhis();
+        rename();
+    }
+
+    private int getVariableId(Register reg) {
+        return variableIds.get(((VirtualRegister) reg).getId(), -1);
+    }
+
+    private void splitTwoAddressInstructions() {
+        for(BasicBlock bb : dominatorTree.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(!isTwoAddress(inst)) continue;
+                Register dst = (Register) (inst instanceof BinaryOperation ? ((BinaryOperation) inst).getDst() : ((UnaryOperation) inst).getDst());
+                inst.prepend(new Move(bb, dst, dst));
+            }
+        }
+    }
+
+    private void numberVariables() {
+        variableIds = new IntIntMap();
+        variables = new ArrayList<>();
+        for(BasicBlock bb : dominatorTree.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                forEachUse(inst, numberVisitor);
+                inst.forEachDefinedRegister(numberVisitor);
+            }
+        }
+
+        int n = variables.size();
+        definitionBlocks = new ArrayList<>(n);
+        for(int v = 0; v < n; v++) {
+            definitionBlocks.add(new ArrayList<>());
+        }
+        definitionCounts = new int[n];
+        globalIds = new int[n];
+        Arrays.fill(globalIds, -1);
+        globalCount = 0;
+        definitionStamps = new int[n];
+        Arrays.fill(definitionStamps, -1);
+        for(BasicBlock bb : dominatorTree.getReversePostOrder()) {
+            curBB = bb;
+            curStamp = bb.getId();
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                forEachUse(inst, globalVisitor);
+                if(!isTwoAddress(inst)) {
+                    inst.forEachDefinedRegister(definitionVisitor);
+                }
+            }
+        }
+
+        words = (globalCount + 63) >>> 6;
+        gens = new long[function.getBasicBlockCount()][];
+        kills = new long[function.getBasicBlockCount()][];
+        liveINs = new long[function.getBasicBlockCount()][];
+        for(BasicBlock bb : dominatorTree.getReversePostOrder()) {
+            genSet = gens[bb.getId()] = new long[words];
+            killSet = kills[bb.getId()] = new long[words];
+            liveINs[bb.getId()] = new long[words];
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                forEachUse(inst, genVisitor);
+                inst.forEachDefinedRegister(killVisitor);
+            }
+        }
+    }
+
+    private void analyzeLiveness() {
+        ArrayList<BasicBlock> reversePostOrder = dominatorTree.getReversePostOrder();
+        long[] out = new long[words];
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int i = reversePostOrder.size() - 1; i >= 0; i--) {
+                BasicBlock bb = reversePostOrder.get(i);
+                Arrays.fill(out, 0);
+                for(BasicBlock succ : bb.getNextBBs()) {
+                    long[] succIn = liveINs[succ.getId()];
+                    for(int w = 0; w < words; w++) {
+                        out[w] |= succIn[w];
+                    }
+                }
+                long[] in = liveINs[bb.getId()];
+                long[] gen = gens[bb.getId()];
+                long[] kill = kills[bb.getId()];
+                for(int w = 0; w < words; w++) {
+                    long newIn = gen[w] | (out[w] & ~kill[w]);
+                    if(newIn != in[w]) {
+                        in[w] = newIn;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void insertPhis() {
+        phiVariables = new IntIntMap();
+        renamed = new boolean[variables.size()];
+        int n = function.getBasicBlockCount();
+        int[] phiStamps = new int[n];
+        int[] workStamps = new int[n];
+        ArrayList<BasicBlock> workList = new ArrayList<>();
+        for(int v = 0; v < variables.size(); v++) {
+            renamed[v] = definitionCounts[v] > 1;
+            int id = globalIds[v];
+            if(id < 0) continue;
+            VirtualRegister variable = variables.get(v);
+            int stamp = v + 1;
+            workList.clear();
+            for(BasicBlock bb : definitionBlocks.get(v)) {
+                workStamps[bb.getId()] = stamp;
+                workList.add(bb);
+            }
+            while(!workList.isEmpty()) {
+                BasicBlock bb = workList.remove(workList.size() - 1);
+                for(BasicBlock frontier : dominatorTree.getDominanceFrontier(bb)) {
+                    if(phiStamps[frontier.getId()] == stamp || !LivenessAnalyzer.contains(liveINs[frontier.getId()], id)) continue;
+                    phiStamps[frontier.getId()] = stamp;
+                    Phi phi = new Phi(frontier, variable);
+                    for(BasicBlock pred : frontier.getPrevBBs()) {
+                        phi.addPath(pred, variable);
+                    }
+                    frontier.addPrevInst(phi);
+                    phiVariables.put(phi.getId(), v);
+                    renamed[v] = true;
+                    if(workStamps[frontier.getId()] != stamp) {
+                        workStamps[frontier.getId()] = stamp;
+                        workList.add(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    private VirtualRegister getCurrentName(int v) {
+        ArrayList<VirtualRegister> stack = stacks.get(v);
+        return stack == null || stack.isEmpty() ? variables.get(v) : stack.get(stack.size() - 1);
+    }
+
+    private VirtualRegister newName(int v) {
+        VirtualRegister vr = new VirtualRegister(function, variables.get(v).getName());
+        if(stacks.get(v) == null) {
+            stacks.set(v, new ArrayList<>());
+        }
+        stacks.get(v).add(vr);
+        if(pushLogSize == pushLog.length) {
+            pushLog = Arrays.copyOf(pushLog, pushLogSize * 2);
+        }
+        pushLog[pushLogSize++] = v;
+        return vr;
+    }
+
+    private void rename() {
+        stacks = new ArrayList<>(variables.size());
+        for(int v = 0; v < variables.size(); v++) {
+            stacks.add(null);
+        }
+        pushLog = new int[16];
+        pushLogSize = 0;
+        renameMap = new HashMap<>();
+
+        ArrayList<BasicBlock> blockStack = new ArrayList<>();
+        ArrayList<Integer> markStack = new ArrayList<>();
+        int[] nextChild = new int[function.getBasicBlockCount()];
+        BasicBlock entry = function.getHeadBB();
+        markStack.add(pushLogSize);
+        renameBlock(entry);
+        blockStack.add(entry);
+        while(!blockStack.isEmpty()) {
+            BasicBlock bb = blockStack.get(blockStack.size() - 1);
+            ArrayList<BasicBlock> children = dominatorTree.getChildren(bb);
+            if(nextChild[bb.getId()] < children.size()) {
+                BasicBlock child = children.get(nextChild[bb.getId()]++);
+                markStack.add(pushLogSize);
+                renameBlock(child);
+                blockStack.add(child);
+            } else {
+                int mark = markStack.remove(markStack.size() - 1);
+                while(pushLogSize > mark) {
+                    ArrayList<VirtualRegister> stack = stacks.get(pushLog[--pushLogSize]);
+                    stack.remove(stack.size() - 1);
+                }
+                blockStack.remove(blockStack.size() - 1);
+            }
+        }
+    }
+
+    private void renameBlock(BasicBlock bb) {
+        for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+            renameMap.clear();
+            if(inst instanceof Phi) {
+                renameMap.put(((Phi) inst).getDst(), newName(phiVariables.get(inst.getId(), -1)));
+                inst.renameDefinedRegisters(renameMap);
+                continue;
+            }
+            forEachUse(inst, useRenamer);
+            if(!renameMap.isEmpty()) {
+                if(inst instanceof Call) {
+                    ((Call) inst).renameArgumentRegisters(renameMap);
+                } else {
+                    inst.renameUsedRegisters(renameMap);
+                }
+            }
+            if(isTwoAddress(inst)) continue;
+            renameMap.clear();
+            inst.forEachDefinedRegister(defRenamer);
+            if(!renameMap.isEmpty()) {
+                inst.renameDefinedRegisters(renameMap);
+            }
+        }
+        for(BasicBlock succ : bb.getNextBBs()) {
+            for(Instruction inst = succ.getHead(); inst instanceof Phi; inst = inst.getNext()) {
+                ((Phi) inst).addPath(bb, getCurrentName(phiVariables.get(inst.getId(), -1)));
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.Operand;
+import IR.Operand.Register;
+import IR.Operand.VirtualRegister;
+import IR.RegisterSet;
+import IR.RegisterVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class SSADestructor {
+    private IRProgram program;
+
+    public SSADestructor(IRProgram program) {
+        this.program = program;
+        this.K = RegisterSet.allRegs.size() - 2;
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> new SSADestructor(program).process(function));
+    }
+
+    private int K;
+    private Function function;
+    private HashSet<Move> copies;
+
+    private LivenessAnalyzer livenessAnalyzer;
+    private long[] adjMatrix;
+    private int[][] adjList;
+    private int[] adjListSizes;
+    private int[] alias;
+    private int[] stamps;
+    private int curStamp;
+    private long[] live;
+    private int moveSrc;
+    private final RegisterVisitor interferenceBuilder = reg -> {
+        int d = livenessAnalyzer.getId((VirtualRegister) reg);
+        for(int l = LivenessAnalyzer.nextSetBit(live, 0); l >= 0; l = LivenessAnalyzer.nextSetBit(live, l + 1)) {
+            if(l != moveSrc) {
+                addEdge(d, l);
+            }
+        }
+    };
+    private final RegisterVisitor liveAdder = reg -> LivenessAnalyzer.add(live, livenessAnalyzer.getId((VirtualRegister) reg));
+    private final RegisterVisitor liveRemover = reg -> LivenessAnalyzer.remove(live, livenessAnalyzer.getId((VirtualRegister) reg));
+
+    private void process(Function function) {
+        this.function = function;
+        this.copies = new HashSet<>();
+        boolean split = false;
+        for(BasicBlock bb : new ArrayList<>(function.getBasicBlocks())) {
+            if(!(bb.getHead() instanceof Phi)) continue;
+            ArrayList<Phi> phis = new ArrayList<>();
+            for(Instruction inst = bb.getHead(); inst instanceof Phi; inst = inst.getNext()) {
+                phis.add((Phi) inst);
+            }
+            ArrayList<BasicBlock> preds = new ArrayList<>();
+            for(BasicBlock pred : bb.getPrevBBs()) {
+                if(!preds.contains(pred)) preds.add(pred);
+            }
+            for(BasicBlock pred : preds) {
+                ArrayList<Register> dsts = new ArrayList<>();
+                ArrayList<Operand> srcs = new ArrayList<>();
+                for(Phi phi : phis) {
+                    if(phi.getPath(pred) != phi.getDst()) {
+                        dsts.add(phi.getDst());
+                        srcs.add(phi.getPath(pred));
+                    }
+                }
+                if(dsts.isEmpty()) continue;
+                BasicBlock copyBB = pred;
+                if(!(pred.getTail() instanceof Jump)) {
+                    copyBB = splitEdge(pred, bb);
+                    split = true;
+                }
+                sequentialize(copyBB, dsts, srcs);
+            }
+            for(Phi phi : phis) {
+                phi.remove();
+            }
+        }
+        if(split) {
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+        coalesce();
+    }
+
+    private BasicBlock splitEdge(BasicBlock pred, BasicBlock succ) {
+        BasicBlock splitBB = new BasicBlock("splitBB", function);
+        CJump cjump = (CJump) pred.getTail();
+        if(cjump.getThenBB() == succ) cjump.setThenBB(splitBB);
+        if(cjump.getElseBB() == succ) cjump.setElseBB(splitBB);
+        for(int i = 0; i < pred.getNextBBs().size(); i++) {
+            if(pred.getNextBBs().get(i) == succ) {
+                pred.getNextBBs().set(i, splitBB);
+                splitBB.getPrevBBs().add(pred);
+            }
+        }
+        succ.getPrevBBs().removeIf(bb -> bb == pred);
+        splitBB.addNextJumpInst(new Jump(splitBB, succ));
+        return splitBB;
+    }
+
+    private void sequentialize(BasicBlock bb, ArrayList<Register> dsts, ArrayList<Operand> srcs) {
+        Instruction jump = bb.getTail();
+        while(!dsts.isEmpty()) {
+            boolean emitted = false;
+            for(int i = 0; i < dsts.size(); i++) {
+                if(!srcs.contains(dsts.get(i))) {
+                    Move move = new Move(bb, dsts.get(i), srcs.get(i));
+                    jump.prepend(move);
+                    copies.add(move);
+                    dsts.remove(i);
+                    srcs.remove(i);
+                    emitted = true;
+                    break;
+                }
+            }
+            if(!emitted) {
+                Register blocked = dsts.get(0);
+                VirtualRegister tmp = new VirtualRegister(function, "");
+                Move move = new Move(bb, tmp, blocked);
+                jump.prepend(move);
+                copies.add(move);
+                for(int i = 0; i < srcs.size(); i++) {
+                    if(srcs.get(i) == blocked) srcs.set(i, tmp);
+                }
+            }
+        }
+    }
+
+    private static boolean isCoalescable(Operand operand) {
+        return operand instanceof Register && SSAConstructor.isVariable((Register) operand);
+    }
+
+    private boolean isSSACopy(Move move) {
+        if(copies.contains(move)) return true;
+        Instruction next = move.getNext();
+        if(next instanceof BinaryOperation) {
+            return ((BinaryOperation) next).getDst() == move.getDst();
+        } else if(next instanceof UnaryOperation) {
+            return ((UnaryOperation) next).getDst() == move.getDst();
+        }
+        return false;
+    }
+
+    private void coalesce() {
+        ArrayList<Move> moves = new ArrayList<>();
+        int ssaCopyCount = 0;
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(inst instanceof Move && isCoalescable(((Move) inst).getDst()) && isCoalescable(((Move) inst).getSrc())) {
+                    if(isSSACopy((Move) inst)) {
+                        moves.add(ssaCopyCount++, (Move) inst);
+                    } else {
+                        moves.add((Move) inst);
+                    }
+                }
+            }
+        }
+        if(moves.isEmpty()) return;
+
+        livenessAnalyzer = new LivenessAnalyzer(function, false);
+        int n = livenessAnalyzer.size();
+        adjMatrix = new long[(int) (((long) n * (n - 1) / 2 + 63) >>> 6)];
+        adjList = new int[n][];
+        adjListSizes = new int[n];
+        alias = new int[n];
+        stamps = new int[n];
+        curStamp = 0;
+        for(int i = 0; i < n; i++) {
+            adjList[i] = new int[4];
+            alias[i] = i;
+        }
+        buildInterference();
+
+        boolean changed = false;
+        for(int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            int x = getAlias(livenessAnalyzer.getId((VirtualRegister) move.getDst()));
+            int y = getAlias(livenessAnalyzer.getId((VirtualRegister) move.getSrc()));
+            if(x != y && !adjacentTo(x, y) && (i < ssaCopyCount || conservative(x, y))) {
+                if(livenessAnalyzer.getRegister(x).getId() < livenessAnalyzer.getRegister(y).getId()) {
+                    combine(x, y);
+                } else {
+                    combine(y, x);
+                }
+                changed = true;
+            }
+        }
+        if(changed) {
+            HashMap<Register, Register> renameMap = new HashMap<>();
+            for(int i = 0; i < n; i++) {
+                if(getAlias(i) != i) {
+                    renameMap.put(livenessAnalyzer.getRegister(i), livenessAnalyzer.getRegister(getAlias(i)));
+                }
+            }
+            for(BasicBlock bb : function.getBasicBlocks()) {
+                for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                    if(inst instanceof Call) {
+                        ((Call) inst).renameArgumentRegisters(renameMap);
+                    } else {
+                        inst.renameUsedRegisters(renameMap);
+                    }
+                    inst.renameDefinedRegisters(renameMap);
+                }
+            }
+        }
+        for(Move move : moves) {
+            if(move.getDst() == move.getSrc()) {
+                move.remove();
+            }
+        }
+    }
+
+    private boolean isSignificant(int n) {
+        return !isCoalescable(livenessAnalyzer.getRegister(n)) || adjListSizes[n] >= K;
+    }
+
+    private boolean conservative(int u, int v) {
+        curStamp++;
+        int k = 0;
+        for(int node : new int[]{u, v}) {
+            for(int i = 0; i < adjListSizes[node]; i++) {
+                int t = getAlias(adjList[node][i]);
+                if(stamps[t] == curStamp) continue;
+                stamps[t] = curStamp;
+                if(isSignificant(t) && ++k >= K) return false;
+            }
+        }
+        return true;
+    }
+
+    private void buildInterference() {
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            live = livenessAnalyzer.getLiveOut(bb).clone();
+            for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
+                moveSrc = -1;
+                if(inst instanceof Move && ((Move) inst).getSrc() instanceof VirtualRegister) {
+                    moveSrc = livenessAnalyzer.getId((VirtualRegister) ((Move) inst).getSrc());
+                }
+                inst.forEachDefinedRegister(interferenceBuilder);
+                inst.forEachDefinedRegister(liveRemover);
+                if(inst instanceof Call) {
+                    ((Call) inst).forEachArgumentRegister(liveAdder);
+                } else {
+                    inst.forEachUsedRegister(liveAdder);
+                }
+            }
+        }
+    }
+
+    private int getAlias(int n) {
+        while(alias[n] != n) {
+            alias[n] = alias[alias[n]];
+            n = alias[n];
+        }
+        return n;
+    }
+
+    private static long matrixIndex(int a, int b) {
+        long hi = Math.max(a, b);
+        long lo = Math.min(a, b);
+        return hi * (hi - 1) / 2 + lo;
+    }
+
+    private boolean adjacentTo(int a, int b) {
+        long index = matrixIndex(a, b);
+        return (adjMatrix[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    private void addEdge(int a, int b) {
+        if(a != b && !adjacentTo(a, b)) {
+            long index = matrixIndex(a, b);
+            adjMatrix[(int) (index >>> 6)] |= 1L << index;
+            if(adjListSizes[a] == adjList[a].length) adjList[a] = Arrays.copyOf(adjList[a], adjListSizes[a] * 2);
+            adjList[a][adjListSizes[a]++] = b;
+            if(adjListSizes[b] == adjList[b].length) adjList[b] = Arrays.copyOf(adjList[b], adjListSizes[b] * 2);
+            adjList[b][adjListSizes[b]++] = a;
+        }
+    }
+
+    private void combine(int u, int v) {
+        alias[v] = u;
+        for(int i = 0; i < adjListSizes[v]; i++) {
+            addEdge(u, getAlias(adjList[v][i]));
+        }
+    }
+}
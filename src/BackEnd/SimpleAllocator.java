@@ -31,9 +31,7 @@ public class SimpleAllocator {
     }
 
     public void allocateRegisters() {
-        for(Function function : program.getFunctions().values()) {
-            allocateRegisters(function);
-        }
+        FunctionPassRunner.run(program, function -> new SimpleAllocator(program).allocateRegisters(function));
     }
     private PhysicalRegister getPhysicalRegister(Operand vr) {
         if(vr instanceof VirtualRegister) {
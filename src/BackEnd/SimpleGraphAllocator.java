@@ -15,7 +15,6 @@ import java.util.*;
 
 public class SimpleGraphAllocator {
     private IRProgram program;
-    private LivenessAnalyzer livenessAnalyzer;
     private HashSet<PhysicalRegister> physicalRegisters;
     private HashMap<VirtualRegister, PhysicalRegister> colors;
     private int K;
@@ -42,7 +41,6 @@ public class SimpleGraphAllocator {
 
     public SimpleGraphAllocator(IRProgram program) {
         this.program = program;
-        this.livenessAnalyzer = new LivenessAnalyzer();
         this.physicalRegisters = new HashSet<>();
         for(PhysicalRegister pr : RegisterSet.allRegs) {
             if(!pr.getName().equals("rsp") && !pr.getName().equals("rbp")) {
@@ -201,7 +199,7 @@ public class SimpleGraphAllocator {
     private void build(Function function) {
         System.err.println("================================ build ====================================");
 
-        HashMap<BasicBlock, HashSet<VirtualRegister>> OUTs = livenessAnalyzer.getOUTs(function, true);
+        LivenessAnalyzer livenessAnalyzer = new LivenessAnalyzer(function, true);
         for(BasicBlock bb : function.getBasicBlocks()) {
             for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
                 for(VirtualRegister vr : trans(inst.getUsedRegisters())) {
@@ -214,8 +212,10 @@ public class SimpleGraphAllocator {
         }
 
         for(BasicBlock bb : function.getBasicBlocks()) {
-            HashSet<VirtualRegister> live = new HashSet<>(OUTs.get(bb));
+            long[] liveOut = livenessAnalyzer.getLiveOut(bb).clone();
             for(Instruction inst = bb.getTail(); inst != null; inst = inst.getPrev()) {
+                HashSet<VirtualRegister> live = livenessAnalyzer.toSet(liveOut);
+                livenessAnalyzer.stepBackward(liveOut, inst);
                 if(isMoveInstruction(inst)) {
                     live.removeAll(trans(inst.getUsedRegisters()));
                     for(VirtualRegister n : union(trans(inst.getDefinedRegisters()), trans(inst.getUsedRegisters()))) {
@@ -229,8 +229,6 @@ public class SimpleGraphAllocator {
                         addEdge(l, d);
                     }
                 }
-                live.removeAll(trans(inst.getDefinedRegisters()));
-                live.addAll(trans(inst.getUsedRegisters()));
             }
         }
     }
@@ -263,13 +261,13 @@ public class SimpleGraphAllocator {
                 HashMap<Register, Register> renameMap = new HashMap<>();
                 for(VirtualRegister vr : trans(inst.getUsedRegisters())) {
                     if(spillNodes.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                        renameMap.put(vr, new VirtualRegister(function, ""));
                         use.add(vr);
                     }
                 }
                 for(VirtualRegister vr : trans(inst.getDefinedRegisters())) {
                     if(spillNodes.contains(vr)) {
-                        renameMap.put(vr, new VirtualRegister(""));
+                        renameMap.put(vr, new VirtualRegister(function, ""));
                         def.add(vr);
                     }
                 }
@@ -331,11 +329,9 @@ public class SimpleGraphAllocator {
     }
 
     public void run() {
-        for(Function function : program.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined) {
-                System.err.println("====================== allocate register in " + function.getName() + " =====================");
-                process(function);
-            }
-        }
+        FunctionPassRunner.run(program, function -> {
+            System.err.println("====================== allocate register in " + function.getName() + " =====================");
+            new SimpleGraphAllocator(program).process(function);
+        });
     }
 }
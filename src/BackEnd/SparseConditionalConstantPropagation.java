@@ -0,0 +1,548 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.*;
+import IR.RegisterVisitor;
+import Utility.IntIntMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ListIterator;
+import java.util.Map;
+
+import static IR.RegisterSet.*;
+
+public class SparseConditionalConstantPropagation {
+    private static final long TOP = Long.MIN_VALUE;
+    private static final long BOTTOM = Long.MAX_VALUE;
+
+    private IRProgram program;
+    private boolean propagateGlobals;
+    private IntIntMap constantGlobals;
+
+    public SparseConditionalConstantPropagation(IRProgram program, boolean propagateGlobals) {
+        this.program = program;
+        this.propagateGlobals = propagateGlobals;
+        this.constantGlobals = new IntIntMap();
+    }
+
+    public void run() {
+        if(propagateGlobals) {
+            findConstantGlobals();
+        }
+        FunctionPassRunner.run(program, function -> {
+            SparseConditionalConstantPropagation sccp = new SparseConditionalConstantPropagation(program, propagateGlobals);
+            sccp.constantGlobals = constantGlobals;
+            sccp.process(function);
+        });
+    }
+
+    private void findConstantGlobals() {
+        Function init = program.getFunction("global_init");
+        if(init == null) return;
+        HashMap<VirtualRegister, Move> initializers = new HashMap<>();
+        for(Instruction inst = init.getHeadBB().getHead(); inst != null && !(inst instanceof Call); inst = inst.getNext()) {
+            if(inst instanceof Move && ((Move) inst).getDst() instanceof VirtualRegister && ((Move) inst).getSrc() instanceof IntImmediate) {
+                VirtualRegister vr = (VirtualRegister) ((Move) inst).getDst();
+                if(vr.getSpillSpace() != null && vr.getSpillSpace().getBase() == null && !initializers.containsKey(vr)) {
+                    initializers.put(vr, (Move) inst);
+                }
+            }
+        }
+        HashSet<VirtualRegister> invalid = new HashSet<>();
+        for(Function function : FunctionPassRunner.getUserDefinedFunctions(program)) {
+            for(BasicBlock bb : function.getBasicBlocks()) {
+                for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                    Instruction def = inst;
+                    inst.forEachDefinedRegister(reg -> {
+                        if(initializers.containsKey(reg) && initializers.get(reg) != def
+                                && !(def instanceof Move && ((Move) def).getSrc() == ((VirtualRegister) reg).getSpillSpace())) {
+                            invalid.add((VirtualRegister) reg);
+                        }
+                    });
+                }
+            }
+        }
+        for(Map.Entry<VirtualRegister, Move> entry : initializers.entrySet()) {
+            if(!invalid.contains(entry.getKey())) {
+                constantGlobals.put(entry.getKey().getId(), ((IntImmediate) entry.getValue().getSrc()).getValue());
+            }
+        }
+    }
+
+    private Function function;
+    private boolean isInit;
+    private IntIntMap registerIds;
+    private ArrayList<VirtualRegister> registers;
+    private long[] values;
+    private long[] localValues;
+    private int[] localStamps;
+    private int curStamp;
+    private ArrayList<Integer> localDefinitions;
+    private ArrayList<ArrayList<BasicBlock>> useBlocks;
+    private boolean[] executable;
+    private boolean[] queued;
+    private HashSet<Long> executableEdges;
+    private ArrayDeque<BasicBlock> workList;
+    private boolean rewriting;
+
+    private BasicBlock curBB;
+    private final RegisterVisitor numberVisitor = reg -> getRegisterId((VirtualRegister) reg);
+    private final RegisterVisitor useVisitor = reg -> {
+        ArrayList<BasicBlock> blocks = useBlocks.get(getRegisterId((VirtualRegister) reg));
+        if(blocks.isEmpty() || blocks.get(blocks.size() - 1) != curBB) {
+            blocks.add(curBB);
+        }
+    };
+    private final RegisterVisitor bottomDefiner = reg -> define((VirtualRegister) reg, BOTTOM);
+
+    private int getRegisterId(VirtualRegister vr) {
+        int id = registerIds.get(vr.getId(), -1);
+        if(id < 0) {
+            id = registers.size();
+            registerIds.put(vr.getId(), id);
+            registers.add(vr);
+        }
+        return id;
+    }
+
+    private void process(Function function) {
+        this.function = function;
+        this.isInit = function.getName().equals("global_init");
+        registerIds = new IntIntMap();
+        registers = new ArrayList<>();
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                inst.forEachUsedRegister(numberVisitor);
+                inst.forEachDefinedRegister(numberVisitor);
+                if(inst instanceof Call) {
+                    ((Call) inst).forEachArgumentRegister(numberVisitor);
+                }
+            }
+        }
+        int n = registers.size();
+        values = new long[n];
+        localValues = new long[n];
+        localStamps = new int[n];
+        curStamp = 0;
+        localDefinitions = new ArrayList<>();
+        useBlocks = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            values[i] = BOTTOM;
+            useBlocks.add(new ArrayList<>());
+        }
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            curBB = bb;
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                SSAConstructor.forEachUse(inst, useVisitor);
+                inst.forEachDefinedRegister(reg -> {
+                    if(SSAConstructor.isVariable(reg)) values[getRegisterId((VirtualRegister) reg)] = TOP;
+                });
+            }
+        }
+
+        executable = new boolean[function.getBasicBlockCount()];
+        queued = new boolean[function.getBasicBlockCount()];
+        executableEdges = new HashSet<>();
+        workList = new ArrayDeque<>();
+        rewriting = false;
+        executable[function.getHeadBB().getId()] = true;
+        enqueue(function.getHeadBB());
+        while(!workList.isEmpty()) {
+            BasicBlock bb = workList.poll();
+            queued[bb.getId()] = false;
+            evaluate(bb);
+        }
+
+        rewriting = true;
+        for(BasicBlock bb : new ArrayList<>(function.getReversePostOrder())) {
+            if(executable[bb.getId()]) evaluate(bb);
+        }
+        removeUnreachableBlocks();
+        function.calcReversePostOrder();
+        function.calcReversePrevOrder();
+    }
+
+    private void enqueue(BasicBlock bb) {
+        if(!queued[bb.getId()]) {
+            queued[bb.getId()] = true;
+            workList.add(bb);
+        }
+    }
+
+    private static long edgeKey(BasicBlock from, BasicBlock to) {
+        return ((long) from.getId() << 32) | to.getId();
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if(executableEdges.add(edgeKey(from, to))) {
+            executable[to.getId()] = true;
+            enqueue(to);
+        }
+    }
+
+    private static long meet(long a, long b) {
+        if(a == TOP) return b;
+        if(b == TOP) return a;
+        return a == b ? a : BOTTOM;
+    }
+
+    private static boolean isConstant(long value) {
+        return value != TOP && value != BOTTOM;
+    }
+
+    private long getValue(Operand operand) {
+        if(operand instanceof IntImmediate) {
+            return ((IntImmediate) operand).getValue();
+        } else if(operand instanceof VirtualRegister) {
+            VirtualRegister vr = (VirtualRegister) operand;
+            if(!isInit && constantGlobals.containsKey(vr.getId())) {
+                return constantGlobals.get(vr.getId(), 0);
+            }
+            int id = registerIds.get(vr.getId(), -1);
+            if(id < 0) return BOTTOM;
+            if(localStamps[id] == curStamp) return localValues[id];
+            return SSAConstructor.isVariable(vr) ? values[id] : BOTTOM;
+        }
+        return BOTTOM;
+    }
+
+    private long getPathValue(Operand operand) {
+        if(operand instanceof VirtualRegister && SSAConstructor.isVariable((VirtualRegister) operand)) {
+            return values[registerIds.get(((VirtualRegister) operand).getId(), -1)];
+        }
+        return getValue(operand);
+    }
+
+    private void define(Address dst, long value) {
+        if(dst instanceof VirtualRegister) {
+            int id = registerIds.get(((VirtualRegister) dst).getId(), -1);
+            if(id < 0) return;
+            if(localStamps[id] != curStamp) {
+                localStamps[id] = curStamp;
+                localDefinitions.add(id);
+            }
+            localValues[id] = value;
+        }
+    }
+
+    private void commit() {
+        for(int id : localDefinitions) {
+            if(!SSAConstructor.isVariable(registers.get(id))) continue;
+            long value = meet(values[id], localValues[id]);
+            if(value != values[id]) {
+                values[id] = value;
+                for(BasicBlock bb : useBlocks.get(id)) {
+                    if(executable[bb.getId()]) enqueue(bb);
+                }
+            }
+        }
+    }
+
+    private void forgetLocalRegisters() {
+        for(int id : localDefinitions) {
+            if(!SSAConstructor.isVariable(registers.get(id))) {
+                localValues[id] = BOTTOM;
+            }
+        }
+    }
+
+    private long doBinary(BinaryOperation.BinaryOp op, long lhs, long rhs) {
+        if(lhs == BOTTOM || rhs == BOTTOM) return BOTTOM;
+        if(lhs == TOP || rhs == TOP) return TOP;
+        int l = (int) lhs;
+        int r = (int) rhs;
+        switch (op) {
+            case ADD:
+                return l + r;
+            case SUB:
+                return l - r;
+            case MUL:
+                return l * r;
+            case DIV:
+                return r == 0 ? BOTTOM : l / r;
+            case MOD:
+                return r == 0 ? BOTTOM : l % r;
+            case SAL:
+                return l << r;
+            case SAR:
+                return l >> r;
+            case AND:
+                return l & r;
+            case OR:
+                return l | r;
+            case XOR:
+                return l ^ r;
+            default:
+                return BOTTOM;
+        }
+    }
+
+    private long doUnary(UnaryOperation.UnaryOp op, long value) {
+        if(!isConstant(value)) return value;
+        int v = (int) value;
+        switch (op) {
+            case NEG:
+                return -v;
+            case NOT:
+                return ~v;
+            case INC:
+                return v + 1;
+            case DEC:
+                return v - 1;
+            default:
+                return BOTTOM;
+        }
+    }
+
+    private static boolean doCompare(CJump.CompareOp op, int l, int r) {
+        switch (op) {
+            case EQ:
+                return l == r;
+            case NE:
+                return l != r;
+            case LT:
+                return l < r;
+            case GT:
+                return l > r;
+            case LE:
+                return l <= r;
+            case GE:
+                return l >= r;
+            default:
+                return false;
+        }
+    }
+
+    private long doCompare(CJump.CompareOp op, long lhs, long rhs) {
+        if(lhs == BOTTOM || rhs == BOTTOM) return BOTTOM;
+        if(lhs == TOP || rhs == TOP) return TOP;
+        return doCompare(op, (int) lhs, (int) rhs) ? 1 : 0;
+    }
+
+    private Operand fold(Operand operand) {
+        if(operand instanceof Register) {
+            long value = getValue(operand);
+            if(isConstant(value)) return new IntImmediate((int) value);
+        }
+        return operand;
+    }
+
+    private void replaceWithMove(Instruction inst, Address dst, long value) {
+        if(inst.getPrev() instanceof Move && ((Move) inst.getPrev()).getDst() == dst) {
+            inst.getPrev().remove();
+        }
+        inst.replace(new Move(inst.getBB(), dst, new IntImmediate((int) value)));
+    }
+
+    private void evaluate(BasicBlock bb) {
+        curStamp++;
+        curBB = bb;
+        localDefinitions.clear();
+        Instruction inst = bb.getHead();
+        ArrayList<Move> phiMoves = new ArrayList<>();
+        for(; inst instanceof Phi; inst = inst.getNext()) {
+            evaluatePhi((Phi) inst, phiMoves);
+        }
+        for(Move move : phiMoves) {
+            if(inst == null) {
+                bb.addNextInst(move);
+            } else {
+                inst.prepend(move);
+            }
+        }
+        for(; inst != null; inst = inst.getNext()) {
+            if(inst instanceof Move) {
+                evaluateMove((Move) inst);
+            } else if(inst instanceof BinaryOperation) {
+                evaluateBinary((BinaryOperation) inst);
+            } else if(inst instanceof UnaryOperation) {
+                UnaryOperation unary = (UnaryOperation) inst;
+                long value = doUnary(unary.getOp(), getValue(unary.getDst()));
+                if(rewriting && isConstant(value) && unary.getDst() instanceof Register) {
+                    replaceWithMove(unary, unary.getDst(), value);
+                }
+                define(unary.getDst(), value);
+            } else if(inst instanceof Compare) {
+                Compare compare = (Compare) inst;
+                long value = doCompare(compare.getOp(), getValue(compare.getLhs()), getValue(compare.getRhs()));
+                if(rewriting && isConstant(value)) {
+                    compare.replace(new Move(bb, compare.getDst(), new IntImmediate((int) value)));
+                }
+                define(compare.getDst(), value);
+            } else if(inst instanceof Call) {
+                if(rewriting) {
+                    ListIterator<Operand> iterator = ((Call) inst).getArgs().listIterator();
+                    while(iterator.hasNext()) {
+                        iterator.set(fold(iterator.next()));
+                    }
+                }
+                forgetLocalRegisters();
+                inst.forEachDefinedRegister(bottomDefiner);
+            } else if(inst instanceof Jump) {
+                if(!rewriting) markEdge(bb, ((Jump) inst).getTargetBB());
+            } else if(inst instanceof CJump) {
+                evaluateBranch((CJump) inst);
+                break;
+            } else {
+                inst.forEachDefinedRegister(bottomDefiner);
+            }
+        }
+        if(!rewriting) commit();
+    }
+
+    private void evaluatePhi(Phi phi, ArrayList<Move> phiMoves) {
+        long value = TOP;
+        for(BasicBlock pred : curBB.getPrevBBs()) {
+            if(executableEdges.contains(edgeKey(pred, curBB))) {
+                value = meet(value, getPathValue(phi.getPath(pred)));
+            }
+        }
+        if(rewriting) {
+            if(isConstant(value)) {
+                phi.remove();
+                phiMoves.add(new Move(curBB, phi.getDst(), new IntImmediate((int) value)));
+            } else {
+                for(Map.Entry<BasicBlock, Operand> entry : phi.getPaths().entrySet()) {
+                    long pathValue = getPathValue(entry.getValue());
+                    if(isConstant(pathValue)) {
+                        entry.setValue(new IntImmediate((int) pathValue));
+                    }
+                }
+            }
+        }
+        define(phi.getDst(), value);
+    }
+
+    private void evaluateMove(Move move) {
+        long value = getValue(move.getSrc());
+        if(rewriting && isConstant(value) && move.getSrc() instanceof Register) {
+            move.setSrc(new IntImmediate((int) value));
+        }
+        define(move.getDst(), value);
+    }
+
+    private void evaluateBinary(BinaryOperation binary) {
+        BinaryOperation.BinaryOp op = binary.getOp();
+        boolean implicit = op == BinaryOperation.BinaryOp.MUL || op == BinaryOperation.BinaryOp.DIV || op == BinaryOperation.BinaryOp.MOD;
+        Address dst = implicit ? (op == BinaryOperation.BinaryOp.MOD ? vrdx : vrax) : binary.getDst();
+        long value = doBinary(op, getValue(implicit ? vrax : binary.getDst()), getValue(binary.getSrc()));
+        if(rewriting) {
+            if(isConstant(value) && dst instanceof Register) {
+                if(implicit && op != BinaryOperation.BinaryOp.MUL && binary.getPrev() instanceof Cdq) {
+                    binary.getPrev().remove();
+                }
+                replaceWithMove(binary, dst, value);
+            } else if(op != BinaryOperation.BinaryOp.SAL && op != BinaryOperation.BinaryOp.SAR) {
+                binary.setSrc(fold(binary.getSrc()));
+            }
+        }
+        if(implicit) {
+            define(vrax, op == BinaryOperation.BinaryOp.MOD ? BOTTOM : value);
+            define(vrdx, op == BinaryOperation.BinaryOp.MOD ? value : BOTTOM);
+        } else {
+            define(dst, value);
+        }
+    }
+
+    private void evaluateBranch(CJump cjump) {
+        long value = doCompare(cjump.getOp(), getValue(cjump.getLhs()), getValue(cjump.getRhs()));
+        if(!rewriting) {
+            if(isConstant(value)) {
+                markEdge(curBB, value != 0 ? cjump.getThenBB() : cjump.getElseBB());
+            } else {
+                markEdge(curBB, cjump.getThenBB());
+                markEdge(curBB, cjump.getElseBB());
+            }
+        } else if(isConstant(value)) {
+            replaceWithJump(cjump, value != 0 ? cjump.getThenBB() : cjump.getElseBB());
+        } else {
+            Operand lhs = fold(cjump.getLhs());
+            Operand rhs = fold(cjump.getRhs());
+            if(lhs instanceof IntImmediate) {
+                cjump.setLhs(cjump.getRhs());
+                cjump.setRhs(lhs);
+                cjump.setOp(cjump.getSwappedCompareOp());
+            } else {
+                cjump.setRhs(rhs);
+            }
+        }
+    }
+
+    private static void removePhiPaths(BasicBlock bb, BasicBlock pred) {
+        for(Instruction inst = bb.getHead(); inst instanceof Phi; inst = inst.getNext()) {
+            ((Phi) inst).removePath(pred);
+        }
+    }
+
+    private void replaceWithJump(CJump cjump, BasicBlock target) {
+        BasicBlock bb = cjump.getBB();
+        BasicBlock other = target == cjump.getThenBB() ? cjump.getElseBB() : cjump.getThenBB();
+        bb.getNextBBs().remove(cjump.getThenBB());
+        cjump.getThenBB().getPrevBBs().remove(bb);
+        bb.getNextBBs().remove(cjump.getElseBB());
+        cjump.getElseBB().getPrevBBs().remove(bb);
+        cjump.remove();
+        bb.addNextJumpInst(new Jump(bb, target));
+        if(!other.getPrevBBs().contains(bb)) {
+            removePhiPaths(other, bb);
+        }
+    }
+
+    private static ArrayList<BasicBlock> getJumpTargets(BasicBlock bb) {
+        ArrayList<BasicBlock> targets = new ArrayList<>();
+        Instruction tail = bb.getTail();
+        if(tail instanceof Jump) {
+            targets.add(((Jump) tail).getTargetBB());
+        } else if(tail instanceof CJump) {
+            targets.add(((CJump) tail).getElseBB());
+            targets.add(((CJump) tail).getThenBB());
+        }
+        return targets;
+    }
+
+    private void rebuildEdges(BasicBlock bb) {
+        ArrayList<BasicBlock> targets = getJumpTargets(bb);
+        for(BasicBlock succ : new ArrayList<>(bb.getNextBBs())) {
+            if(targets.remove(succ)) continue;
+            bb.getNextBBs().remove(succ);
+            succ.getPrevBBs().remove(bb);
+            if(!succ.getPrevBBs().contains(bb)) {
+                removePhiPaths(succ, bb);
+            }
+        }
+        for(BasicBlock target : targets) {
+            if(!executable[target.getId()]) continue;
+            bb.getNextBBs().add(target);
+            target.getPrevBBs().add(bb);
+        }
+    }
+
+    private void removeUnreachableBlocks() {
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(executable[bb.getId()]) rebuildEdges(bb);
+        }
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(executable[bb.getId()]) continue;
+            for(BasicBlock succ : bb.getNextBBs()) {
+                succ.getPrevBBs().removeIf(pred -> pred == bb);
+                removePhiPaths(succ, bb);
+            }
+            bb.getNextBBs().clear();
+        }
+        function.getBasicBlocks().removeIf(bb -> !executable[bb.getId()] && bb != function.getTailBB());
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            Instruction inst = bb.getHead();
+            while(inst instanceof Phi && bb.getPrevBBs().size() == 1) {
+                Phi phi = (Phi) inst;
+                inst = inst.getNext();
+                phi.replace(new Move(bb, phi.getDst(), phi.getPath(bb.getPrevBBs().get(0))));
+            }
+        }
+    }
+}
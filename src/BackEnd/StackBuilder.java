@@ -26,10 +26,7 @@ public class StackBuilder {
     }
 
     public void run() {
-        for(Function function : program.getFunctions().values()) {
-            if(function.getType() == Function.FuncType.UserDefined)
-                buildStack(function);
-        }
+        FunctionPassRunner.run(program, function -> new StackBuilder(program).buildStack(function));
     }
 
     private void buildStack(Function function) {
@@ -89,11 +86,19 @@ public class StackBuilder {
             headInst.append(new Push(headBB, pr));
         }
 
-        BasicBlock tailBB = function.getTailBB();
-        Instruction tailInst = tailBB.getTail();
+        addEpilogue(function.getTailBB().getTail(), needToSave);
+        for(BasicBlock bb : function.getBasicBlocks()) {
+            if(bb.getTail() instanceof Call && ((Call) bb.getTail()).isTailCall()) {
+                addEpilogue(bb.getTail(), needToSave);
+            }
+        }
+    }
+
+    private void addEpilogue(Instruction exitInst, HashSet<PhysicalRegister> needToSave) {
+        BasicBlock bb = exitInst.getBB();
         for(PhysicalRegister pr : needToSave) {
-            tailInst.prepend(new Pop(tailBB, pr));
+            exitInst.prepend(new Pop(bb, pr));
         }
-        tailInst.prepend(new Leave(tailBB));
+        exitInst.prepend(new Leave(bb));
     }
 }
@@ -0,0 +1,197 @@
+package BackEnd;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.*;
+import IR.Operand.IntImmediate;
+import IR.Operand.Operand;
+import IR.Operand.Register;
+import IR.Operand.VirtualRegister;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static IR.RegisterSet.vrax;
+
+public class TailCallEliminator {
+    private IRProgram program;
+    private AtomicInteger recursionCount;
+    private AtomicInteger tailCallCount;
+
+    public TailCallEliminator(IRProgram program) {
+        this.program = program;
+        this.recursionCount = new AtomicInteger();
+        this.tailCallCount = new AtomicInteger();
+    }
+
+    public void run() {
+        FunctionPassRunner.run(program, function -> {
+            TailCallEliminator tailCallEliminator = new TailCallEliminator(program);
+            tailCallEliminator.process(function);
+            recursionCount.addAndGet(tailCallEliminator.recursions);
+            tailCallCount.addAndGet(tailCallEliminator.tailCalls);
+        });
+    }
+
+    public int getRecursionCount() {
+        return recursionCount.get();
+    }
+
+    public int getTailCallCount() {
+        return tailCallCount.get();
+    }
+
+    static ArrayList<Call> getTailCalls(Function function) {
+        TailCallEliminator tailCallEliminator = new TailCallEliminator(null);
+        tailCallEliminator.function = function;
+        return tailCallEliminator.getTailCalls();
+    }
+
+    private Function function;
+    private BasicBlock recursionBB;
+    private int recursions;
+    private int tailCalls;
+
+    private void process(Function function) {
+        this.function = function;
+        for(Call call : getTailCalls()) {
+            if(call.getFunc() == function) {
+                eliminateRecursion(call);
+                recursions++;
+            } else {
+                lowerTailCall(call);
+                tailCalls++;
+            }
+        }
+        if(recursions + tailCalls > 0) {
+            function.calcReversePostOrder();
+            function.calcReversePrevOrder();
+        }
+    }
+
+    private ArrayList<Call> getTailCalls() {
+        ArrayList<Call> calls = new ArrayList<>();
+        BasicBlock tailBB = function.getTailBB();
+        if(tailBB == function.getHeadBB()) return calls;
+        for(Instruction inst = tailBB.getHead(); inst != null; inst = inst.getNext()) {
+            if(inst == tailBB.getTail() ? !(inst instanceof Return) : !FunctionInliner.isGlobalMove(inst)) return calls;
+        }
+        for(BasicBlock bb : function.getReversePostOrder()) {
+            for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                if(inst instanceof Call && isTailCall((Call) inst) && canEliminate((Call) inst)) calls.add((Call) inst);
+            }
+        }
+        return calls;
+    }
+
+    private boolean canEliminate(Call call) {
+        if(call.getFunc() != function) return call.getArgs().size() <= 6;
+        return call.getArgs().size() == function.getParameters().size() && getRecursionEntry() != null;
+    }
+
+    private boolean isTailCall(Call call) {
+        Instruction inst = call.getNext();
+        Operand result = vrax;
+        if(inst instanceof Move && ((Move) inst).getSrc() == vrax) {
+            result = ((Move) inst).getDst();
+            if(!(result instanceof Register) || !SSAConstructor.isVariable((Register) result)) return false;
+            inst = inst.getNext();
+            if(inst instanceof Move && ((Move) inst).getDst() == vrax && ((Move) inst).getSrc() == result) {
+                return isReturn(inst.getNext());
+            }
+        }
+        if(inst instanceof CJump) {
+            return isBooleanReturn(call, (CJump) inst, result);
+        }
+        return (result == vrax || !function.hasReturnValue()) && isReturn(inst);
+    }
+
+    private boolean isBooleanReturn(Call call, CJump cjump, Operand result) {
+        if(!function.hasReturnValue() || call.getFunc().getType() != Function.FuncType.UserDefined) return false;
+        if(cjump.getLhs() != result || cjump.getOp() != CJump.CompareOp.NE || !isImmediate(cjump.getRhs(), 0)) return false;
+        return isBooleanExit(cjump.getThenBB(), 1) && isBooleanExit(cjump.getElseBB(), 0);
+    }
+
+    private boolean isBooleanExit(BasicBlock bb, int value) {
+        Instruction inst = bb.getHead();
+        if(!(inst instanceof Move) || ((Move) inst).getDst() != vrax || !isImmediate(((Move) inst).getSrc(), value)) return false;
+        return isReturn(inst.getNext());
+    }
+
+    private static boolean isImmediate(Operand operand, int value) {
+        return operand instanceof IntImmediate && ((IntImmediate) operand).getValue() == value;
+    }
+
+    private boolean isReturn(Instruction inst) {
+        if(!(inst instanceof Jump)) return false;
+        BasicBlock target = ((Jump) inst).getTargetBB();
+        HashSet<BasicBlock> visited = new HashSet<>();
+        while(target != function.getTailBB()) {
+            if(!visited.add(target) || !(target.getHead() instanceof Jump)) return false;
+            target = ((Jump) target.getHead()).getTargetBB();
+        }
+        return true;
+    }
+
+    private void removeExit(Call call) {
+        BasicBlock bb = call.getBB();
+        while(call.getNext() != null) {
+            call.getNext().remove();
+        }
+        for(BasicBlock next : bb.getNextBBs()) {
+            next.getPrevBBs().remove(bb);
+        }
+        bb.getNextBBs().clear();
+    }
+
+    private Instruction getRecursionEntry() {
+        Instruction inst = function.getHeadBB().getHead();
+        for(VirtualRegister parameter : function.getParameters()) {
+            if(!(inst instanceof Move) || ((Move) inst).getDst() != parameter) return null;
+            inst = inst.getNext();
+        }
+        while(FunctionInliner.isGlobalMove(inst)) {
+            inst = inst.getNext();
+        }
+        return inst;
+    }
+
+    private BasicBlock getRecursionBB() {
+        if(recursionBB != null) return recursionBB;
+        BasicBlock headBB = function.getHeadBB();
+        recursionBB = headBB.split(getRecursionEntry(), "recursionBB");
+        headBB.addNextJumpInst(new Jump(headBB, recursionBB));
+        return recursionBB;
+    }
+
+    private void eliminateRecursion(Call call) {
+        LinkedList<VirtualRegister> parameters = function.getParameters();
+        BasicBlock targetBB = getRecursionBB();
+        BasicBlock bb = call.getBB();
+        removeExit(call);
+        ArrayList<VirtualRegister> values = new ArrayList<>();
+        for(Operand arg : call.getArgs()) {
+            VirtualRegister vr = new VirtualRegister(function, "");
+            call.prepend(new Move(bb, vr, arg));
+            values.add(vr);
+        }
+        for(int i = 0; i < parameters.size(); i++) {
+            call.prepend(new Move(bb, parameters.get(i), values.get(i)));
+        }
+        call.remove();
+        bb.addNextJumpInst(new Jump(bb, targetBB));
+    }
+
+    private void lowerTailCall(Call call) {
+        BasicBlock bb = call.getBB();
+        BasicBlock tailBB = function.getTailBB();
+        removeExit(call);
+        for(Instruction inst = tailBB.getHead(); inst != tailBB.getTail(); inst = inst.getNext()) {
+            call.prepend(new Move(bb, ((Move) inst).getDst(), ((Move) inst).getSrc()));
+        }
+        call.setTailCall(true);
+    }
+}
@@ -0,0 +1,87 @@
+package Driver;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BatchCompiler {
+    private String suffix;
+    private int parallelism;
+    private FunctionCache cache;
+    private AtomicInteger compiled;
+    private AtomicInteger failed;
+
+    public BatchCompiler(String suffix, int parallelism, FunctionCache cache) {
+        this.suffix = suffix;
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.compiled = new AtomicInteger(0);
+        this.failed = new AtomicInteger(0);
+    }
+
+    private class CompileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<Path> files;
+        private int from;
+        private int to;
+
+        private CompileTask(List<Path> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                compileFile(files.get(from));
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CompileTask(files, from, mid), new CompileTask(files, mid, to));
+            }
+        }
+    }
+
+    public boolean run(Path directory) throws IOException {
+        List<Path> files;
+        try(Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        if(!files.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new CompileTask(files, 0, files.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        System.err.println("compiled " + compiled.get() + " files, " + failed.get() + " failed");
+        return failed.get() == 0;
+    }
+
+    private Path getOutputPath(Path source) {
+        String name = source.getFileName().toString();
+        return source.resolveSibling(name.substring(0, name.length() - suffix.length()) + ".asm");
+    }
+
+    private void compileFile(Path source) {
+        try(InputStream inputStream = Files.newInputStream(source)) {
+            new Compiler(null, cache).compile(inputStream, getOutputPath(source));
+            compiled.incrementAndGet();
+        } catch (Error | Exception error) {
+            failed.incrementAndGet();
+            System.err.println(source + ": " + error.getMessage());
+        }
+    }
+}
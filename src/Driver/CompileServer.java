@@ -0,0 +1,100 @@
+package Driver;
+
+import Utility.Config;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class CompileServer {
+    private static final String WARM_UP_PROGRAM = "int main() { int i; for(i = 0; i < 10; i++) println(toString(i)); return 0; }";
+
+    private FunctionCache cache;
+
+    public CompileServer(FunctionCache cache) {
+        this.cache = cache;
+    }
+
+    public void warmUp() {
+        try {
+            new Compiler().compile(new ByteArrayInputStream(WARM_UP_PROGRAM.getBytes(StandardCharsets.US_ASCII)), new ByteArrayOutputStream());
+        } catch (Exception | Error ignored) {
+        }
+    }
+
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(input);
+        BufferedOutputStream out = new BufferedOutputStream(output);
+        String header;
+        while((header = readLine(in)) != null) {
+            if(header.isEmpty()) continue;
+            int length;
+            try {
+                length = Integer.parseInt(header.trim());
+            } catch (NumberFormatException e) {
+                respond(out, "ERROR", ("bad request header: " + header).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if(length < 0 || length > Config.MAX_REQUEST_BYTES) {
+                respond(out, "ERROR", ("bad request length: " + length).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] source = readFully(in, length);
+            if(source == null) return;
+            handle(source, out);
+        }
+    }
+
+    public void listen(int port) throws IOException {
+        try(ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while(true) {
+                try(Socket socket = serverSocket.accept()) {
+                    serve(socket.getInputStream(), socket.getOutputStream());
+                } catch (IOException | RuntimeException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(byte[] source, OutputStream out) throws IOException {
+        ByteArrayOutputStream asm = new ByteArrayOutputStream();
+        try {
+            new Compiler(null, cache).compile(new ByteArrayInputStream(source), asm);
+        } catch (Error | RuntimeException error) {
+            String message = error.getMessage() == null ? error.toString() : error.getMessage();
+            respond(out, "ERROR", message.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        respond(out, "OK", asm.toByteArray());
+    }
+
+    private void respond(OutputStream out, String status, byte[] body) throws IOException {
+        out.write((status + " " + body.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while((c = in.read()) != -1) {
+            if(c == '\n') return line.toString();
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while(offset < length) {
+            int count = in.read(buffer, offset, length - offset);
+            if(count == -1) return null;
+            offset += count;
+        }
+        return buffer;
+    }
+}
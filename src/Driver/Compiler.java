@@ -0,0 +1,336 @@
+package Driver;
+
+import AST.Program;
+import BackEnd.*;
+import FrontEnd.*;
+import IR.Function;
+import IR.IRProgram;
+import IR.RegisterSet;
+import Parser.MxstarLexer;
+import Parser.MxstarParser;
+import Utility.Config;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Compiler {
+    private PhaseMetrics metrics;
+    private FunctionCache cache;
+    private HashMap<Function, String> cacheKeys;
+    private ArrayList<FunctionAssembly> cachedAssemblies;
+
+    public Compiler() {
+        this(null, null);
+    }
+
+    public Compiler(PhaseMetrics metrics) {
+        this(metrics, null);
+    }
+
+    public Compiler(PhaseMetrics metrics, FunctionCache cache) {
+        this.metrics = metrics;
+        this.cache = cache;
+        this.cacheKeys = new HashMap<>();
+        this.cachedAssemblies = new ArrayList<>();
+    }
+
+    private void beginPhase() {
+        if(metrics != null) metrics.begin();
+    }
+
+    private void endPhase(String name, IRProgram irProgram) {
+        if(metrics != null) metrics.end(name, irProgram);
+    }
+
+    private void addCounter(String name, long value) {
+        if(metrics != null) metrics.addCounter(name, value);
+    }
+
+    private ParseTree parse(CommonTokenStream tokens) {
+        MxstarParser parser = new MxstarParser(tokens);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.program();
+        } catch (ParseCancellationException e) {
+            tokens.seek(0);
+            parser.reset();
+            parser.addErrorListener(new PaserErrorListener());
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.program();
+        }
+    }
+
+    public void compile(InputStream sourceCode, OutputStream output) throws IOException {
+        IRProgram irProgram = buildProgram(sourceCode);
+        emit(irProgram, Channels.newChannel(output));
+        output.flush();
+    }
+
+    public void compile(InputStream sourceCode, Path outputFile) throws IOException {
+        IRProgram irProgram = buildProgram(sourceCode);
+        try(FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            emit(irProgram, channel);
+        }
+    }
+
+    private void emit(IRProgram irProgram, WritableByteChannel channel) throws IOException {
+        beginPhase();
+        CodeGenerator codeGenerator = new CodeGenerator(channel);
+        if(cache != null) {
+            for(FunctionAssembly assembly : cachedAssemblies) {
+                codeGenerator.addCachedAssembly(assembly);
+            }
+            codeGenerator.keepGeneratedAssemblies();
+        }
+        codeGenerator.visit(irProgram);
+        codeGenerator.flush();
+        endPhase("codeGeneration", null);
+
+        if(cache != null) {
+            beginPhase();
+            for(Map.Entry<Function, FunctionAssembly> entry : codeGenerator.getGeneratedAssemblies().entrySet()) {
+                String key = cacheKeys.get(entry.getKey());
+                if(key != null) {
+                    cache.put(key, entry.getValue());
+                }
+            }
+            endPhase("cacheStore", null);
+        }
+    }
+
+    private void lookUpCache(Program program, IRProgram irProgram) {
+        cacheKeys = cache.computeKeys(program, irProgram);
+        cachedAssemblies.clear();
+        ArrayList<Function> functions = new ArrayList<>(cacheKeys.keySet());
+        functions.sort(Comparator.comparing(Function::getName));
+        for(Function function : functions) {
+            FunctionAssembly assembly = cache.get(cacheKeys.get(function));
+            if(assembly != null) {
+                cachedAssemblies.add(assembly);
+                irProgram.getFunctions().remove(function.getName());
+            }
+        }
+    }
+
+    private IRProgram buildProgram(InputStream sourceCode) throws IOException {
+        RegisterSet.init();
+
+        beginPhase();
+        MxstarLexer lexer = new MxstarLexer(CharStreams.fromStream(sourceCode));
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        ParseTree tree = parse(tokens);
+        endPhase("parse", null);
+
+        beginPhase();
+        ASTBuilder astBuilder = new ASTBuilder();
+        astBuilder.visit(tree);
+        Program program = astBuilder.getProgram();
+        endPhase("astBuild", null);
+
+        if(Config.printAST) {
+            ASTPrinter astPrinter = new ASTPrinter();
+            astPrinter.visit(program);
+            astPrinter.print();
+        }
+
+        beginPhase();
+        ScopeBuilder scopeBuilder = new ScopeBuilder();
+        scopeBuilder.visit(program);
+        endPhase("scopeBuild", null);
+
+        beginPhase();
+        SemanticChecker semanticChecker = new SemanticChecker(scopeBuilder.getGlobalScope());
+        semanticChecker.visit(program);
+        endPhase("semanticCheck", null);
+
+        if(Config.useUselessLoopElimination) {
+            beginPhase();
+            UselessLoopEliminator uselessLoopEliminator = new UselessLoopEliminator(program);
+            uselessLoopEliminator.run();
+            endPhase("uselessLoopElimination", null);
+        }
+
+        if(Config.useLoopConditionOptimization) {
+            beginPhase();
+            LoopConditionOptimizer loopConditionOptimizer = new LoopConditionOptimizer(program);
+            loopConditionOptimizer.run();
+            endPhase("loopConditionOptimization", null);
+        }
+
+        beginPhase();
+        IRBuilder irBuilder = new IRBuilder(scopeBuilder.getGlobalScope());
+        irBuilder.visit(program);
+        IRProgram irProgram = irBuilder.getProgram();
+        endPhase("irBuild", irProgram);
+
+        if(Config.useMemorization) {
+            beginPhase();
+            Memorization memorization = new Memorization(irProgram);
+            memorization.run();
+            addCounter("memorizedFunctions", memorization.getMemorizedCount());
+            endPhase("memorization", irProgram);
+        }
+
+        if(cache != null) {
+            beginPhase();
+            lookUpCache(program, irProgram);
+            endPhase("cacheLookup", irProgram);
+        }
+
+        if(Config.useInlining) {
+            beginPhase();
+            FunctionInliner functionInliner = new FunctionInliner(irProgram);
+            functionInliner.run();
+            endPhase("inlining", irProgram);
+            addCounter("inlinedCalls", functionInliner.getInlinedCount());
+        }
+
+        if(Config.useTailCallElimination) {
+            beginPhase();
+            TailCallEliminator tailCallEliminator = new TailCallEliminator(irProgram);
+            tailCallEliminator.run();
+            endPhase("tailCallElimination", irProgram);
+            addCounter("eliminatedTailRecursions", tailCallEliminator.getRecursionCount());
+            addCounter("tailCalls", tailCallEliminator.getTailCallCount());
+        }
+
+        if(Config.useBasicBlockOptimization) {
+            beginPhase();
+            BasicBlockOptimizer basicBlockOptimizer = new BasicBlockOptimizer(irProgram);
+            basicBlockOptimizer.run();
+            endPhase("basicBlockOptimization", irProgram);
+        }
+
+        if(Config.useSSA) {
+            beginPhase();
+            SSAConstructor ssaConstructor = new SSAConstructor(irProgram);
+            ssaConstructor.run();
+            endPhase("ssaConstruction", irProgram);
+
+            if(Config.useSparseConditionalConstantPropagation) {
+                beginPhase();
+                SparseConditionalConstantPropagation sparseConditionalConstantPropagation = new SparseConditionalConstantPropagation(irProgram, cache == null);
+                sparseConditionalConstantPropagation.run();
+                endPhase("sparseConditionalConstantPropagation", irProgram);
+            }
+
+            if(Config.useGlobalValueNumbering) {
+                beginPhase();
+                GlobalValueNumbering globalValueNumbering = new GlobalValueNumbering(irProgram);
+                globalValueNumbering.run();
+                endPhase("globalValueNumbering", irProgram);
+                addCounter("eliminatedInstructions", globalValueNumbering.getEliminatedCount());
+            }
+
+            if(Config.useLoopInvariantCodeMotion) {
+                beginPhase();
+                LoopInvariantCodeMotion loopInvariantCodeMotion = new LoopInvariantCodeMotion(irProgram);
+                loopInvariantCodeMotion.run();
+                endPhase("loopInvariantCodeMotion", irProgram);
+                addCounter("hoistedInstructions", loopInvariantCodeMotion.getHoistedCount());
+            }
+
+            if(Config.useStrengthReduction) {
+                beginPhase();
+                InductionVariableStrengthReduction strengthReduction = new InductionVariableStrengthReduction(irProgram);
+                strengthReduction.run();
+                endPhase("strengthReduction", irProgram);
+                addCounter("strengthReducedAccesses", strengthReduction.getReducedCount());
+                addCounter("eliminatedInductionVariables", strengthReduction.getEliminatedCount());
+            }
+
+            beginPhase();
+            SSADestructor ssaDestructor = new SSADestructor(irProgram);
+            ssaDestructor.run();
+            endPhase("ssaDestruction", irProgram);
+        }
+
+        if(Config.useDeadCodeElimination) {
+            beginPhase();
+            DeadCodeEliminator deadCodeEliminator = new DeadCodeEliminator(irProgram);
+            deadCodeEliminator.run();
+            endPhase("deadCodeElimination", irProgram);
+        }
+
+        beginPhase();
+        IRCorrector irCorrector = new IRCorrector();
+        irCorrector.visit(irProgram);
+        endPhase("irCorrection", irProgram);
+
+        if(Config.printIR) {
+            IRPrinter irPrinter = new IRPrinter();
+            irPrinter.visit(irProgram);
+            irPrinter.print();
+        }
+
+        beginPhase();
+        switch(Config.useAllocator) {
+            case 1:
+                SimpleAllocator simpleAllocator = new SimpleAllocator(irProgram);
+                simpleAllocator.allocateRegisters();
+                break;
+            case 2:
+                ChordalGraphAllocator chordalGraphAllocator = new ChordalGraphAllocator(irProgram);
+                chordalGraphAllocator.run();
+                break;
+            case 3:
+                SimpleGraphAllocator simpleGraphAllocator = new SimpleGraphAllocator(irProgram);
+                simpleGraphAllocator.run();
+                break;
+            case 4:
+                GraphAllocator graphAllocator = new GraphAllocator(irProgram);
+                graphAllocator.run();
+                break;
+            case 5:
+                LinearScanAllocator linearScanAllocator = new LinearScanAllocator(irProgram);
+                linearScanAllocator.run();
+                break;
+        }
+        endPhase("registerAllocation", irProgram);
+
+        beginPhase();
+        StackBuilder stackBuilder = new StackBuilder(irProgram);
+        stackBuilder.run();
+        endPhase("stackBuild", irProgram);
+
+        if(Config.usePeepholeOptimization) {
+            beginPhase();
+            PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(irProgram);
+            peepholeOptimizer.run();
+            endPhase("peepholeOptimization", irProgram);
+            for(Map.Entry<String, Integer> entry : peepholeOptimizer.getFireCounts().entrySet()) {
+                addCounter(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if(Config.useBasicBlockLayout) {
+            beginPhase();
+            BasicBlockLayout basicBlockLayout = new BasicBlockLayout(irProgram);
+            basicBlockLayout.run();
+            endPhase("basicBlockLayout", irProgram);
+            addCounter("fallThroughs", basicBlockLayout.getFallThroughCount());
+        }
+
+        return irProgram;
+    }
+}
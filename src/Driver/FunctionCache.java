@@ -0,0 +1,261 @@
+package Driver;
+
+import AST.ClassDeclaration;
+import AST.FunctionDeclaration;
+import AST.Program;
+import AST.VariableDeclaration;
+import BackEnd.FunctionAssembly;
+import FrontEnd.ASTHasher;
+import IR.Function;
+import IR.IRProgram;
+import IR.Operand.Memory;
+import IR.Operand.StaticVariable;
+import Scope.VariableEntity;
+import Utility.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class FunctionCache {
+    private static final String CACHE_VERSION = "1";
+    private static String compilerFingerprint = null;
+
+    private Path directory;
+
+    public FunctionCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static synchronized String getCompilerFingerprint() {
+        if(compilerFingerprint == null) {
+            long size = 0;
+            long lastModified = 0;
+            try {
+                CodeSource codeSource = FunctionCache.class.getProtectionDomain().getCodeSource();
+                Path location = Paths.get(codeSource.getLocation().toURI());
+                if(Files.isDirectory(location)) {
+                    try(Stream<Path> files = Files.walk(location)) {
+                        Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator();
+                        while(iterator.hasNext()) {
+                            Path file = iterator.next();
+                            size += Files.size(file);
+                            lastModified = Long.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+                        }
+                    }
+                } else {
+                    size = Files.size(location);
+                    lastModified = Files.getLastModifiedTime(location).toMillis();
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                size = -1;
+                lastModified = System.nanoTime();
+            }
+            compilerFingerprint = size + ":" + lastModified;
+        }
+        return compilerFingerprint;
+    }
+
+    private static String getConfigFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        Field[] fields = Config.class.getFields();
+        Arrays.sort(fields, Comparator.comparing(Field::getName));
+        for(Field field : fields) {
+            try {
+                sb.append(field.getName()).append('=').append(field.get(null)).append(';');
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String getVariableName(VariableEntity var) {
+        if(var.getVirtualRegister() != null) {
+            Memory spillSpace = var.getVirtualRegister().getSpillSpace();
+            if(spillSpace != null && spillSpace.getOffset() instanceof StaticVariable) {
+                return ((StaticVariable) spillSpace.getOffset()).getName();
+            }
+        }
+        return var.getName();
+    }
+
+    private static void updateVariables(ASTHasher hasher, Collection<VariableEntity> vars) {
+        ArrayList<String> names = new ArrayList<>();
+        for(VariableEntity var : vars) {
+            names.add(String.valueOf(getVariableName(var)));
+        }
+        Collections.sort(names);
+        hasher.update(names.size());
+        for(String name : names) {
+            hasher.update(name);
+        }
+    }
+
+    private static void updateSummary(ASTHasher hasher, Function function) {
+        hasher.update(function.getName());
+        hasher.update(function.getType().name());
+        hasher.update(function.hasReturnValue());
+        hasher.update(function.hasOutput());
+        hasher.update(function.canBeMemorized());
+        updateVariables(hasher, function.getUsedRecursiveVariables());
+    }
+
+    private static byte[] getContextHash(Program program) {
+        MessageDigest digest = newDigest();
+        ASTHasher hasher = new ASTHasher(digest);
+        hasher.update(CACHE_VERSION);
+        hasher.update(getCompilerFingerprint());
+        hasher.update(getConfigFingerprint());
+        hasher.update(program.getVariables().size());
+        for(VariableDeclaration var : program.getVariables()) {
+            hasher.update(var.getName());
+            hasher.update(var.getType().getType());
+        }
+        hasher.update(program.getClasses().size());
+        for(ClassDeclaration classDeclaration : program.getClasses()) {
+            hasher.update(classDeclaration.getName());
+            hasher.update(classDeclaration.getConstructor() != null);
+            if(classDeclaration.getFields() != null) {
+                for(VariableDeclaration field : classDeclaration.getFields()) {
+                    hasher.visit(field);
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    public HashMap<Function, String> computeKeys(Program program, IRProgram irProgram) {
+        ArrayList<FunctionDeclaration> declarations = new ArrayList<>(program.getFunctions());
+        for(ClassDeclaration classDeclaration : program.getClasses()) {
+            if(classDeclaration.getConstructor() != null) {
+                declarations.add(classDeclaration.getConstructor());
+            }
+            if(classDeclaration.getMethods() != null) {
+                declarations.addAll(classDeclaration.getMethods());
+            }
+        }
+
+        byte[] contextHash = getContextHash(program);
+        HashMap<Function, byte[]> declarationHashes = new HashMap<>();
+        for(FunctionDeclaration declaration : declarations) {
+            Function function = irProgram.getFunction(declaration.getFunctionEntity().getName());
+            if(function == null || function.getType() != Function.FuncType.UserDefined) continue;
+            MessageDigest digest = newDigest();
+            new ASTHasher(digest).visit(declaration);
+            declarationHashes.put(function, digest.digest());
+        }
+        HashMap<Function, String> keys = new HashMap<>();
+        for(FunctionDeclaration declaration : declarations) {
+            Function function = irProgram.getFunction(declaration.getFunctionEntity().getName());
+            if(function == null || function.getType() != Function.FuncType.UserDefined) continue;
+            MessageDigest digest = newDigest();
+            ASTHasher hasher = new ASTHasher(digest);
+            digest.update(contextHash);
+            hasher.visit(declaration);
+            updateSummary(hasher, function);
+            updateVariables(hasher, function.getUsedGlobalVariables());
+            ArrayList<Function> callees = new ArrayList<>(function.getCallees());
+            callees.sort(Comparator.comparing(Function::getName));
+            hasher.update(callees.size());
+            for(Function callee : callees) {
+                updateSummary(hasher, callee);
+            }
+            if(Config.useInlining) {
+                ArrayList<Function> reachable = getReachableFunctions(function);
+                hasher.update(reachable.size());
+                for(Function callee : reachable) {
+                    hasher.update(callee.getName());
+                    digest.update(declarationHashes.getOrDefault(callee, new byte[0]));
+                }
+            }
+            keys.put(function, toHex(digest.digest()));
+        }
+        return keys;
+    }
+
+    private static ArrayList<Function> getReachableFunctions(Function function) {
+        ArrayList<Function> reachable = new ArrayList<>();
+        for(Function callee : function.getReachableFunctions()) {
+            if(callee != function && callee.getType() == Function.FuncType.UserDefined) reachable.add(callee);
+        }
+        reachable.sort(Comparator.comparing(Function::getName));
+        return reachable;
+    }
+
+    private Path getPath(String key) {
+        return directory.resolve(key + ".asm");
+    }
+
+    public FunctionAssembly get(String key) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(getPath(key));
+        } catch (IOException e) {
+            return null;
+        }
+        int newLine = 0;
+        while(newLine < bytes.length && bytes[newLine] != '\n') newLine++;
+        if(newLine == bytes.length) return null;
+        int textLength;
+        try {
+            textLength = Integer.parseInt(new String(bytes, 0, newLine, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        int textBegin = newLine + 1;
+        if(textLength < 0 || textBegin + textLength > bytes.length) return null;
+        byte[] text = Arrays.copyOfRange(bytes, textBegin, textBegin + textLength);
+        byte[] data = Arrays.copyOfRange(bytes, textBegin + textLength, bytes.length);
+        return new FunctionAssembly(text, data);
+    }
+
+    public void put(String key, FunctionAssembly assembly) {
+        Path temporary = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write((assembly.getText().length + "\n").getBytes(StandardCharsets.US_ASCII));
+            bytes.write(assembly.getText());
+            bytes.write(assembly.getData());
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, getPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if(temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package Driver;
+
+import IR.IRProgram;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+public class HeapFootprint {
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int LIST_NODE = 24;
+    private static final int HASH_NODE = 32;
+
+    private static class Layout {
+        private long shallowSize;
+        private ArrayList<Field> fields;
+    }
+
+    public static class Entry {
+        private String type;
+        private long count;
+        private long bytes;
+
+        public String getType() {
+            return type;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    private static final Map<Class<?>, Layout> layouts = Collections.synchronizedMap(new HashMap<>());
+
+    private TreeMap<String, Entry> entries;
+    private IdentityHashMap<Object, Boolean> visited;
+    private ArrayDeque<Object> workList;
+
+    private HeapFootprint() {
+        entries = new TreeMap<>();
+        visited = new IdentityHashMap<>();
+        workList = new ArrayDeque<>();
+    }
+
+    public static Collection<Entry> measure(IRProgram program) {
+        HeapFootprint footprint = new HeapFootprint();
+        footprint.push(program);
+        while(!footprint.workList.isEmpty()) {
+            footprint.visit(footprint.workList.pop());
+        }
+        return footprint.entries.values();
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if(type == long.class || type == double.class) return 8;
+        if(type == int.class || type == float.class) return 4;
+        if(type == short.class || type == char.class) return 2;
+        if(type == byte.class || type == boolean.class) return 1;
+        return REFERENCE;
+    }
+
+    private static Layout getLayout(Class<?> type) {
+        Layout layout = layouts.get(type);
+        if(layout != null) return layout;
+        layout = new Layout();
+        layout.fields = new ArrayList<>();
+        long size = OBJECT_HEADER;
+        for(Class<?> c = type; c != null && c.getName().startsWith("IR."); c = c.getSuperclass()) {
+            for(Field field : c.getDeclaredFields()) {
+                if(Modifier.isStatic(field.getModifiers())) continue;
+                size += primitiveSize(field.getType());
+                if(!field.getType().isPrimitive()) {
+                    field.setAccessible(true);
+                    layout.fields.add(field);
+                }
+            }
+        }
+        layout.shallowSize = align(size);
+        layouts.put(type, layout);
+        return layout;
+    }
+
+    private static boolean isIRNode(Object object) {
+        return object != null && !(object instanceof Enum) && object.getClass().getName().startsWith("IR.");
+    }
+
+    private static int hashTableSize(int size) {
+        if(size == 0) return 0;
+        int capacity = 16;
+        while(capacity * 3 / 4 < size) capacity <<= 1;
+        return capacity;
+    }
+
+    private long ownedSize(Object object) {
+        if(object instanceof LinkedList) {
+            return align(OBJECT_HEADER + 3 * REFERENCE + 4) + (long) LIST_NODE * ((LinkedList<?>) object).size();
+        } else if(object instanceof ArrayList) {
+            int size = ((ArrayList<?>) object).size();
+            return align(OBJECT_HEADER + REFERENCE + 8) + (size == 0 ? 0 : align(ARRAY_HEADER + (long) REFERENCE * Integer.max(size, 2)));
+        } else if(object instanceof HashSet) {
+            int size = ((HashSet<?>) object).size();
+            return align(OBJECT_HEADER + REFERENCE) + align(OBJECT_HEADER + 6 * REFERENCE) + align(ARRAY_HEADER + (long) REFERENCE * hashTableSize(size)) + (long) HASH_NODE * size;
+        } else if(object instanceof HashMap) {
+            int size = ((HashMap<?, ?>) object).size();
+            return align(OBJECT_HEADER + 6 * REFERENCE) + align(ARRAY_HEADER + (long) REFERENCE * hashTableSize(size)) + (long) HASH_NODE * size;
+        } else if(object.getClass().isArray()) {
+            int length = java.lang.reflect.Array.getLength(object);
+            return align(ARRAY_HEADER + (long) primitiveSize(object.getClass().getComponentType()) * length);
+        }
+        return 0;
+    }
+
+    private void push(Object object) {
+        if(object == null || visited.containsKey(object)) return;
+        visited.put(object, Boolean.TRUE);
+        workList.push(object);
+    }
+
+    private void pushElements(Object object) {
+        if(object instanceof Collection) {
+            for(Object element : (Collection<?>) object) {
+                if(isIRNode(element)) push(element);
+            }
+        } else if(object instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                if(isIRNode(entry.getKey())) push(entry.getKey());
+                if(isIRNode(entry.getValue())) push(entry.getValue());
+            }
+        } else if(object instanceof Object[]) {
+            for(Object element : (Object[]) object) {
+                if(isIRNode(element)) push(element);
+            }
+        }
+    }
+
+    private void visit(Object object) {
+        Layout layout = getLayout(object.getClass());
+        long bytes = layout.shallowSize;
+        for(Field field : layout.fields) {
+            Object value;
+            try {
+                value = field.get(object);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            if(value == null) continue;
+            if(isIRNode(value)) {
+                push(value);
+            } else if(value instanceof Collection || value instanceof Map || value.getClass().isArray()) {
+                bytes += ownedSize(value);
+                pushElements(value);
+            }
+        }
+        Entry entry = entries.get(object.getClass().getSimpleName());
+        if(entry == null) {
+            entry = new Entry();
+            entry.type = object.getClass().getSimpleName();
+            entries.put(entry.type, entry);
+        }
+        entry.count++;
+        entry.bytes += bytes;
+    }
+}
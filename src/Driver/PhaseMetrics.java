@@ -0,0 +1,173 @@
+package Driver;
+
+import IR.BasicBlock;
+import IR.Function;
+import IR.IRProgram;
+import IR.Instruction.Call;
+import IR.Instruction.Instruction;
+import IR.Operand.Register;
+import IR.Operand.StackSlot;
+import IR.Operand.VirtualRegister;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class PhaseMetrics {
+    private class Phase {
+        private String name;
+        private long nanos;
+        private long allocatedBytes;
+        private boolean hasIR;
+        private int functions;
+        private int basicBlocks;
+        private int instructions;
+        private int virtualRegisters;
+        private int spillSlots;
+        private long heapBytes;
+        private ArrayList<HeapFootprint.Entry> heap;
+        private LinkedHashMap<String, Long> counters = new LinkedHashMap<>();
+    }
+
+    private ArrayList<Phase> phases;
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private long startNanos;
+    private long startAllocatedBytes;
+
+    public PhaseMetrics() {
+        phases = new ArrayList<>();
+        threadMXBean = null;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            threadMXBean = (com.sun.management.ThreadMXBean) bean;
+            if(!threadMXBean.isThreadAllocatedMemorySupported()) {
+                threadMXBean = null;
+            } else if(!threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                threadMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+    }
+
+    private long getAllocatedBytes() {
+        if(threadMXBean == null) return -1;
+        long total = 0;
+        for(long bytes : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if(bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    public void begin() {
+        startAllocatedBytes = getAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    public void end(String name, IRProgram program) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocatedBytes = getAllocatedBytes();
+        Phase phase = new Phase();
+        phase.name = name;
+        phase.nanos = nanos;
+        phase.allocatedBytes = threadMXBean == null ? -1 : allocatedBytes - startAllocatedBytes;
+        if(program != null) {
+            measure(phase, program);
+        }
+        phases.add(phase);
+    }
+
+    public void addCounter(String name, long value) {
+        if(!phases.isEmpty()) {
+            phases.get(phases.size() - 1).counters.merge(name, value, Long::sum);
+        }
+    }
+
+    public long getNanos(String name) {
+        long nanos = -1;
+        for(Phase phase : phases) {
+            if(phase.name.equals(name)) nanos = Math.max(nanos, 0) + phase.nanos;
+        }
+        return nanos;
+    }
+
+    private void measure(Phase phase, IRProgram program) {
+        phase.hasIR = true;
+        HashSet<VirtualRegister> virtualRegisters = new HashSet<>();
+        HashSet<StackSlot> spillSlots = new HashSet<>();
+        for(Function function : program.getFunctions().values()) {
+            if(function.getType() != Function.FuncType.UserDefined) continue;
+            phase.functions++;
+            for(BasicBlock bb : function.getBasicBlocks()) {
+                phase.basicBlocks++;
+                for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
+                    phase.instructions++;
+                    addVirtualRegisters(virtualRegisters, inst instanceof Call ? ((Call) inst).getAllUsedRegister() : inst.getUsedRegisters());
+                    addVirtualRegisters(virtualRegisters, inst.getDefinedRegisters());
+                    for(StackSlot ss : inst.getStackSlots()) {
+                        if(ss.getName() == null) spillSlots.add(ss);
+                    }
+                }
+            }
+        }
+        phase.virtualRegisters = virtualRegisters.size();
+        phase.spillSlots = spillSlots.size();
+        phase.heap = new ArrayList<>(HeapFootprint.measure(program));
+        for(HeapFootprint.Entry entry : phase.heap) {
+            phase.heapBytes += entry.getBytes();
+        }
+    }
+
+    private void addVirtualRegisters(HashSet<VirtualRegister> virtualRegisters, Iterable<Register> registers) {
+        for(Register reg : registers) {
+            if(reg instanceof VirtualRegister && ((VirtualRegister) reg).getAllocatedPhysicalRegister() == null) {
+                virtualRegisters.add((VirtualRegister) reg);
+            }
+        }
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        long totalNanos = 0;
+        json.append("{\n  \"phases\": [");
+        for(int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            totalNanos += phase.nanos;
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": \"").append(phase.name).append('"');
+            json.append(", \"timeMs\": ").append(String.format(Locale.ROOT, "%.3f", phase.nanos / 1e6));
+            json.append(", \"allocatedBytes\": ").append(phase.allocatedBytes);
+            if(phase.hasIR) {
+                json.append(", \"functions\": ").append(phase.functions);
+                json.append(", \"basicBlocks\": ").append(phase.basicBlocks);
+                json.append(", \"instructions\": ").append(phase.instructions);
+                json.append(", \"virtualRegisters\": ").append(phase.virtualRegisters);
+                json.append(", \"spillSlots\": ").append(phase.spillSlots);
+                json.append(", \"heapBytes\": ").append(phase.heapBytes);
+                json.append(", \"heap\": [");
+                for(int j = 0; j < phase.heap.size(); j++) {
+                    HeapFootprint.Entry entry = phase.heap.get(j);
+                    json.append(j == 0 ? "" : ", ");
+                    json.append("{\"type\": \"").append(entry.getType()).append('"');
+                    json.append(", \"count\": ").append(entry.getCount());
+                    json.append(", \"bytes\": ").append(entry.getBytes()).append('}');
+                }
+                json.append(']');
+            }
+            if(!phase.counters.isEmpty()) {
+                json.append(", \"counters\": {");
+                boolean first = true;
+                for(Map.Entry<String, Long> entry : phase.counters.entrySet()) {
+                    json.append(first ? "" : ", ");
+                    json.append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+                    first = false;
+                }
+                json.append('}');
+            }
+            json.append('}');
+        }
+        json.append("\n  ],\n  \"totalTimeMs\": ").append(String.format(Locale.ROOT, "%.3f", totalNanos / 1e6)).append("\n}\n");
+        return json.toString();
+    }
+}
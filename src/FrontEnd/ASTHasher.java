@@ -0,0 +1,289 @@
+package FrontEnd;
+
+import AST.*;
+import Type.ArrayType;
+import Type.Type;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+public class ASTHasher implements ASTVistor {
+    private MessageDigest digest;
+
+    public ASTHasher(MessageDigest digest) {
+        this.digest = digest;
+    }
+
+    public void update(String str) {
+        if(str == null) {
+            update(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        update(bytes.length);
+        digest.update(bytes);
+    }
+
+    public void update(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    public void update(boolean value) {
+        digest.update((byte) (value ? 1 : 0));
+    }
+
+    public void update(Type type) {
+        if(type == null) {
+            update("<none>");
+            return;
+        }
+        update(type.getType().name());
+        update(type.getTypeName());
+        if(type instanceof ArrayType) {
+            update(((ArrayType) type).getBaseType());
+        }
+    }
+
+    private void update(Node node) {
+        if(node == null) {
+            update("<null>");
+        } else {
+            node.accept(this);
+        }
+    }
+
+    private void update(List<? extends Node> nodes) {
+        if(nodes == null) {
+            update(-1);
+            return;
+        }
+        update(nodes.size());
+        for(Node node : nodes) {
+            update(node);
+        }
+    }
+
+    private void update(Expression expr, String kind) {
+        update(kind);
+        update(expr.getType());
+    }
+
+    @Override
+    public void visit(Program node) {
+        update("Program");
+        for(VariableDeclaration variableDeclaration : node.getVariables()) {
+            visit(variableDeclaration);
+        }
+        for(FunctionDeclaration functionDeclaration : node.getFunctions()) {
+            visit(functionDeclaration);
+        }
+        for(ClassDeclaration classDeclaration : node.getClasses()) {
+            visit(classDeclaration);
+        }
+    }
+
+    @Override
+    public void visit(FunctionDeclaration node) {
+        update("FunctionDeclaration");
+        update(node.getName());
+        update(node.getFunctionEntity() == null ? null : node.getFunctionEntity().getName());
+        update(node.getReturnType());
+        update(node.getParameters());
+        update(node.getBody());
+    }
+
+    @Override
+    public void visit(ClassDeclaration node) {
+        update("ClassDeclaration");
+        update(node.getName());
+        update(node.getConstructor());
+        update(node.getFields());
+        update(node.getMethods());
+    }
+
+    @Override
+    public void visit(VariableDeclaration node) {
+        update("VariableDeclaration");
+        update(node.getName());
+        update(node.getType());
+        update(node.getInit());
+    }
+
+    @Override
+    public void visit(TypeNode node) {
+        update("TypeNode");
+        update(node.getType());
+    }
+
+    @Override
+    public void visit(ArrayTypeNode node) {
+        update("ArrayTypeNode");
+        update(node.getDimension());
+        update(node.getBaseType());
+    }
+
+    @Override
+    public void visit(IfStatement node) {
+        update("IfStatement");
+        update(node.getCondition());
+        update(node.getThenStatement());
+        update(node.getElseStatement());
+    }
+
+    @Override
+    public void visit(WhileStatement node) {
+        update("WhileStatement");
+        update(node.getCondition());
+        update(node.getBody());
+    }
+
+    @Override
+    public void visit(ForStatement node) {
+        update("ForStatement");
+        update(node.getInit());
+        update(node.getCondition());
+        update(node.getUpdate());
+        update(node.getBody());
+    }
+
+    @Override
+    public void visit(BreakStatement node) {
+        update("BreakStatement");
+    }
+
+    @Override
+    public void visit(ContinueStatement node) {
+        update("ContinueStatement");
+    }
+
+    @Override
+    public void visit(ReturnStatement node) {
+        update("ReturnStatement");
+        update(node.getRet());
+    }
+
+    @Override
+    public void visit(ExprStatement node) {
+        update("ExprStatement");
+        update(node.getExpr());
+    }
+
+    @Override
+    public void visit(VarDeclStatement node) {
+        update("VarDeclStatement");
+        update(node.getDeclaration());
+    }
+
+    @Override
+    public void visit(BlockStatement node) {
+        update("BlockStatement");
+        update(node.getStatements());
+    }
+
+    @Override
+    public void visit(EmptyStatement node) {
+        update("EmptyStatement");
+    }
+
+    @Override
+    public void visit(ThisExpression node) {
+        update(node, "ThisExpression");
+    }
+
+    @Override
+    public void visit(NullLiteral node) {
+        update(node, "NullLiteral");
+    }
+
+    @Override
+    public void visit(BoolLiteral node) {
+        update(node, "BoolLiteral");
+        update(node.getValue());
+    }
+
+    @Override
+    public void visit(IntLiteral node) {
+        update(node, "IntLiteral");
+        update(node.getValue());
+    }
+
+    @Override
+    public void visit(StringLiteral node) {
+        update(node, "StringLiteral");
+        update(node.getValue());
+    }
+
+    @Override
+    public void visit(Identifier node) {
+        update(node, "Identifier");
+        update(node.getName());
+        if(node.getVariableEntity() != null) {
+            update(node.getVariableEntity().isGlobal());
+            update(node.getVariableEntity().isInClass());
+        }
+    }
+
+    @Override
+    public void visit(MemberExpression node) {
+        update(node, "MemberExpression");
+        update(node.getExpr());
+        update(node.getMember());
+        update(node.getFuncCall());
+    }
+
+    @Override
+    public void visit(ArrayExpression node) {
+        update(node, "ArrayExpression");
+        update(node.getArr());
+        update(node.getIdx());
+    }
+
+    @Override
+    public void visit(FuncCallExpression node) {
+        update(node, "FuncCallExpression");
+        update(node.getName().getName());
+        update(node.getFunctionEntity() == null ? null : node.getFunctionEntity().getName());
+        update(node.getArguments());
+    }
+
+    @Override
+    public void visit(NewExpression node) {
+        update(node, "NewExpression");
+        update(node.getTypeNode());
+        update(node.getNumDimension());
+        update(node.getDimensions());
+    }
+
+    @Override
+    public void visit(SuffixExpression node) {
+        update(node, "SuffixExpression");
+        update(node.getOp());
+        update(node.getExpr());
+    }
+
+    @Override
+    public void visit(PrefixExpression node) {
+        update(node, "PrefixExpression");
+        update(node.getOp());
+        update(node.getExpr());
+    }
+
+    @Override
+    public void visit(BinaryExpression node) {
+        update(node, "BinaryExpression");
+        update(node.getOp());
+        update(node.getLhs());
+        update(node.getRhs());
+    }
+
+    @Override
+    public void visit(AssignExpression node) {
+        update(node, "AssignExpression");
+        update(node.getLhs());
+        update(node.getRhs());
+    }
+}
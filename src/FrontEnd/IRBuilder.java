@@ -9,6 +9,7 @@ import IR.*;
 import Type.*;
 import Utility.Config;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Stack;
 
@@ -43,7 +44,7 @@ public class IRBuilder implements ASTVistor {
 
     private void registerStaticVariable(VariableDeclaration variableDeclaration) {
         StaticVariable var = new StaticVariable(variableDeclaration.getName(), Config.REG_SIZE);
-        VirtualRegister vr = new VirtualRegister(variableDeclaration.getName());
+        VirtualRegister vr = new VirtualRegister(program, variableDeclaration.getName());
         vr.setSpillSpace(new Memory(var));
         program.addStaticVariable(var);
         variableDeclaration.getVariableEntity().setVirtualRegister(vr);
@@ -72,15 +73,32 @@ public class IRBuilder implements ASTVistor {
         curFunction.setTailBB(curBB);
     }
 
+    private static boolean isMemorizableType(Type type) {
+        return type.isIntType() || type.isBoolType();
+    }
+
+    private static boolean isPure(HashSet<Function> reachable) {
+        for(Function callee : reachable) {
+            if(callee.hasOutput() || callee.getName().equals("getInt") || callee.getName().equals("getString")) return false;
+        }
+        return true;
+    }
+
     private void judgeCanBeMemorized(FunctionDeclaration node) {
         Function function = program.getFunction(node.getFunctionEntity().getName());
-        if(node.getFunctionEntity().isGlobal()
-                && node.getFunctionEntity().getReturnType().isIntType()
-                && node.getParameters().size() == 1
-                && node.getParameters().get(0).getVariableEntity().getType().isIntType()
-                && !function.hasOutput()
-                && function.getUsedRecursiveVariables().isEmpty()
-                && function.getCallees().contains(function)) {
+        if(!node.getFunctionEntity().isGlobal()
+                || !isMemorizableType(node.getFunctionEntity().getReturnType())
+                || node.getParameters().isEmpty()
+                || node.getParameters().size() > vargs.size()) {
+            return;
+        }
+        for(VariableDeclaration parameter : node.getParameters()) {
+            if(!isMemorizableType(parameter.getVariableEntity().getType())) return;
+        }
+        HashSet<Function> reachable = function.getReachableFunctions();
+        if(reachable.contains(function)
+                && isPure(reachable)
+                && function.getUsedRecursiveVariables().isEmpty()) {
             function.setCanBeMemorized(true);
         }
     }
@@ -111,7 +129,7 @@ public class IRBuilder implements ASTVistor {
         buildInitFunction(node);
         for(Function function : program.getFunctions().values()) {
             if(function.getType() == FuncType.UserDefined) {
-                function.addUsedRecursiveVariables(function);
+                function.calcUsedRecursiveVariables();
                 function.calcReversePostOrder();
                 function.calcReversePrevOrder();
             }
@@ -122,7 +140,7 @@ public class IRBuilder implements ASTVistor {
     }
 
     private void visitParameter(VariableDeclaration parameter, int index) {
-        VirtualRegister vr = new VirtualRegister(parameter.getName());
+        VirtualRegister vr = new VirtualRegister(curFunction, parameter.getName());
         if(index >= 6) {
             vr.setSpillSpace(new StackSlot(vr.getName(), curFunction));
         }
@@ -139,7 +157,7 @@ public class IRBuilder implements ASTVistor {
         curFunction.setHeadBB(new BasicBlock("headBB", curFunction));
         curBB = curFunction.getHeadBB();
         if(curClassName != null) {
-            VirtualRegister thisPointer = new VirtualRegister("");
+            VirtualRegister thisPointer = new VirtualRegister(curFunction, "");
             curFunction.addParameter(thisPointer);
             curThis = thisPointer;
         }
@@ -170,6 +188,7 @@ public class IRBuilder implements ASTVistor {
             ret.prepend(new Jump(ret.getBB(), tailBB));
             ret.remove();
         }
+        curFunction.getReturnList().clear();
 
         tailBB.addNextInst(new Return(tailBB));
         curFunction.setTailBB(tailBB);
@@ -221,7 +240,7 @@ public class IRBuilder implements ASTVistor {
 
     @Override
     public void visit(VariableDeclaration node) {
-        VirtualRegister vr = new VirtualRegister(node.getName());
+        VirtualRegister vr = new VirtualRegister(curFunction, node.getName());
         node.getVariableEntity().setVirtualRegister(vr);
         if(node.getInit() != null) {
             assign(node.getInit(), vr);
@@ -419,7 +438,7 @@ public class IRBuilder implements ASTVistor {
 
     @Override
     public void visit(MemberExpression node) {
-        VirtualRegister base = new VirtualRegister("");
+        VirtualRegister base = new VirtualRegister(curFunction, "");
         node.getExpr().accept(this);
         curBB.addNextInst(new Move(curBB, base, node.getExpr().getResult()));
 
@@ -444,7 +463,7 @@ public class IRBuilder implements ASTVistor {
                 curBB.addNextInst(new Call(curBB, vrax, function, arguments));
 
                 if (!node.getFuncCall().getFunctionEntity().getReturnType().isVoidType()) {
-                    VirtualRegister ret = new VirtualRegister("");
+                    VirtualRegister ret = new VirtualRegister(curFunction, "");
                     curBB.addNextInst(new Move(curBB, ret, vrax));
                     result = ret;
                 }
@@ -468,7 +487,7 @@ public class IRBuilder implements ASTVistor {
             }
             curBB.addNextInst(new Call(curBB, vrax, function, arguments));
             if (!node.getFuncCall().getFunctionEntity().getReturnType().isVoidType()) {
-                VirtualRegister ret = new VirtualRegister("");
+                VirtualRegister ret = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Move(curBB, ret, vrax));
                 result = ret;
             }
@@ -492,7 +511,7 @@ public class IRBuilder implements ASTVistor {
         if(addr instanceof Register) {
             base = (VirtualRegister) addr;
         } else {
-            base = new VirtualRegister("");
+            base = new VirtualRegister(curFunction, "");
             curBB.addNextInst(new Move(curBB, base, addr));
         }
         Memory memory = new Memory();
@@ -502,7 +521,7 @@ public class IRBuilder implements ASTVistor {
         } else if(index instanceof Register) {
             memory = new Memory(base, (Register) index, Config.REG_SIZE, new IntImmediate(Config.REG_SIZE));
         } else if(index instanceof Memory) {
-            VirtualRegister vr = new VirtualRegister("");
+            VirtualRegister vr = new VirtualRegister(curFunction, "");
             curBB.addNextInst(new Move(curBB, vr, index));
             memory = new Memory(base, vr, Config.REG_SIZE, new IntImmediate(Config.REG_SIZE));
         }
@@ -529,7 +548,7 @@ public class IRBuilder implements ASTVistor {
         if(node.getTrueBB() != null) {
             curBB.addNextJumpInst(new CJump(curBB, vrax, CJump.CompareOp.NE, new IntImmediate(0), node.getTrueBB(), node.getFalseBB()));
         } else if(!node.getFunctionEntity().getReturnType().isVoidType()) {
-            VirtualRegister ret = new VirtualRegister("");
+            VirtualRegister ret = new VirtualRegister(curFunction, "");
             curBB.addNextInst(new Move(curBB, ret, vrax));
             node.setResult(ret);
         }
@@ -540,7 +559,7 @@ public class IRBuilder implements ASTVistor {
             if(baseBytes == 0) {
                 return new IntImmediate(0); // except class
             } else {
-                VirtualRegister retAddr = new VirtualRegister("");
+                VirtualRegister retAddr = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Call(curBB, vrax, program.getFunction("malloc"), new IntImmediate(baseBytes)));
                 curBB.addNextInst(new Move(curBB, retAddr, vrax));
                 if(constructor != null) {
@@ -551,9 +570,9 @@ public class IRBuilder implements ASTVistor {
                 return retAddr;
             }
         } else {
-            VirtualRegister addr = new VirtualRegister("");
-            VirtualRegister size = new VirtualRegister("");
-            VirtualRegister bytes = new VirtualRegister("");
+            VirtualRegister addr = new VirtualRegister(curFunction, "");
+            VirtualRegister size = new VirtualRegister(curFunction, "");
+            VirtualRegister bytes = new VirtualRegister(curFunction, "");
             curBB.addNextInst(new Move(curBB, size, dims.get(0)));
             curBB.addNextInst(new Lea(curBB, bytes, new Memory(size, Config.REG_SIZE, new IntImmediate(Config.REG_SIZE))));
             curBB.addNextInst(new Call(curBB, vrax, program.getFunction("malloc"), bytes));
@@ -625,14 +644,14 @@ public class IRBuilder implements ASTVistor {
         Operand value = node.getExpr().getResult();
         switch(node.getOp()) {
             case "++": {
-                VirtualRegister oldValue = new VirtualRegister("");
+                VirtualRegister oldValue = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Move(curBB, oldValue, value));
                 curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.INC, (Address) value));
                 node.setResult(oldValue);
                 break;
             }
             case "--": {
-                VirtualRegister oldValue = new VirtualRegister("");
+                VirtualRegister oldValue = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Move(curBB, oldValue, value));
                 curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.DEC, (Address) value));
                 node.setResult(oldValue);
@@ -666,14 +685,14 @@ public class IRBuilder implements ASTVistor {
                     break;
                 }
                 case "-": {
-                    VirtualRegister oldValue = new VirtualRegister("");
+                    VirtualRegister oldValue = new VirtualRegister(curFunction, "");
                     curBB.addNextInst(new Move(curBB, oldValue, value));
                     curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.NEG, oldValue));
                     node.setResult(oldValue);
                     break;
                 }
                 case "~": {
-                    VirtualRegister oldValue = new VirtualRegister("");
+                    VirtualRegister oldValue = new VirtualRegister(curFunction, "");
                     curBB.addNextInst(new Move(curBB, oldValue, value));
                     curBB.addNextInst(new UnaryOperation(curBB, UnaryOperation.UnaryOp.NOT, oldValue));
                     node.setResult(oldValue);
@@ -684,7 +703,7 @@ public class IRBuilder implements ASTVistor {
     }
 
     private Operand StringConcat(Expression lhs, Expression rhs) {
-        Address result = new VirtualRegister("");
+        Address result = new VirtualRegister(curFunction, "");
         lhs.accept(this);
         Operand str1 = lhs.getResult();
         rhs.accept(this);
@@ -699,7 +718,7 @@ public class IRBuilder implements ASTVistor {
         Operand src1 = lhs.getResult();
         rhs.accept(this);
         Operand src2 = rhs.getResult();
-        Address result = new VirtualRegister("");
+        Address result = new VirtualRegister(curFunction, "");
         BinaryOperation.BinaryOp bop;
         switch(op) {
             case "*":
@@ -839,7 +858,7 @@ public class IRBuilder implements ASTVistor {
         rhs.accept(this);
         Operand src1 = lhs.getResult();
         Operand src2 = lhs.getResult();
-        VirtualRegister dst = new VirtualRegister("");
+        VirtualRegister dst = new VirtualRegister(curFunction, "");
         curBB.addNextInst(new Move(curBB, dst, src1));
         switch(op) {
             case "&&":
@@ -882,13 +901,13 @@ public class IRBuilder implements ASTVistor {
                 break;
         }
         if(lhs.getType().isStringType()) {
-            VirtualRegister src = new VirtualRegister("");
+            VirtualRegister src = new VirtualRegister(curFunction, "");
             curBB.addNextInst(new Call(curBB, vrax, program.getFunction("string_compare"), src1, src2));
             curBB.addNextInst(new Move(curBB, src, vrax));
             curBB.addNextJumpInst(new CJump(curBB, src, cop, new IntImmediate(0), trueBB, falseBB));
         } else {
             if(src1 instanceof Memory && src2 instanceof Memory) {
-                VirtualRegister vr = new VirtualRegister("");
+                VirtualRegister vr = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Move(curBB, vr, src1));
                 src1 = vr;
             }
@@ -902,7 +921,7 @@ public class IRBuilder implements ASTVistor {
         rhs.accept(this);
         Operand src2 = rhs.getResult();
         CJump.CompareOp cop;
-        VirtualRegister dst = new VirtualRegister("");
+        VirtualRegister dst = new VirtualRegister(curFunction, "");
         switch(op) {
             case ">":
                 cop = CJump.CompareOp.GT;
@@ -931,7 +950,7 @@ public class IRBuilder implements ASTVistor {
             curBB.addNextInst(new Move(curBB, dst, vrax));
         } else {
             if(src1 instanceof Memory && src2 instanceof Memory) {
-                VirtualRegister vr = new VirtualRegister("");
+                VirtualRegister vr = new VirtualRegister(curFunction, "");
                 curBB.addNextInst(new Move(curBB, vr, src1));
                 src1 = vr;
             }
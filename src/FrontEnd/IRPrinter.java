@@ -329,6 +329,17 @@ public class IRPrinter implements IRVistor {
         addLine("\tcdq");
     }
 
+    @Override
+    public void visit(Phi node) {
+        add("\tphi ");
+        node.getDst().accept(this);
+        for(BasicBlock pred : node.getBB().getPrevBBs()) {
+            add(", " + getBasicBlockName(pred) + ": ");
+            node.getPath(pred).accept(this);
+        }
+        add("\n");
+    }
+
     @Override
     public void visit(Memory node) {
         boolean occur = false;
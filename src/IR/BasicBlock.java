@@ -4,15 +4,16 @@ import IR.Instruction.CJump;
 import IR.Instruction.Instruction;
 import IR.Instruction.Jump;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 public class BasicBlock {
+    private int id;
     private String name;
     private Function function;
     private Instruction head;
     private Instruction tail;
-    private LinkedList<BasicBlock> prevBBs;
-    private LinkedList<BasicBlock> nextBBs;
+    private ArrayList<BasicBlock> prevBBs;
+    private ArrayList<BasicBlock> nextBBs;
 
     public BasicBlock(String name, Function function) {
         this.name = name;
@@ -20,8 +21,16 @@ public class BasicBlock {
         this.head = null;
         this.tail = null;
         this.function.addBasicBlock(this);
-        this.prevBBs = new LinkedList<>();
-        this.nextBBs = new LinkedList<>();
+        this.prevBBs = new ArrayList<>(2);
+        this.nextBBs = new ArrayList<>(2);
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
     }
 
     public void setName(String name) {
@@ -83,15 +92,48 @@ public class BasicBlock {
         }
     }
 
+    public BasicBlock split(Instruction inst, String name) {
+        BasicBlock bb = new BasicBlock(name, function);
+        while(inst != null) {
+            Instruction next = inst.getNext();
+            inst.moveTo(bb);
+            inst = next;
+        }
+        ArrayList<BasicBlock> kept = new ArrayList<>();
+        for(Instruction rest = head; rest != null; rest = rest.getNext()) {
+            if(rest instanceof Jump) {
+                kept.add(((Jump) rest).getTargetBB());
+            } else if(rest instanceof CJump) {
+                kept.add(((CJump) rest).getElseBB());
+                kept.add(((CJump) rest).getThenBB());
+            }
+        }
+        ArrayList<BasicBlock> moved = new ArrayList<>(nextBBs);
+        nextBBs.clear();
+        for(BasicBlock next : moved) {
+            if(kept.remove(next)) {
+                nextBBs.add(next);
+                continue;
+            }
+            bb.nextBBs.add(next);
+            int index = next.prevBBs.indexOf(this);
+            if(index >= 0) next.prevBBs.set(index, bb);
+        }
+        if(function.getTailBB() == this) {
+            function.setTailBB(bb);
+        }
+        return bb;
+    }
+
     public Function getFunction() {
         return function;
     }
 
-    public LinkedList<BasicBlock> getPrevBBs() {
+    public ArrayList<BasicBlock> getPrevBBs() {
         return prevBBs;
     }
 
-    public LinkedList<BasicBlock> getNextBBs() {
+    public ArrayList<BasicBlock> getNextBBs() {
         return nextBBs;
     }
 
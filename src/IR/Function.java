@@ -28,7 +28,6 @@ public class Function {
     private LinkedList<VirtualRegister> parameters;
 
     private HashSet<Function> callees;
-    private HashSet<Function> visitedFunction;
 
     private HashSet<VariableEntity> usedGlobalVariables;
     private HashSet<VariableEntity> usedRecursiveVariables;
@@ -38,7 +37,11 @@ public class Function {
     private LinkedList<BasicBlock> basicBlocks;
     private LinkedList<BasicBlock> reversePostOrder;
     private LinkedList<BasicBlock> reversePrevOrder;
-    private HashSet<BasicBlock> visitedBB;
+    private LinkedList<BasicBlock> layoutOrder;
+    private boolean[] visitedBB;
+    private int basicBlockCount;
+    private int instructionCount;
+    private int registerCount;
 
     public Function(FuncType type, String name, boolean hasReturnValue, boolean isGlobal) {
         this.type = type;
@@ -50,17 +53,18 @@ public class Function {
         canBeMemorized = false;
         parameters = new LinkedList<>();
         callees = new HashSet<>();
-        visitedFunction = new HashSet<>();
         usedGlobalVariables = new HashSet<>();
         usedRecursiveVariables = new HashSet<>();
         usedPhysicalRegisters = new HashSet<>();
-        usedRecursiveVariables = new HashSet<>();
         returnList = new LinkedList<>();
 
         basicBlocks = new LinkedList<>();
         reversePostOrder = new LinkedList<>();
         reversePrevOrder = new LinkedList<>();
-        visitedBB = new HashSet<>();
+        layoutOrder = null;
+        basicBlockCount = 0;
+        instructionCount = 0;
+        registerCount = 0;
 
 
         if(type != FuncType.UserDefined) {
@@ -116,6 +120,16 @@ public class Function {
         return callees;
     }
 
+    public HashSet<Function> getReachableFunctions() {
+        HashSet<Function> visited = new HashSet<>();
+        LinkedList<Function> workList = new LinkedList<>(callees);
+        while(!workList.isEmpty()) {
+            Function callee = workList.removeFirst();
+            if(visited.add(callee)) workList.addAll(callee.callees);
+        }
+        return visited;
+    }
+
     public void addGlobalVariable(VariableEntity var) {
         usedGlobalVariables.add(var);
     }
@@ -129,15 +143,14 @@ public class Function {
     }
 
     public void calcUsedRecursiveVariables() {
-        visitedFunction.clear();
-        addUsedRecursiveVariables(this);
+        addUsedRecursiveVariables(this, new HashSet<>());
     }
 
-    public void addUsedRecursiveVariables(Function function) {
+    private void addUsedRecursiveVariables(Function function, HashSet<Function> visitedFunction) {
         if(visitedFunction.contains(function)) return;
         visitedFunction.add(function);
         for(Function func : function.callees) {
-            addUsedRecursiveVariables(func);
+            addUsedRecursiveVariables(func, visitedFunction);
         }
         usedRecursiveVariables.addAll(function.usedGlobalVariables);
     }
@@ -147,9 +160,15 @@ public class Function {
     }
 
     public void calcUsedPhysicalRegisters() {
+        RegisterVisitor collector = reg -> usedPhysicalRegisters.add((PhysicalRegister) reg);
         for(BasicBlock bb : basicBlocks) {
             for(Instruction inst = bb.getHead(); inst != null; inst = inst.getNext()) {
                 if(inst instanceof Return) continue;
+                if(inst instanceof Cdq) {
+                    usedPhysicalRegisters.add(rax);
+                    usedPhysicalRegisters.add(rdx);
+                    continue;
+                }
                 if(inst instanceof Call) {
                     usedPhysicalRegisters.addAll(callerSave);
                 } else if(inst instanceof BinaryOperation) {
@@ -163,15 +182,8 @@ public class Function {
                         usedPhysicalRegisters.add(rdx);
                     }
                 } else {
-                    for(Register reg : inst.getUsedRegisters()) {
-                        PhysicalRegister pr = (PhysicalRegister) reg;
-                        usedPhysicalRegisters.add(pr);
-                    }
-                    for(Register reg : inst.getDefinedRegisters()) {
-                        PhysicalRegister pr = (PhysicalRegister) reg;
-                        usedPhysicalRegisters.add(pr);
-                    }
-
+                    inst.forEachUsedRegister(collector);
+                    inst.forEachDefinedRegister(collector);
                 }
             }
         }
@@ -190,16 +202,33 @@ public class Function {
     }
 
     public void addBasicBlock(BasicBlock bb) {
+        bb.setId(basicBlockCount++);
         basicBlocks.add(bb);
     }
 
+    public int getBasicBlockCount() {
+        return basicBlockCount;
+    }
+
+    public int newInstructionId() {
+        return instructionCount++;
+    }
+
+    public int newRegisterId() {
+        return registerCount++;
+    }
+
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
     public LinkedList<BasicBlock> getBasicBlocks() {
         return basicBlocks;
     }
 
     private void dfsReversePostOrder(BasicBlock bb) {
-        if(visitedBB.contains(bb)) return;
-        visitedBB.add(bb);
+        if(visitedBB[bb.getId()]) return;
+        visitedBB[bb.getId()] = true;
         for(BasicBlock next : bb.getNextBBs()) {
             dfsReversePostOrder(next);
         }
@@ -207,8 +236,9 @@ public class Function {
     }
 
     public void calcReversePostOrder() {
-        visitedBB.clear();
+        visitedBB = new boolean[basicBlockCount];
         reversePostOrder.clear();
+        layoutOrder = null;
         dfsReversePostOrder(headBB);
     }
 
@@ -217,8 +247,8 @@ public class Function {
     }
 
     private void dfsReversePrevOrder(BasicBlock bb) {
-        if(visitedBB.contains(bb)) return;
-        visitedBB.add(bb);
+        if(visitedBB[bb.getId()]) return;
+        visitedBB[bb.getId()] = true;
         for(BasicBlock prev : bb.getPrevBBs()) {
             dfsReversePrevOrder(prev);
         }
@@ -226,7 +256,7 @@ public class Function {
     }
 
     public void calcReversePrevOrder() {
-        visitedBB.clear();
+        visitedBB = new boolean[basicBlockCount];
         reversePrevOrder.clear();
         dfsReversePrevOrder(tailBB);
     }
@@ -235,6 +265,14 @@ public class Function {
         return reversePrevOrder;
     }
 
+    public void setLayoutOrder(LinkedList<BasicBlock> layoutOrder) {
+        this.layoutOrder = layoutOrder;
+    }
+
+    public LinkedList<BasicBlock> getLayoutOrder() {
+        return layoutOrder == null ? reversePostOrder : layoutOrder;
+    }
+
     public boolean isGlobal() {
         return isGlobal;
     }
@@ -12,6 +12,7 @@ public class IRProgram {
     private Map<String, Function> functions;
     private LinkedList<StaticVariable> staticVariables;
     private LinkedList<StaticString> staticStrings;
+    private int globalRegisterCount;
 
     private void addBuiltinFunctions() {
         Function print = new Function(FuncType.Library, "print", false, true);
@@ -47,6 +48,7 @@ public class IRProgram {
         functions = new HashMap<>();
         staticVariables = new LinkedList<>();
         staticStrings = new LinkedList<>();
+        globalRegisterCount = 0;
         addBuiltinFunctions();
     }
 
@@ -58,6 +60,10 @@ public class IRProgram {
         return functions.get(name);
     }
 
+    public int newGlobalRegisterId() {
+        return ~(RegisterSet.vallRegs.size() + globalRegisterCount++);
+    }
+
     public void addStaticVariable(StaticVariable var) {
         staticVariables.add(var);
     }
@@ -22,6 +22,7 @@ public interface IRVistor {
     void visit(Pop node);
     void visit(Leave node);
     void visit(Cdq node);
+    void visit(Phi node);
 
     void visit(Memory node);
     void visit(StackSlot node);
@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.*;
 
 import java.util.HashMap;
@@ -40,72 +41,51 @@ public class BinaryOperation extends Instruction {
         this.src = src;
     }
 
-    @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(src instanceof Memory) {
-            registers.addAll(((Memory) src).getUsedRegisters());
-        } else if(src instanceof Register) {
-            registers.add((Register) src);
-        }
-        if(dst instanceof Memory) {
-            registers.addAll(((Memory) dst).getUsedRegisters());
-        } else if(dst instanceof Register) {
-            registers.add((Register) dst);
+    private static boolean mentions(Operand operand, Register reg) {
+        if(operand instanceof Memory) {
+            return ((Memory) operand).getBase() == reg || ((Memory) operand).getIndex() == reg;
         }
-        if(op == BinaryOp.MUL) {
-            if (!registers.contains(vrax)) {
-                registers.add(vrax);
-            }
-        } else if(op == BinaryOp.DIV || op == BinaryOp.MOD) {
-            if(!registers.contains(vrax)) {
-                registers.add(vrax);
+        return operand == reg;
+    }
+
+    @Override
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitUsedRegisters(src, visitor);
+        visitUsedRegisters(dst, visitor);
+        if(op == BinaryOp.MUL || op == BinaryOp.DIV || op == BinaryOp.MOD) {
+            if(!mentions(src, vrax) && !mentions(dst, vrax)) {
+                visitor.visit(vrax);
             }
-            if(!registers.contains(vrdx)) {
-                registers.add(vrdx);
+        }
+        if(op == BinaryOp.DIV || op == BinaryOp.MOD) {
+            if(!mentions(src, vrdx) && !mentions(dst, vrdx)) {
+                visitor.visit(vrdx);
             }
         }
-        return registers;
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitRegister(dst, visitor);
         if(op == BinaryOp.MUL || op == BinaryOp.DIV || op == BinaryOp.MOD) {
-            if(!registers.contains(vrax)) {
-                registers.add(vrax);
+            if(dst != vrax) {
+                visitor.visit(vrax);
             }
-            if(!registers.contains(vrdx)) {
-                registers.add(vrdx);
+            if(dst != vrdx) {
+                visitor.visit(vrdx);
             }
         }
-        return registers;
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(src instanceof Memory) {
-            src = ((Memory) src).copy();
-            ((Memory) src).renameUseReg(renameMap);
-        } else if(src instanceof Register && renameMap.containsKey(src)) {
-            src = renameMap.get(src);
-        }
-        if(dst instanceof Memory) {
-            dst = ((Memory) dst).copy();
-            ((Memory) dst).renameUseReg(renameMap);
-        } else if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        src = renameUsedRegisters(src, renameMap);
+        dst = (Address) renameUsedRegisters(dst, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
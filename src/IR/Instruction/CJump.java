@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.*;
 
 import java.util.HashMap;
@@ -17,6 +18,7 @@ public class CJump extends Instruction {
     private Operand rhs;
     private BasicBlock thenBB;
     private BasicBlock elseBB;
+    private boolean isTest;
 
     public CJump(BasicBlock bb, Operand lhs, CompareOp op, Operand rhs,
                  BasicBlock thenBB, BasicBlock elseBB) {
@@ -97,6 +99,29 @@ public class CJump extends Instruction {
 
     }
 
+    public CompareOp getSwappedCompareOp() {
+        return getSwappedCompareOp(op);
+    }
+
+    public static CompareOp getSwappedCompareOp(CompareOp op) {
+        switch(op) {
+            case EQ:
+                return CompareOp.EQ;
+            case GT:
+                return CompareOp.LT;
+            case LT:
+                return CompareOp.GT;
+            case GE:
+                return CompareOp.LE;
+            case LE:
+                return CompareOp.GE;
+            case NE:
+                return CompareOp.NE;
+            default:
+                return null;
+        }
+    }
+
     public void setOp(CompareOp op) {
         this.op = op;
     }
@@ -137,41 +162,29 @@ public class CJump extends Instruction {
         return thenBB;
     }
 
+    public void setTest(boolean isTest) {
+        this.isTest = isTest;
+    }
+
+    public boolean isTest() {
+        return isTest;
+    }
+
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(lhs instanceof Memory) {
-            registers.addAll(((Memory) lhs).getUsedRegisters());
-        } else if (lhs instanceof Register) {
-            registers.add((Register) lhs);
-        }
-        if(rhs instanceof Memory) {
-            registers.addAll(((Memory) rhs).getUsedRegisters());
-        } else if (rhs instanceof Register) {
-            registers.add((Register) rhs);
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitUsedRegisters(lhs, visitor);
+        visitUsedRegisters(rhs, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>();
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(lhs instanceof Memory) {
-            lhs = ((Memory) lhs).copy();
-            ((Memory) lhs).renameUseReg(renameMap);
-        } else if(lhs instanceof Register && renameMap.containsKey(lhs)) {
-            lhs = renameMap.get(lhs);
-        }
-        if(rhs instanceof Memory) {
-            rhs = ((Memory) rhs).copy();
-            ((Memory) rhs).renameUseReg(renameMap);
-        } else if(rhs instanceof Register && renameMap.containsKey(rhs)) {
-            rhs = renameMap.get(rhs);
-        }
+        lhs = renameUsedRegisters(lhs, renameMap);
+        rhs = renameUsedRegisters(rhs, renameMap);
     }
 
     @Override
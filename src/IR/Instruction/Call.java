@@ -6,11 +6,13 @@ import IR.Operand.*;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.ListIterator;
 
 public class Call extends Instruction {
     private Address dst;
     private Function func;
     private LinkedList<Operand> args;
+    private boolean isTailCall;
 
     public Call(BasicBlock bb, Address dst, Function func, LinkedList<Operand> args) {
         super(bb);
@@ -48,26 +50,49 @@ public class Call extends Instruction {
         return args;
     }
 
-    public LinkedList<Register> getAllUsedRegister() {
-        LinkedList<Register> registers = new LinkedList<>();
+    public void setTailCall(boolean isTailCall) {
+        this.isTailCall = isTailCall;
+    }
+
+    public boolean isTailCall() {
+        return isTailCall;
+    }
+
+    public void forEachArgumentRegister(RegisterVisitor visitor) {
         for(Operand arg : args) {
             if(arg instanceof Memory) {
-                registers.addAll(((Memory) arg).getUsedRegisters());
+                ((Memory) arg).forEachUsedRegister(visitor);
             } else if(arg instanceof VirtualRegister) {
-                registers.add((Register) arg);
+                visitor.visit((Register) arg);
             }
         }
+    }
+
+    public void renameArgumentRegisters(HashMap<Register, Register> renameMap) {
+        for(ListIterator<Operand> iterator = args.listIterator(); iterator.hasNext(); ) {
+            iterator.set(renameUsedRegisters(iterator.next(), renameMap));
+        }
+    }
+
+    public LinkedList<Register> getAllUsedRegister() {
+        LinkedList<Register> registers = new LinkedList<>();
+        forEachArgumentRegister(registers::add);
         return registers;
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        return new LinkedList<>(RegisterSet.vargs.subList(0, Integer.min(6, args.size())));
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        int count = Integer.min(6, args.size());
+        for(int i = 0; i < count; i++) {
+            visitor.visit(RegisterSet.vargs.get(i));
+        }
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>(RegisterSet.vcallerSave);
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        for(int i = 0; i < RegisterSet.vcallerSave.size(); i++) {
+            visitor.visit(RegisterSet.vcallerSave.get(i));
+        }
     }
 
     @Override
@@ -77,9 +102,7 @@ public class Call extends Instruction {
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
@@ -2,25 +2,29 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
 
 import java.util.HashMap;
 import java.util.LinkedList;
 
+import static IR.RegisterSet.vrax;
+import static IR.RegisterSet.vrdx;
+
 public class Cdq extends Instruction {
     public Cdq(BasicBlock bb) {
         super(bb);
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        return new LinkedList<>();
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitor.visit(vrax);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>();
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitor.visit(vrdx);
     }
 
     @Override
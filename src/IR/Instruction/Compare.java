@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.*;
 
 import java.util.HashMap;
@@ -51,51 +52,25 @@ public class Compare extends Instruction {
 
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(lhs instanceof Memory) {
-            registers.addAll(((Memory) lhs).getUsedRegisters());
-        } else if (lhs instanceof Register) {
-            registers.add((Register) lhs);
-        }
-        if(rhs instanceof Memory) {
-            registers.addAll(((Memory) rhs).getUsedRegisters());
-        } else if (rhs instanceof Register) {
-            registers.add((Register) rhs);
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitUsedRegisters(lhs, visitor);
+        visitUsedRegisters(rhs, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitRegister(dst, visitor);
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(lhs instanceof Memory) {
-            lhs = ((Memory) lhs).copy();
-            ((Memory) lhs).renameUseReg(renameMap);
-        } else if(lhs instanceof Register && renameMap.containsKey(lhs)) {
-            lhs = renameMap.get(lhs);
-        }
-        if(rhs instanceof Memory) {
-            rhs = ((Memory) rhs).copy();
-            ((Memory) rhs).renameUseReg(renameMap);
-        } else if(rhs instanceof Register && renameMap.containsKey(rhs)) {
-            rhs = renameMap.get(rhs);
-        }
+        lhs = renameUsedRegisters(lhs, renameMap);
+        rhs = renameUsedRegisters(rhs, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
@@ -2,33 +2,32 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.Operand.Memory;
 import IR.Operand.Operand;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
+import IR.RegisterVisitor;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 
 public abstract class Instruction {
+    private int id;
     private BasicBlock bb;
     private Instruction prev;
     private Instruction next;
     private boolean removed;
-//    private LinkedList<Register> usedRegisters;
-//    private LinkedList<Register> definedRegisters;
-    private HashSet<Register> liveIn;
-    private HashSet<Register> liveOut;
 
     public Instruction(BasicBlock bb) {
+        this.id = bb.getFunction().newInstructionId();
         this.bb = bb;
         prev = null;
         next = null;
         removed = false;
-//        usedRegisters = new LinkedList<>();
-//        definedRegisters = new LinkedList<>();
-        liveIn = new HashSet<>();
-        liveOut = new HashSet<>();
+    }
+
+    public int getId() {
+        return id;
     }
 
     public BasicBlock getBB() {
@@ -119,16 +118,83 @@ public abstract class Instruction {
         }
     }
 
+    public void moveBefore(Instruction inst) {
+        remove();
+        removed = false;
+        bb = inst.bb;
+        inst.prepend(this);
+    }
+
+    public void moveTo(BasicBlock bb) {
+        remove();
+        removed = false;
+        this.bb = bb;
+        bb.addNextInst(this);
+    }
+
     public boolean isRemoved() {
         return removed;
     }
 
-    public abstract LinkedList<Register> getUsedRegisters();
-    public abstract LinkedList<Register> getDefinedRegisters();
+    public abstract void forEachUsedRegister(RegisterVisitor visitor);
+    public abstract void forEachDefinedRegister(RegisterVisitor visitor);
     public abstract void renameUsedRegisters(HashMap<Register, Register> renameMap);
     public abstract void renameDefinedRegisters(HashMap<Register, Register> renameMap);
     public abstract LinkedList<StackSlot> getStackSlots();
 
+    public LinkedList<Register> getUsedRegisters() {
+        LinkedList<Register> registers = new LinkedList<>();
+        forEachUsedRegister(registers::add);
+        return registers;
+    }
+
+    public LinkedList<Register> getDefinedRegisters() {
+        LinkedList<Register> registers = new LinkedList<>();
+        forEachDefinedRegister(registers::add);
+        return registers;
+    }
+
+    static void visitUsedRegisters(Operand operand, RegisterVisitor visitor) {
+        if(operand instanceof Memory) {
+            ((Memory) operand).forEachUsedRegister(visitor);
+        } else if(operand instanceof Register) {
+            visitor.visit((Register) operand);
+        }
+    }
+
+    static void visitMemoryRegisters(Operand operand, RegisterVisitor visitor) {
+        if(operand instanceof Memory) {
+            ((Memory) operand).forEachUsedRegister(visitor);
+        }
+    }
+
+    static void visitRegister(Operand operand, RegisterVisitor visitor) {
+        if(operand instanceof Register) {
+            visitor.visit((Register) operand);
+        }
+    }
+
+    static Operand renameUsedRegisters(Operand operand, HashMap<Register, Register> renameMap) {
+        if(operand instanceof Memory) {
+            return ((Memory) operand).rename(renameMap);
+        }
+        return renameRegister(operand, renameMap);
+    }
+
+    static Operand renameMemoryRegisters(Operand operand, HashMap<Register, Register> renameMap) {
+        if(operand instanceof Memory) {
+            return ((Memory) operand).rename(renameMap);
+        }
+        return operand;
+    }
+
+    static Operand renameRegister(Operand operand, HashMap<Register, Register> renameMap) {
+        if(operand instanceof Register) {
+            return renameMap.getOrDefault(operand, (Register) operand);
+        }
+        return operand;
+    }
+
     LinkedList<StackSlot> calcStackSlots(Operand... operands) {
         LinkedList<StackSlot> stackSlots = new LinkedList<>();
         for(Operand operand : operands) {
@@ -138,13 +204,5 @@ public abstract class Instruction {
         return stackSlots;
     }
 
-    public HashSet<Register> getLiveIn() {
-        return liveIn;
-    }
-
-    public HashSet<Register> getLiveOut() {
-        return liveOut;
-    }
-
     public abstract void accept(IRVistor vistor);
 }
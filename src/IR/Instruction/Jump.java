@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
 
@@ -16,18 +17,22 @@ public class Jump extends Instruction {
         this.targetBB = targetBB;
     }
 
+    public void setTargetBB(BasicBlock targetBB) {
+        this.targetBB = targetBB;
+    }
+
     public BasicBlock getTargetBB() {
         return targetBB;
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        return new LinkedList<>();
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>();
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
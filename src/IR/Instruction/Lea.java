@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Memory;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
@@ -28,30 +29,23 @@ public class Lea extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>(src.getUsedRegisters());
-        registers.add(dst);
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        src.forEachUsedRegister(visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        registers.add(dst);
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitor.visit(dst);
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        src = src.copy();
-        src.renameUseReg(renameMap);
+        src = src.rename(renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = renameMap.getOrDefault(dst, dst);
     }
 
     @Override
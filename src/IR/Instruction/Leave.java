@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Memory;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
@@ -15,13 +16,13 @@ public class Leave extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        return new LinkedList<>();
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>();
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
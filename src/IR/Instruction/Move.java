@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.*;
 
 import java.util.HashMap;
@@ -35,47 +36,25 @@ public class Move extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Memory) {
-            registers.addAll(((Memory) dst).getUsedRegisters());
-        }
-        if(src instanceof Memory) {
-            registers.addAll(((Memory) src).getUsedRegisters());
-        } else if(src instanceof Register) {
-            registers.add((Register) src);
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitMemoryRegisters(dst, visitor);
+        visitUsedRegisters(src, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitRegister(dst, visitor);
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(src instanceof Memory) {
-            src = ((Memory) src).copy();
-            ((Memory) src).renameUseReg(renameMap);
-        } else if(src instanceof Register && renameMap.containsKey(src)) {
-            src = renameMap.get(src);
-        }
-        if(dst instanceof Memory) {
-            dst = ((Memory) dst).copy();
-            ((Memory) dst).renameUseReg(renameMap);
-        }
+        src = renameUsedRegisters(src, renameMap);
+        dst = (Address) renameMemoryRegisters(dst, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
@@ -0,0 +1,75 @@
+package IR.Instruction;
+
+import IR.BasicBlock;
+import IR.IRVistor;
+import IR.RegisterVisitor;
+import IR.Operand.*;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+public class Phi extends Instruction {
+    private VirtualRegister dst;
+    private HashMap<BasicBlock, Operand> paths;
+
+    public Phi(BasicBlock bb, VirtualRegister dst) {
+        super(bb);
+        this.dst = dst;
+        this.paths = new HashMap<>();
+    }
+
+    public VirtualRegister getDst() {
+        return dst;
+    }
+
+    public void addPath(BasicBlock bb, Operand operand) {
+        paths.put(bb, operand);
+    }
+
+    public Operand getPath(BasicBlock bb) {
+        return paths.get(bb);
+    }
+
+    public void removePath(BasicBlock bb) {
+        paths.remove(bb);
+    }
+
+    public HashMap<BasicBlock, Operand> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        for(Operand operand : paths.values()) {
+            visitRegister(operand, visitor);
+        }
+    }
+
+    @Override
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitor.visit(dst);
+    }
+
+    @Override
+    public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
+        for(Map.Entry<BasicBlock, Operand> entry : paths.entrySet()) {
+            entry.setValue(renameRegister(entry.getValue(), renameMap));
+        }
+    }
+
+    @Override
+    public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
+        dst = (VirtualRegister) renameRegister(dst, renameMap);
+    }
+
+    @Override
+    public LinkedList<StackSlot> getStackSlots() {
+        return new LinkedList<>();
+    }
+
+    @Override
+    public void accept(IRVistor vistor) {
+        vistor.visit(this);
+    }
+}
@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Address;
 import IR.Operand.Memory;
 import IR.Operand.Register;
@@ -23,36 +24,23 @@ public class Pop extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Memory) {
-            registers.addAll(((Memory) dst).getUsedRegisters());
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitMemoryRegisters(dst, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitRegister(dst, visitor);
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Memory) {
-            dst = ((Memory) dst).copy();
-            ((Memory) dst).renameUseReg(renameMap);
-        }
+        dst = (Address) renameMemoryRegisters(dst, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Memory;
 import IR.Operand.Operand;
 import IR.Operand.Register;
@@ -23,36 +24,23 @@ public class Push extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(src instanceof Memory) {
-            registers.addAll(((Memory) src).getUsedRegisters());
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitUsedRegisters(src, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(src instanceof Register) {
-            registers.add((Register) src);
-        }
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(src instanceof Memory) {
-            src = ((Memory) src).copy();
-            ((Memory) src).renameUseReg(renameMap);
-        }
+        src = renameUsedRegisters(src, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(src instanceof Register && renameMap.containsKey(src)) {
-            src = renameMap.get(src);
-        }
+
     }
 
     @Override
@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.Register;
 import IR.Operand.StackSlot;
 
@@ -16,17 +17,15 @@ public class Return extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
+    public void forEachUsedRegister(RegisterVisitor visitor) {
         if(this.getBB().getFunction().hasReturnValue()) {
-            registers.add(vrax);
+            visitor.visit(vrax);
         }
-        return registers;
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        return new LinkedList<>();
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+
     }
 
     @Override
@@ -2,6 +2,7 @@ package IR.Instruction;
 
 import IR.BasicBlock;
 import IR.IRVistor;
+import IR.RegisterVisitor;
 import IR.Operand.*;
 
 import java.util.HashMap;
@@ -29,40 +30,23 @@ public class UnaryOperation extends Instruction {
     }
 
     @Override
-    public LinkedList<Register> getUsedRegisters(){
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Memory) {
-            registers.addAll(((Memory) dst).getUsedRegisters());
-        } else if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
-        return registers;
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        visitUsedRegisters(dst, visitor);
     }
 
     @Override
-    public LinkedList<Register> getDefinedRegisters() {
-        LinkedList<Register> registers = new LinkedList<>();
-        if(dst instanceof Register) {
-            registers.add((Register) dst);
-        }
-        return registers;
+    public void forEachDefinedRegister(RegisterVisitor visitor) {
+        visitRegister(dst, visitor);
     }
 
     @Override
     public void renameUsedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        } else if(dst instanceof Memory) {
-            dst = ((Memory) dst).copy();
-            ((Memory) dst).renameUseReg(renameMap);
-        }
+        dst = (Address) renameUsedRegisters(dst, renameMap);
     }
 
     @Override
     public void renameDefinedRegisters(HashMap<Register, Register> renameMap) {
-        if(dst instanceof Register && renameMap.containsKey(dst)) {
-            dst = renameMap.get(dst);
-        }
+        dst = (Address) renameRegister(dst, renameMap);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package IR.Operand;
 
 import IR.IRVistor;
+import IR.RegisterVisitor;
 
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -55,16 +56,12 @@ public class Memory extends Address {
         this.base = base;
     }
 
-    public void setOffset(Constant offset) {
-        this.offset = offset;
+    public void setIndex(Register index) {
+        this.index = index;
     }
 
-    public Memory copy() {
-        if(this instanceof StackSlot) {
-            return this;
-        } else {
-            return new Memory(base, index, scale, offset);
-        }
+    public void setOffset(Constant offset) {
+        this.offset = offset;
     }
 
     public Register getBase() {
@@ -83,18 +80,29 @@ public class Memory extends Address {
         return offset;
     }
 
+    public void forEachUsedRegister(RegisterVisitor visitor) {
+        if(base != null) visitor.visit(base);
+        if(index != null) visitor.visit(index);
+    }
+
     public LinkedList<Register> getUsedRegisters(){
         LinkedList<Register> registers = new LinkedList<>();
-        if(base != null) registers.add(base);
-        if(index != null) registers.add(index);
+        forEachUsedRegister(registers::add);
         return registers;
     }
 
-    public void renameUseReg(HashMap<Register, Register> renameMap) {
-        if(renameMap.containsKey(base))
-            base = renameMap.get(base);
-        if(renameMap.containsKey(index))
-            index = renameMap.get(index);
+    public Memory rename(HashMap<Register, Register> renameMap) {
+        Register newBase = renameMap.getOrDefault(base, base);
+        Register newIndex = renameMap.getOrDefault(index, index);
+        if(newBase == base && newIndex == index) {
+            return this;
+        }
+        if(this instanceof StackSlot) {
+            base = newBase;
+            index = newIndex;
+            return this;
+        }
+        return new Memory(newBase, newIndex, scale, offset);
     }
 
     @Override
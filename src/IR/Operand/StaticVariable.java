@@ -11,6 +11,10 @@ public class StaticVariable extends StaticData {
         this.length = length;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public int getLength() {
         return length;
     }
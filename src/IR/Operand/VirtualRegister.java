@@ -1,18 +1,34 @@
 package IR.Operand;
 
+import IR.Function;
+import IR.IRProgram;
 import IR.IRVistor;
 
 public class VirtualRegister extends Register {
+    private final int id;
     private String name;
     private PhysicalRegister allocatedPhysicalRegister;
     private Memory spillSpace;
 
-    public VirtualRegister(String name) {
+    public VirtualRegister(Function function, String name) {
+        this(function.newRegisterId(), name);
+    }
+
+    public VirtualRegister(IRProgram program, String name) {
+        this(program.newGlobalRegisterId(), name);
+    }
+
+    public VirtualRegister(int id, String name) {
+        this.id = id;
         this.name = name;
         allocatedPhysicalRegister = null;
         spillSpace = null;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -3,6 +3,7 @@ package IR;
 import IR.Operand.PhysicalRegister;
 import IR.Operand.VirtualRegister;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 
 public class RegisterSet {
@@ -47,20 +48,21 @@ public class RegisterSet {
 
     public static LinkedList<VirtualRegister> vallRegs;
     public static LinkedList<VirtualRegister> vcalleeSave;
-    public static LinkedList<VirtualRegister> vcallerSave;
-    public static LinkedList<VirtualRegister> vargs;
+    public static ArrayList<VirtualRegister> vcallerSave;
+    public static ArrayList<VirtualRegister> vargs;
 
 
 
-    public static void init() {
+    public static synchronized void init() {
+        if(allRegs != null) return;
         allRegs = new LinkedList<>();
         calleeSave = new LinkedList<>();
         callerSave = new LinkedList<>();
         args = new LinkedList<>();
         vallRegs = new LinkedList<>();
         vcalleeSave = new LinkedList<>();
-        vcallerSave = new LinkedList<>();
-        vargs = new LinkedList<>();
+        vcallerSave = new ArrayList<>();
+        vargs = new ArrayList<>();
         String[] names = new String[] {
                 "rax", "rcx", "rdx", "rbx", "rsp", "rbp", "rsi", "rdi", "r8", "r9", "r10", "r11", "r12", "r13", "r14", "r15",
         };
@@ -69,7 +71,7 @@ public class RegisterSet {
         };
         for (int i = 0; i < 16; i++) {
             PhysicalRegister pr = new PhysicalRegister();
-            VirtualRegister vr = new VirtualRegister("v" + names[i]);
+            VirtualRegister vr = new VirtualRegister(~i, "v" + names[i]);
             pr.setName(names[i]);
             vr.setAllocatedPhysicalRegister(pr);
             allRegs.add(pr);
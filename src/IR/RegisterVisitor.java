@@ -0,0 +1,7 @@
+package IR;
+
+import IR.Operand.Register;
+
+public interface RegisterVisitor {
+    void visit(Register register);
+}
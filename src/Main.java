@@ -1,127 +1,61 @@
-import AST.Program;
-import BackEnd.*;
-import FrontEnd.*;
-import FrontEnd.UselessLoopEliminator;
-import IR.IRProgram;
-import IR.RegisterSet;
-import Parser.MxstarLexer;
-import Parser.MxstarParser;
-import Utility.Config;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTree;
-
+import Driver.BatchCompiler;
+import Driver.CompileServer;
+import Driver.Compiler;
+import Driver.FunctionCache;
+import Driver.PhaseMetrics;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
-import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Main {
     public static void main(String[] args) throws Exception {
+        FunctionCache cache = null;
+        ArrayList<String> arguments = new ArrayList<>(Arrays.asList(args));
+        int cacheIndex = arguments.indexOf("--cache");
+        if(cacheIndex >= 0 && cacheIndex + 1 < arguments.size()) {
+            cache = new FunctionCache(Paths.get(arguments.get(cacheIndex + 1)));
+            arguments.subList(cacheIndex, cacheIndex + 2).clear();
+            args = arguments.toArray(new String[0]);
+        }
+        if(args.length > 0 && args[0].equals("--server")) {
+            CompileServer server = new CompileServer(cache);
+            server.warmUp();
+            if(args.length > 1) {
+                server.listen(Integer.parseInt(args[1]));
+            } else {
+                server.serve(System.in, System.out);
+            }
+            return;
+        }
+        if(args.length > 1 && args[0].equals("--batch")) {
+            String suffix = args.length > 2 ? args[2] : ".mx";
+            int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            BatchCompiler batchCompiler = new BatchCompiler(suffix, parallelism, cache);
+            if(!batchCompiler.run(Paths.get(args[1]))) {
+                System.exit(1);
+            }
+            return;
+        }
         String inputFile = "program.cpp";
+        String outputFile = "program.asm";
+        PhaseMetrics metrics = null;
+        if(args.length > 1 && args[0].equals("--metrics")) {
+            metrics = new PhaseMetrics();
+        }
         InputStream inputStream = new FileInputStream(inputFile);
         try{
-            compile(inputStream);
+            new Compiler(metrics, cache).compile(inputStream, Paths.get(outputFile));
         } catch (Error error) {
             System.err.println(error.getMessage());
             System.exit(1);
         }
-    }
-
-    private static void compile(InputStream sourceCode) throws Exception {
-        RegisterSet.init();
-
-        ANTLRInputStream input = new ANTLRInputStream(sourceCode);
-        MxstarLexer lexer = new MxstarLexer(input);
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        MxstarParser parser = new MxstarParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(new PaserErrorListener());
-        ParseTree tree = parser.program();
-
-        ASTBuilder astBuilder = new ASTBuilder();
-        astBuilder.visit(tree);
-        Program program = astBuilder.getProgram();
-
-        if(Config.printAST) {
-            ASTPrinter astPrinter = new ASTPrinter();
-            astPrinter.visit(program);
-            astPrinter.print();
-        }
-
-        ScopeBuilder scopeBuilder = new ScopeBuilder();
-        scopeBuilder.visit(program);
-
-        SemanticChecker semanticChecker = new SemanticChecker(scopeBuilder.getGlobalScope());
-        semanticChecker.visit(program);
-
-        if(Config.useUselessLoopElimination) {
-            UselessLoopEliminator uselessLoopEliminator = new UselessLoopEliminator(program);
-            uselessLoopEliminator.run();
-        }
-
-        if(Config.useLoopConditionOptimization) {
-            LoopConditionOptimizer loopConditionOptimizer = new LoopConditionOptimizer(program);
-            loopConditionOptimizer.run();
-        }
-
-        IRBuilder irBuilder = new IRBuilder(scopeBuilder.getGlobalScope());
-        irBuilder.visit(program);
-        IRProgram irProgram = irBuilder.getProgram();
-
-        if(Config.useMemorization) {
-            Memorization memorization = new Memorization(irProgram);
-            memorization.run();
-        }
-
-        if(Config.useBasicBlockOptimization) {
-            BasicBlockOptimizer basicBlockOptimizer = new BasicBlockOptimizer(irProgram);
-            basicBlockOptimizer.run();
-        }
-
-        if(Config.useSuperlocalValueNumbering) {
-            SuperlocalValueNumbering superlocalValueNumbering = new SuperlocalValueNumbering(irProgram);
-            superlocalValueNumbering.run();
-        }
-
-        if(Config.useDeadCodeElimination) {
-            DeadCodeEliminator deadCodeEliminator = new DeadCodeEliminator(irProgram);
-            deadCodeEliminator.run();
+        if(metrics != null) {
+            Files.write(Paths.get(args[1]), metrics.toJson().getBytes(StandardCharsets.US_ASCII));
         }
-
-        IRCorrector irCorrector = new IRCorrector();
-        irCorrector.visit(irProgram);
-
-        if(Config.printIR) {
-            IRPrinter irPrinter = new IRPrinter();
-            irPrinter.visit(irProgram);
-            irPrinter.print();
-        }
-
-        switch(Config.useAllocator) {
-            case 1:
-                SimpleAllocator simpleAllocator = new SimpleAllocator(irProgram);
-                simpleAllocator.allocateRegisters();
-                break;
-            case 2:
-                ChordalGraphAllocator chordalGraphAllocator = new ChordalGraphAllocator(irProgram);
-                chordalGraphAllocator.run();
-                break;
-            case 3:
-                SimpleGraphAllocator simpleGraphAllocator = new SimpleGraphAllocator(irProgram);
-                simpleGraphAllocator.run();
-                break;
-            case 4:
-                GraphAllocator graphAllocator = new GraphAllocator(irProgram);
-                graphAllocator.run();
-                break;
-        }
-
-        StackBuilder stackBuilder = new StackBuilder(irProgram);
-        stackBuilder.run();
-
-        CodeGenerator codeGenerator = new CodeGenerator();
-        codeGenerator.visit(irProgram);
-        codeGenerator.print(new PrintStream("program.asm"));
     }
 }
@@ -2,15 +2,31 @@ package Utility;
 
 public class Config {
     public static int REG_SIZE = 8;
-    public static int MAX_MEMORIZATION_NUMBER = 60;
+    public static int MEMORIZATION_TABLE_BITS = 10;
+    public static int MEMORIZATION_KEY_BITS = 3;
+    public static int MEMORIZATION_MAX_TABLE_BYTES = 1 << 21;
+    public static int MEMORIZATION_PROBE_LIMIT = 4;
+    public static int MAX_INLINE_COST = 24;
+    public static int MAX_INLINE_GROWTH = 400;
+    public static int MAX_REQUEST_BYTES = 1 << 24;
     public static int useAllocator = 2;
 
     public static boolean useUselessLoopElimination = true;
     public static boolean useLoopConditionOptimization = true;
     public static boolean useMemorization = true;
+    public static boolean useInlining = true;
+    public static boolean useTailCallElimination = true;
     public static boolean useBasicBlockOptimization = true;
-    public static boolean useSuperlocalValueNumbering = true;
+    public static boolean useSSA = true;
+    public static boolean useSparseConditionalConstantPropagation = true;
+    public static boolean useGlobalValueNumbering = true;
+    public static boolean useLoopInvariantCodeMotion = true;
+    public static boolean useStrengthReduction = true;
     public static boolean useDeadCodeElimination = true;
+    public static boolean usePeepholeOptimization = true;
+    public static boolean useBasicBlockLayout = true;
+    public static boolean useMaxDegreeSpill = false;
+    public static boolean useParallelBackend = true;
 
     public static boolean printAST = false;
     public static boolean printIR = false;
@@ -0,0 +1,123 @@
+package Utility;
+
+import java.util.Arrays;
+
+public class IntIntMap {
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public IntIntMap() {
+        this(8);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Integer.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        size = 0;
+        mask = capacity - 1;
+    }
+
+    public IntIntMap(IntIntMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        used = other.used.clone();
+        size = other.size;
+        mask = other.mask;
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(int key) {
+        int i = hash(key) & mask;
+        while(used[i]) {
+            if(keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int get(int key, int defaultValue) {
+        int i = indexOf(key);
+        return i >= 0 ? values[i] : defaultValue;
+    }
+
+    public void put(int key, int value) {
+        int i = hash(key) & mask;
+        while(used[i]) {
+            if(keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if(++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    public void remove(int key) {
+        int i = indexOf(key);
+        if(i < 0) return;
+        size--;
+        int j = i;
+        while(true) {
+            used[i] = false;
+            while(true) {
+                j = (j + 1) & mask;
+                if(!used[j]) return;
+                int home = hash(keys[j]) & mask;
+                if(i <= j ? (home <= i || home > j) : (home <= i && home > j)) break;
+            }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            used[i] = true;
+            i = j;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(!oldUsed[i]) continue;
+            int j = hash(oldKeys[i]) & mask;
+            while(used[j]) j = (j + 1) & mask;
+            used[j] = true;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
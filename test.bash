@@ -0,0 +1,28 @@
+set -e
+cd "$(dirname "$0")"
+bash build.bash
+Mxstar="java -classpath $PWD/lib/antlr-runtime-4.7.2.jar:$PWD/bin Main"
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+mkdir -p "$work/lib/c2nasm"
+cp lib/c2nasm/lib.asm "$work/lib/c2nasm/"
+failed=0
+for program in test/programs/*.mx; do
+    name=$(basename "$program" .mx)
+    cp "$program" "$work/program.cpp"
+    if (cd "$work" && $Mxstar && nasm -felf64 program.asm -o program.o && gcc -no-pie program.o -o program && ./program > program.out) && cmp -s "$work/program.out" "test/programs/$name.out"; then
+        echo "PASS $name"
+    else
+        echo "FAIL $name"
+        failed=1
+    fi
+done
+for length in -1 2147483647; do
+    if printf '%s\n' "$length" | $Mxstar --server | head -n 1 | grep -q '^ERROR '; then
+        echo "PASS server rejects length $length"
+    else
+        echo "FAIL server rejects length $length"
+        failed=1
+    fi
+done
+exit $failed